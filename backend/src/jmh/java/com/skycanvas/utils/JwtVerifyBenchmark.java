@@ -0,0 +1,121 @@
+package com.skycanvas.utils;
+
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.security.Keys;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JWT校验：改造前的 validateToken + getUserIdFromToken（每次调用重新构建密钥和解析器、解析两次）
+ * 与 JwtUtils.verify 在缓存命中和未命中时的耗时对比
+ *
+ * 运行：mvn -P jmh test-compile exec:exec -Djmh.args="JwtVerifyBenchmark"
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class JwtVerifyBenchmark {
+
+    private static final String SECRET = "skycanvas-benchmark-secret-key-at-least-32-bytes";
+
+    /**
+     * 未命中场景轮换使用的Token数，远大于缓存容量，保证每次都未命中
+     */
+    private static final int MISS_TOKENS = 8192;
+
+    private static final int MISS_CACHE_SIZE = 256;
+
+    private JwtUtils cached;
+
+    private JwtUtils missing;
+
+    private String token;
+
+    private String[] missTokens;
+
+    private int next;
+
+    @Setup
+    public void setUp() {
+        cached = jwtUtils(10000);
+        missing = jwtUtils(MISS_CACHE_SIZE);
+        token = cached.generateToken(10001L);
+        cached.verify(token);
+
+        // 用户ID不同，生成的Token各不相同
+        missTokens = new String[MISS_TOKENS];
+        for (int i = 0; i < MISS_TOKENS; i++) {
+            missTokens[i] = missing.generateToken(20000L + i);
+        }
+    }
+
+    /**
+     * 改造前：先校验，再解析用户ID
+     */
+    @Benchmark
+    public Long legacyDoubleParse() {
+        return legacyValidate(token) ? legacyGetUserId(token) : null;
+    }
+
+    @Benchmark
+    public Long verifyCacheHit() {
+        return cached.verify(token);
+    }
+
+    /**
+     * 每次使用不同的Token：完整解析一次，另有摘要计算和写入缓存的开销
+     */
+    @Benchmark
+    public Long verifyCacheMiss() {
+        String current = missTokens[next];
+        next = (next + 1) % MISS_TOKENS;
+        return missing.verify(current);
+    }
+
+    private JwtUtils jwtUtils(int cacheSize) {
+        JwtUtils jwtUtils = new JwtUtils();
+        ReflectionTestUtils.setField(jwtUtils, "secret", SECRET);
+        ReflectionTestUtils.setField(jwtUtils, "expiration", TimeUnit.DAYS.toMillis(7));
+        ReflectionTestUtils.setField(jwtUtils, "verifiedCacheSize", cacheSize);
+        ReflectionTestUtils.setField(jwtUtils, "verifiedCacheTtl", 60000L);
+        jwtUtils.init();
+        return jwtUtils;
+    }
+
+    private static boolean legacyValidate(String token) {
+        try {
+            Jwts.parserBuilder()
+                    .setSigningKey(Keys.hmacShaKeyFor(SECRET.getBytes(StandardCharsets.UTF_8)))
+                    .build()
+                    .parseClaimsJws(token);
+            return true;
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    private static Long legacyGetUserId(String token) {
+        Claims claims = Jwts.parserBuilder()
+                .setSigningKey(Keys.hmacShaKeyFor(SECRET.getBytes(StandardCharsets.UTF_8)))
+                .build()
+                .parseClaimsJws(token)
+                .getBody();
+        return Long.parseLong(claims.getSubject());
+    }
+}
@@ -0,0 +1,35 @@
+package com.skycanvas.common;
+
+import lombok.Data;
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * 游标分页结果
+ * nextCursor 为下一页的游标（不透明字符串，原样传回），没有下一页时为null；
+ * total 只在请求时返回（可能是短时间内缓存的值）
+ */
+@Data
+public class CursorResult<T> implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private List<T> records;
+    private String nextCursor;
+    private Boolean hasMore;
+    private Long total;
+
+    public CursorResult() {
+    }
+
+    public CursorResult(List<T> records, String nextCursor, Long total) {
+        this.records = records;
+        this.nextCursor = nextCursor;
+        this.hasMore = nextCursor != null;
+        this.total = total;
+    }
+
+    public static <T> CursorResult<T> of(List<T> records, String nextCursor, Long total) {
+        return new CursorResult<>(records, nextCursor, total);
+    }
+}
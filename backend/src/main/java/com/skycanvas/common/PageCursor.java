@@ -0,0 +1,46 @@
+package com.skycanvas.common;
+
+import com.skycanvas.exception.BusinessException;
+import lombok.Getter;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+
+/**
+ * 游标分页的位置：按 (create_time, id) 倒序排列时上一页最后一条记录
+ * 编码为URL安全的Base64字符串，客户端不解析
+ */
+@Getter
+public class PageCursor {
+
+    private final LocalDateTime createTime;
+
+    private final Long id;
+
+    public PageCursor(LocalDateTime createTime, Long id) {
+        this.createTime = createTime;
+        this.id = id;
+    }
+
+    public String encode() {
+        String raw = createTime + "|" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * 解析游标，为空时返回null（第一页）
+     */
+    public static PageCursor decode(String cursor) {
+        if (cursor == null || cursor.isEmpty()) {
+            return null;
+        }
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separator = raw.indexOf('|');
+            return new PageCursor(LocalDateTime.parse(raw.substring(0, separator)), Long.valueOf(raw.substring(separator + 1)));
+        } catch (RuntimeException e) {
+            throw BusinessException.of(400, "无效的分页游标");
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package com.skycanvas.config;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * 非阻塞HTTP客户端配置（JDK HttpClient）
+ *
+ * 连接的读写由每个客户端的一个选择器线程驱动，响应回调在少量共享线程（http.async.threads）中执行，
+ * 成千上万个未完成的提交/查询请求不需要对应数量的线程
+ * 连接超时沿用 http.clients.{name}.connect-timeout，请求超时由各provider按自己的timeout设置
+ * 并发请求数按 http.clients.{name}.max-total 限制（见 LimitedHttpClient），使用情况登记到 HttpClientPoolRegistry
+ */
+@Configuration
+public class AsyncHttpClientConfig {
+
+    @Autowired
+    private Environment environment;
+
+    /**
+     * 响应回调线程（不注册为Bean，避免替换Spring默认的任务执行器）
+     */
+    private ExecutorService callbackExecutor;
+
+    @PostConstruct
+    public void init() {
+        int threads = environment.getProperty("http.async.threads", Integer.class, 4);
+        callbackExecutor = Executors.newFixedThreadPool(threads, new CustomizableThreadFactory("http-async-"));
+    }
+
+    @PreDestroy
+    public void destroy() {
+        callbackExecutor.shutdown();
+    }
+
+    @Bean
+    public LimitedHttpClient wenwenaiHttpClient(HttpClientPoolRegistry poolRegistry) {
+        return buildHttpClient("wenwenai", 100, poolRegistry);
+    }
+
+    @Bean
+    public LimitedHttpClient soraProxyHttpClient(HttpClientPoolRegistry poolRegistry) {
+        return buildHttpClient("sora-proxy", 50, poolRegistry);
+    }
+
+    /**
+     * 下载生成结果（转存到OSS）
+     */
+    @Bean
+    public LimitedHttpClient mirrorHttpClient(HttpClientPoolRegistry poolRegistry) {
+        return buildHttpClient("mirror", 10, poolRegistry);
+    }
+
+    private LimitedHttpClient buildHttpClient(String name, int defaultMaxTotal, HttpClientPoolRegistry poolRegistry) {
+        String prefix = "http.clients." + name + ".";
+        int connectTimeout = environment.getProperty(prefix + "connect-timeout", Integer.class, 5000);
+        int maxTotal = environment.getProperty(prefix + "max-total", Integer.class, defaultMaxTotal);
+        int acquireTimeout = environment.getProperty(prefix + "pool-acquire-timeout", Integer.class, 2000);
+        HttpClient httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofMillis(connectTimeout))
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .executor(callbackExecutor)
+                .build();
+        LimitedHttpClient client = new LimitedHttpClient(name, httpClient, maxTotal, acquireTimeout);
+        poolRegistry.registerAsync(name, client);
+        return client;
+    }
+}
@@ -0,0 +1,48 @@
+package com.skycanvas.config;
+
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.pool.PoolStats;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * HTTP连接池登记（用于输出连接池使用情况）
+ * 非阻塞客户端（LimitedHttpClient）以 "{name}-async" 输出，与同名连接池分开统计
+ */
+public class HttpClientPoolRegistry {
+
+    private final Map<String, PoolingHttpClientConnectionManager> pools = new ConcurrentHashMap<>();
+
+    private final Map<String, LimitedHttpClient> asyncClients = new ConcurrentHashMap<>();
+
+    public void register(String name, PoolingHttpClientConnectionManager connectionManager) {
+        pools.put(name, connectionManager);
+    }
+
+    public void registerAsync(String name, LimitedHttpClient client) {
+        asyncClients.put(name, client);
+    }
+
+    /**
+     * 各连接池的使用情况
+     * leased-已借出，pending-等待获取连接的请求数，available-空闲连接，max-最大连接数
+     */
+    public Map<String, Map<String, Object>> getStats() {
+        Map<String, Map<String, Object>> result = new LinkedHashMap<>();
+        pools.forEach((name, connectionManager) -> {
+            PoolStats stats = connectionManager.getTotalStats();
+            Map<String, Object> item = new LinkedHashMap<>();
+            item.put("leased", stats.getLeased());
+            item.put("pending", stats.getPending());
+            item.put("available", stats.getAvailable());
+            item.put("max", stats.getMax());
+            item.put("maxPerRoute", connectionManager.getDefaultMaxPerRoute());
+            item.put("utilization", stats.getMax() == 0 ? 0 : (double) stats.getLeased() / stats.getMax());
+            result.put(name, item);
+        });
+        asyncClients.forEach((name, client) -> result.put(name + "-async", client.getStats()));
+        return result;
+    }
+}
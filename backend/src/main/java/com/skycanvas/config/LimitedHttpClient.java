@@ -0,0 +1,208 @@
+package com.skycanvas.config;
+
+import java.io.IOException;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 限制并发请求数的非阻塞HTTP客户端（包装JDK HttpClient）
+ *
+ * JDK HttpClient（HTTP/1.1）每个并发请求占用一条连接，本身没有连接数上限，
+ * 这里按 http.clients.{name}.max-total 限制同时进行的请求数，与同名连接池的上限一致；
+ * 超出上限的请求排队等待，超过 pool-acquire-timeout 仍未开始时失败（与连接池获取连接超时一致）
+ * 使用情况登记到 HttpClientPoolRegistry，通过 GET /monitor/http-pools 输出
+ */
+public class LimitedHttpClient {
+
+    private final String name;
+
+    private final HttpClient httpClient;
+
+    private final int maxConcurrent;
+
+    private final long acquireTimeout;
+
+    private final Semaphore permits;
+
+    private final Queue<PendingRequest> waiting = new ConcurrentLinkedQueue<>();
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    private final AtomicInteger pending = new AtomicInteger();
+
+    private final LongAdder completed = new LongAdder();
+
+    private final LongAdder failed = new LongAdder();
+
+    private final LongAdder rejected = new LongAdder();
+
+    public LimitedHttpClient(String name, HttpClient httpClient, int maxConcurrent, long acquireTimeout) {
+        this.name = name;
+        this.httpClient = httpClient;
+        this.maxConcurrent = maxConcurrent;
+        this.acquireTimeout = acquireTimeout;
+        this.permits = new Semaphore(maxConcurrent);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * 非阻塞发送，达到并发上限时排队，等待超时后以 TimeoutException 失败
+     * 名额在响应（含响应体）处理完成后释放
+     */
+    public <T> CompletableFuture<HttpResponse<T>> sendAsync(HttpRequest request, HttpResponse.BodyHandler<T> handler) {
+        CompletableFuture<HttpResponse<T>> result = new CompletableFuture<>();
+        PendingRequest pendingRequest = new PendingRequest(() -> {
+            inFlight.incrementAndGet();
+            CompletableFuture<HttpResponse<T>> future;
+            try {
+                future = httpClient.sendAsync(request, handler);
+            } catch (RuntimeException e) {
+                future = CompletableFuture.failedFuture(e);
+            }
+            future.whenComplete((response, e) -> {
+                finish(e == null);
+                if (e != null) {
+                    result.completeExceptionally(e);
+                } else {
+                    result.complete(response);
+                }
+            });
+        });
+
+        pending.incrementAndGet();
+        waiting.add(pendingRequest);
+        drain();
+        if (!pendingRequest.isStarted()) {
+            CompletableFuture.delayedExecutor(acquireTimeout, TimeUnit.MILLISECONDS).execute(() -> {
+                if (pendingRequest.claim()) {
+                    waiting.remove(pendingRequest);
+                    pending.decrementAndGet();
+                    rejected.increment();
+                    result.completeExceptionally(timeout());
+                }
+            });
+        }
+        return result;
+    }
+
+    /**
+     * 阻塞发送并在回调中处理响应，回调返回后才释放名额
+     * 用于流式读取响应体（BodyHandlers.ofInputStream 在收到响应头时就返回）
+     */
+    public <T, R> R exchange(HttpRequest request, HttpResponse.BodyHandler<T> handler,
+                             ResponseCallback<T, R> callback) throws IOException, InterruptedException {
+        pending.incrementAndGet();
+        boolean acquired;
+        try {
+            acquired = permits.tryAcquire(acquireTimeout, TimeUnit.MILLISECONDS);
+        } finally {
+            pending.decrementAndGet();
+        }
+        if (!acquired) {
+            rejected.increment();
+            throw new IOException(timeout());
+        }
+        inFlight.incrementAndGet();
+        boolean success = false;
+        try {
+            R value = callback.apply(httpClient.send(request, handler));
+            success = true;
+            return value;
+        } finally {
+            finish(success);
+        }
+    }
+
+    /**
+     * 使用情况，字段与连接池一致：leased-进行中的请求，pending-等待名额的请求，max-并发上限
+     * 另外输出累计的 completed/failed/rejected（等待超时）次数
+     */
+    public Map<String, Object> getStats() {
+        int leased = inFlight.get();
+        Map<String, Object> item = new LinkedHashMap<>();
+        item.put("leased", leased);
+        item.put("pending", pending.get());
+        item.put("available", Math.max(0, maxConcurrent - leased));
+        item.put("max", maxConcurrent);
+        item.put("utilization", maxConcurrent == 0 ? 0 : (double) leased / maxConcurrent);
+        item.put("completed", completed.sum());
+        item.put("failed", failed.sum());
+        item.put("rejected", rejected.sum());
+        return item;
+    }
+
+    private void finish(boolean success) {
+        inFlight.decrementAndGet();
+        if (success) {
+            completed.increment();
+        } else {
+            failed.increment();
+        }
+        permits.release();
+        drain();
+    }
+
+    /**
+     * 有空闲名额时按排队顺序启动请求
+     * 入队后和释放名额后都会调用，避免入队与释放交错时请求滞留在队列中
+     */
+    private void drain() {
+        while (!waiting.isEmpty() && permits.tryAcquire()) {
+            PendingRequest next = waiting.poll();
+            if (next == null || !next.claim()) {
+                // 队列已被其他线程取空，或该请求已等待超时
+                permits.release();
+                continue;
+            }
+            pending.decrementAndGet();
+            next.task.run();
+        }
+    }
+
+    private TimeoutException timeout() {
+        return new TimeoutException("等待HTTP连接超时(" + name + ", " + acquireTimeout + "ms)");
+    }
+
+    /**
+     * 排队中的请求，由启动和等待超时两方竞争认领
+     */
+    private static class PendingRequest {
+
+        private final Runnable task;
+
+        private final AtomicBoolean claimed = new AtomicBoolean();
+
+        PendingRequest(Runnable task) {
+            this.task = task;
+        }
+
+        boolean claim() {
+            return claimed.compareAndSet(false, true);
+        }
+
+        boolean isStarted() {
+            return claimed.get();
+        }
+    }
+
+    @FunctionalInterface
+    public interface ResponseCallback<T, R> {
+        R apply(HttpResponse<T> response) throws IOException;
+    }
+}
@@ -1,40 +1,171 @@
 package com.skycanvas.config;
 
+import org.apache.http.HeaderElement;
+import org.apache.http.HeaderElementIterator;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.config.Registry;
+import org.apache.http.config.RegistryBuilder;
+import org.apache.http.conn.ConnectionKeepAliveStrategy;
+import org.apache.http.conn.socket.ConnectionSocketFactory;
+import org.apache.http.conn.socket.PlainConnectionSocketFactory;
+import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.message.BasicHeaderElementIterator;
+import org.apache.http.protocol.HTTP;
+import org.apache.http.protocol.HttpContext;
+import org.apache.http.ssl.SSLContexts;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.env.Environment;
 import org.springframework.http.MediaType;
-import org.springframework.http.client.SimpleClientHttpRequestFactory;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
 import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
 import org.springframework.web.client.RestTemplate;
 
+import javax.net.ssl.SSLContext;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 /**
  * RestTemplate配置
+ *
+ * 每个上游使用独立的连接池（Apache HttpClient），连接数和超时分别配置（http.clients.{name}.*）：
+ * - restTemplate：默认客户端
+ * - wechatRestTemplate：微信接口（jscode2session等），短超时
+ * - wenwenaiRestTemplate：WenwenAI，提交接口同步返回生成结果，读超时较长
+ * - soraProxyRestTemplate：Sora中转站
+ * 所有连接池共用一个SSLContext，TLS会话可以跨连接复用
  */
 @Configuration
 public class RestTemplateConfig {
 
+    @Autowired
+    private Environment environment;
+
+    private final SSLContext sslContext = SSLContexts.createSystemDefault();
+
+    @Bean
+    public HttpClientPoolRegistry httpClientPoolRegistry() {
+        return new HttpClientPoolRegistry();
+    }
+
     @Bean
-    public RestTemplate restTemplate() {
-        SimpleClientHttpRequestFactory factory = new SimpleClientHttpRequestFactory();
-        factory.setConnectTimeout(10000);  // 10秒
-        factory.setReadTimeout(300000);     // 5分钟
-        
-        RestTemplate restTemplate = new RestTemplate(factory);
-        
+    @Primary
+    public RestTemplate restTemplate(HttpClientPoolRegistry poolRegistry) {
+        return buildRestTemplate("default", new ClientDefaults(50, 20, 10000, 300000), poolRegistry);
+    }
+
+    @Bean
+    public RestTemplate wechatRestTemplate(HttpClientPoolRegistry poolRegistry) {
+        return buildRestTemplate("wechat", new ClientDefaults(20, 20, 3000, 5000), poolRegistry);
+    }
+
+    @Bean
+    public RestTemplate wenwenaiRestTemplate(HttpClientPoolRegistry poolRegistry) {
+        return buildRestTemplate("wenwenai", new ClientDefaults(100, 100, 5000, 300000), poolRegistry);
+    }
+
+    @Bean
+    public RestTemplate soraProxyRestTemplate(HttpClientPoolRegistry poolRegistry) {
+        return buildRestTemplate("sora-proxy", new ClientDefaults(50, 50, 5000, 30000), poolRegistry);
+    }
+
+    private RestTemplate buildRestTemplate(String name, ClientDefaults defaults, HttpClientPoolRegistry poolRegistry) {
+        String prefix = "http.clients." + name + ".";
+        int maxTotal = environment.getProperty(prefix + "max-total", Integer.class, defaults.maxTotal);
+        int maxPerRoute = environment.getProperty(prefix + "max-per-route", Integer.class, defaults.maxPerRoute);
+        int connectTimeout = environment.getProperty(prefix + "connect-timeout", Integer.class, defaults.connectTimeout);
+        int readTimeout = environment.getProperty(prefix + "read-timeout", Integer.class, defaults.readTimeout);
+        int acquireTimeout = environment.getProperty(prefix + "pool-acquire-timeout", Integer.class, 2000);
+        long idleEvict = environment.getProperty(prefix + "idle-evict", Long.class, 30000L);
+        long keepAlive = environment.getProperty(prefix + "keep-alive", Long.class, 30000L);
+
+        Registry<ConnectionSocketFactory> socketFactoryRegistry = RegistryBuilder.<ConnectionSocketFactory>create()
+                .register("http", PlainConnectionSocketFactory.getSocketFactory())
+                .register("https", new SSLConnectionSocketFactory(sslContext))
+                .build();
+        PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager(socketFactoryRegistry);
+        connectionManager.setMaxTotal(maxTotal);
+        connectionManager.setDefaultMaxPerRoute(maxPerRoute);
+        // 空闲超过2秒的连接在复用前先检查是否已被服务端关闭
+        connectionManager.setValidateAfterInactivity(2000);
+        poolRegistry.register(name, connectionManager);
+
+        RequestConfig requestConfig = RequestConfig.custom()
+                .setConnectTimeout(connectTimeout)
+                .setSocketTimeout(readTimeout)
+                .setConnectionRequestTimeout(acquireTimeout)
+                .build();
+
+        CloseableHttpClient httpClient = HttpClients.custom()
+                .setConnectionManager(connectionManager)
+                .setDefaultRequestConfig(requestConfig)
+                .setKeepAliveStrategy(keepAliveStrategy(keepAlive))
+                .evictExpiredConnections()
+                .evictIdleConnections(idleEvict, TimeUnit.MILLISECONDS)
+                // 不跟踪连接状态，TLS连接可以在请求之间复用
+                .disableConnectionState()
+                .build();
+
+        RestTemplate restTemplate = new RestTemplate(new HttpComponentsClientHttpRequestFactory(httpClient));
+
         // 配置消息转换器，支持微信接口返回的text/plain类型的JSON
         MappingJackson2HttpMessageConverter converter = new MappingJackson2HttpMessageConverter();
         List<MediaType> supportedMediaTypes = new ArrayList<>();
         supportedMediaTypes.add(MediaType.APPLICATION_JSON);
         supportedMediaTypes.add(MediaType.TEXT_PLAIN);  // 支持text/plain类型
         converter.setSupportedMediaTypes(supportedMediaTypes);
-        
+
         // 将配置好的转换器添加到RestTemplate
         restTemplate.getMessageConverters().add(0, converter);
-        
+
         return restTemplate;
     }
-}
 
+    /**
+     * 优先使用服务端Keep-Alive响应头中的timeout，否则使用配置的保持时间
+     */
+    private ConnectionKeepAliveStrategy keepAliveStrategy(long defaultKeepAlive) {
+        return (HttpResponse response, HttpContext context) -> {
+            HeaderElementIterator iterator = new BasicHeaderElementIterator(response.headerIterator(HTTP.CONN_KEEP_ALIVE));
+            while (iterator.hasNext()) {
+                HeaderElement element = iterator.nextElement();
+                if ("timeout".equalsIgnoreCase(element.getName()) && element.getValue() != null) {
+                    try {
+                        return Long.parseLong(element.getValue()) * 1000;
+                    } catch (NumberFormatException ignored) {
+                        // 使用默认值
+                    }
+                }
+            }
+            return defaultKeepAlive;
+        };
+    }
+
+    /**
+     * 各客户端的默认连接数和超时
+     */
+    private static class ClientDefaults {
+
+        private final int maxTotal;
+
+        private final int maxPerRoute;
+
+        private final int connectTimeout;
+
+        private final int readTimeout;
+
+        ClientDefaults(int maxTotal, int maxPerRoute, int connectTimeout, int readTimeout) {
+            this.maxTotal = maxTotal;
+            this.maxPerRoute = maxPerRoute;
+            this.connectTimeout = connectTimeout;
+            this.readTimeout = readTimeout;
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package com.skycanvas.config;
 
 import com.skycanvas.interceptor.AuthInterceptor;
+import com.skycanvas.interceptor.MonitorAccessInterceptor;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
@@ -15,14 +16,21 @@ public class WebMvcConfig implements WebMvcConfigurer {
     @Autowired
     private AuthInterceptor authInterceptor;
 
+    @Autowired
+    private MonitorAccessInterceptor monitorAccessInterceptor;
+
     @Override
     public void addInterceptors(InterceptorRegistry registry) {
         registry.addInterceptor(authInterceptor)
                 .addPathPatterns("/**")
                 .excludePathPatterns(
-                        "/auth/login",    // 登录接口不需要认证
-                        "/ws/**"          // WebSocket不需要认证
+                        "/auth/login",          // 登录接口不需要认证
+                        "/video/callback/**",   // provider回调通过签名认证
+                        "/ws/**",               // WebSocket不需要认证
+                        "/monitor/**"           // 监控接口按来源地址或监控Token控制
                 );
+        registry.addInterceptor(monitorAccessInterceptor)
+                .addPathPatterns("/monitor/**");
     }
 }
 
@@ -1,5 +1,6 @@
 package com.skycanvas.controller;
 
+import com.skycanvas.common.CursorResult;
 import com.skycanvas.common.PageResult;
 import com.skycanvas.common.Result;
 import com.skycanvas.context.UserContextHolder;
@@ -31,7 +32,7 @@ public class CreditController {
     }
 
     /**
-     * 获取积分记录
+     * 获取积分记录（第一页）
      */
     @GetMapping("/logs")
     public Result<PageResult<CreditLog>> getLogs(
@@ -41,5 +42,18 @@ public class CreditController {
         PageResult<CreditLog> result = creditService.getCreditLogs(userId, current, size);
         return Result.success(result);
     }
+
+    /**
+     * 按游标获取积分记录
+     */
+    @GetMapping("/logs/cursor")
+    public Result<CursorResult<CreditLog>> getLogsByCursor(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") Long size,
+            @RequestParam(defaultValue = "false") Boolean withTotal) {
+        Long userId = UserContextHolder.requireUserId();
+        CursorResult<CreditLog> result = creditService.getCreditLogsByCursor(userId, cursor, size, withTotal);
+        return Result.success(result);
+    }
 }
 
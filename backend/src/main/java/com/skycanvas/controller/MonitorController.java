@@ -0,0 +1,85 @@
+package com.skycanvas.controller;
+
+import com.skycanvas.common.Result;
+import com.skycanvas.config.HttpClientPoolRegistry;
+import com.skycanvas.credit.CreditJournalFlusher;
+import com.skycanvas.video.mirror.VideoMirrorService;
+import com.skycanvas.video.resilience.ProviderGuardRegistry;
+import com.skycanvas.video.routing.VideoProviderRouter;
+import com.skycanvas.video.task.VideoTaskReaper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 运行状态监控控制器（供监控面板拉取）
+ */
+@RestController
+@RequestMapping("/monitor")
+public class MonitorController {
+
+    @Autowired
+    private ProviderGuardRegistry guardRegistry;
+
+    @Autowired
+    private VideoProviderRouter providerRouter;
+
+    @Autowired
+    private HttpClientPoolRegistry httpClientPoolRegistry;
+
+    @Autowired
+    private VideoMirrorService mirrorService;
+
+    @Autowired
+    private VideoTaskReaper taskReaper;
+
+    @Autowired
+    private CreditJournalFlusher creditJournalFlusher;
+
+    /**
+     * provider状态：熔断状态、当前并发限制、路由统计
+     */
+    @GetMapping("/providers")
+    public Result<Map<String, Object>> providers() {
+        Map<String, Object> result = new HashMap<>();
+        result.put("guards", guardRegistry.getStats());
+        result.put("routing", providerRouter.getStats());
+        return Result.success(result);
+    }
+
+    /**
+     * HTTP连接池使用情况
+     */
+    @GetMapping("/http-pools")
+    public Result<Map<String, Map<String, Object>>> httpPools() {
+        return Result.success(httpClientPoolRegistry.getStats());
+    }
+
+    /**
+     * 生成结果转存情况
+     */
+    @GetMapping("/mirror")
+    public Result<Map<String, Object>> mirror() {
+        return Result.success(mirrorService.getStats());
+    }
+
+    /**
+     * 超时任务清理情况（各provider累计数量）
+     */
+    @GetMapping("/reaper")
+    public Result<Map<String, Object>> reaper() {
+        return Result.success(taskReaper.getStats());
+    }
+
+    /**
+     * Redis积分账本的流水写入和对账情况
+     */
+    @GetMapping("/credit-ledger")
+    public Result<Map<String, Object>> creditLedger() {
+        return Result.success(creditJournalFlusher.getStats());
+    }
+}
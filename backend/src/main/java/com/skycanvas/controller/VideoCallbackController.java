@@ -0,0 +1,40 @@
+package com.skycanvas.controller;
+
+import com.skycanvas.common.Result;
+import com.skycanvas.exception.BusinessException;
+import com.skycanvas.video.callback.VideoCallbackHandler;
+import com.skycanvas.video.callback.VideoCallbackSigner;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+/**
+ * provider回调控制器（不需要登录，通过签名认证）
+ * 返回真实的HTTP状态码，provider据此决定是否重试
+ */
+@Slf4j
+@RestController
+@RequestMapping("/video/callback")
+public class VideoCallbackController {
+
+    @Autowired
+    private VideoCallbackHandler callbackHandler;
+
+    /**
+     * 接收任务状态回调
+     */
+    @PostMapping("/{provider}")
+    public ResponseEntity<Result<Void>> callback(
+            @PathVariable String provider,
+            @RequestHeader(value = VideoCallbackSigner.TIMESTAMP_HEADER, required = false) String timestamp,
+            @RequestHeader(value = VideoCallbackSigner.SIGNATURE_HEADER, required = false) String signature,
+            @RequestBody String body) {
+        try {
+            callbackHandler.handle(provider, timestamp, signature, body);
+            return ResponseEntity.ok(Result.success());
+        } catch (BusinessException e) {
+            return ResponseEntity.status(e.getCode()).body(Result.error(e.getCode(), e.getMessage()));
+        }
+    }
+}
@@ -1,8 +1,11 @@
 package com.skycanvas.controller;
 
+import com.skycanvas.common.CursorResult;
 import com.skycanvas.common.PageResult;
 import com.skycanvas.common.Result;
 import com.skycanvas.context.UserContextHolder;
+import com.skycanvas.dto.VideoBatchGenerationRequest;
+import com.skycanvas.dto.VideoBatchTaskDTO;
 import com.skycanvas.dto.VideoGenerationRequest;
 import com.skycanvas.dto.VideoTaskDTO;
 import com.skycanvas.entity.VideoTask;
@@ -34,6 +37,17 @@ public class VideoController {
         return Result.success("任务提交成功", task);
     }
 
+    /**
+     * 批量提交视频生成任务
+     */
+    @PostMapping("/generate/batch")
+    public Result<VideoBatchTaskDTO> generateVideoBatch(@RequestBody @Validated VideoBatchGenerationRequest request) {
+        Long userId = UserContextHolder.requireUserId();
+        log.info("用户{}批量提交视频生成任务, 数量: {}", userId, request.getItems().size());
+        VideoBatchTaskDTO result = videoTaskService.createBatchTask(request, userId);
+        return Result.success("任务提交成功", result);
+    }
+
     /**
      * 查询任务状态
      */
@@ -45,7 +59,17 @@ public class VideoController {
     }
 
     /**
-     * 获取我的任务列表
+     * 取消任务（未完成的任务，退回积分）
+     */
+    @DeleteMapping("/task/{taskId}")
+    public Result<VideoTaskDTO> cancelTask(@PathVariable Long taskId) {
+        Long userId = UserContextHolder.requireUserId();
+        VideoTaskDTO task = videoTaskService.cancelTask(taskId, userId);
+        return Result.success("任务已取消", task);
+    }
+
+    /**
+     * 获取我的任务列表（第一页）
      */
     @GetMapping("/tasks")
     public Result<PageResult<VideoTask>> getMyTasks(
@@ -55,5 +79,18 @@ public class VideoController {
         PageResult<VideoTask> result = videoTaskService.getUserTasks(userId, current, size);
         return Result.success(result);
     }
+
+    /**
+     * 按游标获取我的任务列表
+     */
+    @GetMapping("/tasks/cursor")
+    public Result<CursorResult<VideoTask>> getMyTasksByCursor(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "10") Long size,
+            @RequestParam(defaultValue = "false") Boolean withTotal) {
+        Long userId = UserContextHolder.requireUserId();
+        CursorResult<VideoTask> result = videoTaskService.getUserTasksByCursor(userId, cursor, size, withTotal);
+        return Result.success(result);
+    }
 }
 
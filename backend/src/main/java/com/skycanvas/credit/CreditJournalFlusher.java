@@ -0,0 +1,411 @@
+package com.skycanvas.credit;
+
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.skycanvas.entity.CreditLog;
+import com.skycanvas.entity.User;
+import com.skycanvas.entity.VideoTask;
+import com.skycanvas.mapper.CreditLogMapper;
+import com.skycanvas.mapper.CreditOutboxMapper;
+import com.skycanvas.mapper.UserMapper;
+import com.skycanvas.mapper.VideoTaskMapper;
+import com.skycanvas.video.task.ClusterNodeRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Range;
+import org.springframework.data.redis.connection.stream.Consumer;
+import org.springframework.data.redis.connection.stream.MapRecord;
+import org.springframework.data.redis.connection.stream.PendingMessage;
+import org.springframework.data.redis.connection.stream.PendingMessages;
+import org.springframework.data.redis.connection.stream.ReadOffset;
+import org.springframework.data.redis.connection.stream.RecordId;
+import org.springframework.data.redis.connection.stream.StreamOffset;
+import org.springframework.data.redis.connection.stream.StreamReadOptions;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.StringUtils;
+
+import javax.annotation.PostConstruct;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * 积分流水写入和对账
+ *
+ * 设计说明：
+ * 1. 每个节点以消费者组（credit-flusher）的成员身份读取流水日志，每批在一个事务中：
+ *    按用户合并为一条 tb_user 更新，流水一次批量插入 tb_credit_log；事务提交后确认并删除日志条目
+ * 2. 流水的日志ID写入 tb_credit_log.journal_id（唯一），写入后确认前宕机导致的重复投递会被跳过；
+ *    同一任务已有同类型记录（uk_task_type）的条目同样跳过，不更新余额
+ * 3. 定期对账（集群内只有一个节点执行）：
+ *    - 接管宕机节点未确认的日志条目
+ *    - 处理超过 reservation-timeout 的预扣（预扣所在的请求已经结束）：关联的任务已保存说明事务已提交、
+ *      只是提交后转正式扣费失败，补做提交；否则事务未提交，退回预扣
+ *    - 没有预扣和未写入流水的用户与MySQL比较余额，不一致时以MySQL为准重新加载
+ */
+@Slf4j
+@Component
+public class CreditJournalFlusher {
+
+    private static final String GROUP = "credit-flusher";
+
+    private static final String RECONCILE_LOCK_KEY = "credit:reconcile:lock";
+
+    /**
+     * 只释放自己持有的锁
+     */
+    private static final RedisScript<Long> UNLOCK_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('GET', KEYS[1]) == ARGV[1] then return redis.call('DEL', KEYS[1]) end return 0",
+            Long.class);
+
+    @Autowired
+    private CreditLedger ledger;
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Autowired
+    private UserMapper userMapper;
+
+    @Autowired
+    private CreditLogMapper creditLogMapper;
+
+    @Autowired
+    private CreditOutboxMapper outboxMapper;
+
+    @Autowired
+    private VideoTaskMapper videoTaskMapper;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private ClusterNodeRegistry nodeRegistry;
+
+    @Value("${credit.ledger.flush-batch-size:500}")
+    private int batchSize;
+
+    @Value("${credit.ledger.claim-idle:60000}")
+    private long claimIdle;
+
+    @Value("${credit.ledger.reservation-timeout:600000}")
+    private long reservationTimeout;
+
+    @Value("${credit.ledger.reconcile-batch-size:200}")
+    private int reconcileBatchSize;
+
+    private volatile boolean groupReady;
+
+    /**
+     * 最近一次对账结果
+     */
+    private volatile Map<String, Object> lastReconcile = new LinkedHashMap<>();
+
+    @PostConstruct
+    public void init() {
+        if (ledger.isEnabled()) {
+            ensureGroup();
+        }
+    }
+
+    /**
+     * 批量写入流水：先处理本节点已读取但未确认的条目，再读取新条目
+     */
+    @Scheduled(fixedDelayString = "${credit.ledger.flush-interval:200}")
+    public void flush() {
+        if (!ledger.isEnabled() || !ensureGroup()) {
+            return;
+        }
+        try {
+            Consumer consumer = Consumer.from(GROUP, nodeRegistry.getNodeId());
+            while (flushBatch(read(consumer, ReadOffset.from("0")))) {
+                // 处理完积压的条目
+            }
+            while (flushBatch(read(consumer, ReadOffset.lastConsumed()))) {
+                // 一次调度内持续写入，直到没有新条目
+            }
+        } catch (Exception e) {
+            log.error("积分流水写入失败", e);
+        }
+    }
+
+    /**
+     * 定期对账
+     */
+    @Scheduled(initialDelay = 30000, fixedDelayString = "${credit.ledger.reconcile-interval:300000}")
+    public void reconcile() {
+        if (!ledger.isEnabled() || !ensureGroup()) {
+            return;
+        }
+        String token = nodeRegistry.getNodeId() + ":" + UUID.randomUUID();
+        Boolean locked = stringRedisTemplate.opsForValue()
+                .setIfAbsent(RECONCILE_LOCK_KEY, token, 10, TimeUnit.MINUTES);
+        if (!Boolean.TRUE.equals(locked)) {
+            return;
+        }
+
+        int claimed = 0;
+        int released = 0;
+        int committed = 0;
+        int mismatched = 0;
+        int checked = 0;
+        try {
+            claimed = claimStale();
+
+            List<Long> userIds = new ArrayList<>();
+            try (Cursor<String> cursor = stringRedisTemplate.opsForSet()
+                    .scan(CreditLedger.USERS_KEY, ScanOptions.scanOptions().count(reconcileBatchSize).build())) {
+                while (cursor.hasNext()) {
+                    userIds.add(Long.valueOf(cursor.next()));
+                    if (userIds.size() >= reconcileBatchSize) {
+                        int[] settled = settleStale(userIds);
+                        committed += settled[0];
+                        released += settled[1];
+                        mismatched += compare(userIds);
+                        checked += userIds.size();
+                        userIds.clear();
+                    }
+                }
+            }
+            if (!userIds.isEmpty()) {
+                int[] settled = settleStale(userIds);
+                committed += settled[0];
+                released += settled[1];
+                mismatched += compare(userIds);
+                checked += userIds.size();
+            }
+        } catch (Exception e) {
+            log.error("积分对账失败", e);
+        } finally {
+            stringRedisTemplate.execute(UNLOCK_SCRIPT, Collections.singletonList(RECONCILE_LOCK_KEY), token);
+        }
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("time", LocalDateTime.now().toString());
+        result.put("checked", checked);
+        result.put("mismatched", mismatched);
+        result.put("committedReservations", committed);
+        result.put("releasedReservations", released);
+        result.put("claimedEntries", claimed);
+        lastReconcile = result;
+        if (mismatched > 0 || committed > 0 || released > 0 || claimed > 0) {
+            log.warn("积分对账完成: {}", result);
+        }
+    }
+
+    /**
+     * 流水写入情况（监控使用）
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", ledger.isEnabled());
+        if (ledger.isEnabled()) {
+            stats.put("journalLength", stringRedisTemplate.opsForStream().size(CreditLedger.JOURNAL_KEY));
+            stats.put("pending", stringRedisTemplate.opsForStream()
+                    .pending(CreditLedger.JOURNAL_KEY, GROUP).getTotalPendingMessages());
+            stats.put("cachedUsers", stringRedisTemplate.opsForSet().size(CreditLedger.USERS_KEY));
+            stats.put("outboxPending", outboxMapper.selectCount(null));
+            stats.put("lastReconcile", lastReconcile);
+        }
+        return stats;
+    }
+
+    private List<MapRecord<String, Object, Object>> read(Consumer consumer, ReadOffset offset) {
+        List<MapRecord<String, Object, Object>> records = stringRedisTemplate.opsForStream().read(consumer,
+                StreamReadOptions.empty().count(batchSize),
+                StreamOffset.create(CreditLedger.JOURNAL_KEY, offset));
+        return records == null ? new ArrayList<>() : records;
+    }
+
+    /**
+     * 写入一批流水
+     * @return 是否写满一批（可能还有后续条目）
+     */
+    private boolean flushBatch(List<MapRecord<String, Object, Object>> records) {
+        if (records.isEmpty()) {
+            return false;
+        }
+
+        List<CreditLog> logs = new ArrayList<>(records.size());
+        for (MapRecord<String, Object, Object> record : records) {
+            logs.add(toCreditLog(record));
+        }
+        Map<Long, Integer> applied = transactionTemplate.execute(status -> apply(logs));
+
+        applied.forEach(ledger::markFlushed);
+        RecordId[] ids = records.stream().map(MapRecord::getId).toArray(RecordId[]::new);
+        stringRedisTemplate.opsForStream().acknowledge(CreditLedger.JOURNAL_KEY, GROUP, ids);
+        stringRedisTemplate.opsForStream().delete(CreditLedger.JOURNAL_KEY, ids);
+        log.debug("积分流水写入完成: {}条", logs.size());
+        return records.size() >= batchSize;
+    }
+
+    /**
+     * 在事务中写入流水并更新余额，已写入过的条目跳过
+     * @return 各用户本次确认的条目数（包括跳过的条目）
+     */
+    private Map<Long, Integer> apply(List<CreditLog> logs) {
+        List<Long> taskIds = logs.stream().map(CreditLog::getTaskId).filter(Objects::nonNull).collect(Collectors.toList());
+        LambdaQueryWrapper<CreditLog> wrapper = new LambdaQueryWrapper<>();
+        wrapper.select(CreditLog::getJournalId, CreditLog::getTaskId, CreditLog::getType)
+                .in(CreditLog::getJournalId, logs.stream().map(CreditLog::getJournalId).collect(Collectors.toList()));
+        if (!taskIds.isEmpty()) {
+            wrapper.or().in(CreditLog::getTaskId, taskIds);
+        }
+        Set<String> written = new HashSet<>();
+        for (CreditLog existing : creditLogMapper.selectList(wrapper)) {
+            if (existing.getJournalId() != null) {
+                written.add(existing.getJournalId());
+            }
+            if (existing.getTaskId() != null) {
+                written.add(existing.getTaskId() + ":" + existing.getType());
+            }
+        }
+
+        Map<Long, Integer> counts = new LinkedHashMap<>();
+        Map<Long, Integer> amounts = new LinkedHashMap<>();
+        List<CreditLog> pending = new ArrayList<>();
+        for (CreditLog creditLog : logs) {
+            counts.merge(creditLog.getUserId(), 1, Integer::sum);
+            String taskKey = creditLog.getTaskId() == null ? null : creditLog.getTaskId() + ":" + creditLog.getType();
+            if (written.contains(creditLog.getJournalId()) || (taskKey != null && !written.add(taskKey))) {
+                continue;
+            }
+            amounts.merge(creditLog.getUserId(), creditLog.getAmount(), Integer::sum);
+            pending.add(creditLog);
+        }
+
+        if (!pending.isEmpty()) {
+            userMapper.addCreditsBatch(amounts);
+            creditLogMapper.insertBatch(pending);
+        }
+        return counts;
+    }
+
+    private CreditLog toCreditLog(MapRecord<String, Object, Object> record) {
+        Map<Object, Object> value = record.getValue();
+        CreditLog creditLog = new CreditLog();
+        creditLog.setJournalId(record.getId().getValue());
+        creditLog.setUserId(Long.valueOf(String.valueOf(value.get("userId"))));
+        creditLog.setAmount(Integer.valueOf(String.valueOf(value.get("amount"))));
+        creditLog.setType(Integer.valueOf(String.valueOf(value.get("type"))));
+        creditLog.setBalance(Integer.valueOf(String.valueOf(value.get("balance"))));
+        creditLog.setDescription(emptyToNull(value.get("description")));
+        String orderId = emptyToNull(value.get("orderId"));
+        creditLog.setOrderId(orderId == null ? null : Long.valueOf(orderId));
+        String taskId = emptyToNull(value.get("taskId"));
+        creditLog.setTaskId(taskId == null ? null : Long.valueOf(taskId));
+        return creditLog;
+    }
+
+    /**
+     * 接管其他节点超过 claim-idle 仍未确认的条目，由本节点下次写入时处理
+     */
+    private int claimStale() {
+        PendingMessages pending = stringRedisTemplate.opsForStream()
+                .pending(CreditLedger.JOURNAL_KEY, GROUP, Range.unbounded(), batchSize);
+        List<RecordId> stale = new ArrayList<>();
+        for (PendingMessage message : pending) {
+            if (message.getElapsedTimeSinceLastDelivery().toMillis() >= claimIdle
+                    && !nodeRegistry.getNodeId().equals(message.getConsumerName())) {
+                stale.add(message.getId());
+            }
+        }
+        if (stale.isEmpty()) {
+            return 0;
+        }
+        return stringRedisTemplate.opsForStream().claim(CreditLedger.JOURNAL_KEY, GROUP, nodeRegistry.getNodeId(),
+                Duration.ofMillis(claimIdle), stale.toArray(new RecordId[0])).size();
+    }
+
+    /**
+     * 处理超时的预扣：关联的任务已保存时补做提交，否则退回
+     * @return [补做提交数, 退回数]
+     */
+    private int[] settleStale(List<Long> userIds) {
+        long expireBefore = System.currentTimeMillis() - reservationTimeout;
+        int committed = 0;
+        int released = 0;
+        for (Long userId : userIds) {
+            for (Map.Entry<Object, Object> entry : ledger.getReservations(userId).entrySet()) {
+                String reservationId = String.valueOf(entry.getKey());
+                String value = String.valueOf(entry.getValue());
+                // 积分:预扣时间:任务ID:描述（描述可能包含冒号）
+                String[] parts = value.split(":", 4);
+                if (Long.parseLong(parts[1]) >= expireBefore) {
+                    continue;
+                }
+                Long taskId = parts.length > 2 && StringUtils.hasText(parts[2]) ? Long.valueOf(parts[2]) : null;
+                if (taskId != null && videoTaskMapper.selectCount(
+                        new LambdaQueryWrapper<VideoTask>().eq(VideoTask::getId, taskId)) > 0) {
+                    log.warn("补做提交超时的积分预扣（任务已保存）, userId: {}, 任务: {}, 预扣: {}", userId, taskId, value);
+                    if (ledger.commit(userId, reservationId, taskId, parts.length > 3 ? parts[3] : null)) {
+                        committed++;
+                    }
+                } else {
+                    log.warn("退回超时的积分预扣, userId: {}, 预扣: {}", userId, value);
+                    ledger.release(userId, reservationId);
+                    released++;
+                }
+            }
+        }
+        return new int[]{committed, released};
+    }
+
+    /**
+     * 与MySQL余额比较
+     * @return 不一致的用户数
+     */
+    private int compare(List<Long> userIds) {
+        LambdaQueryWrapper<User> wrapper = new LambdaQueryWrapper<>();
+        wrapper.select(User::getId, User::getCredits).in(User::getId, userIds);
+        int mismatched = 0;
+        for (User user : userMapper.selectList(wrapper)) {
+            if (ledger.reconcile(user.getId(), user.getCredits())) {
+                log.warn("积分余额与MySQL不一致，已重新加载, userId: {}, MySQL余额: {}", user.getId(), user.getCredits());
+                mismatched++;
+            }
+        }
+        return mismatched;
+    }
+
+    private boolean ensureGroup() {
+        if (groupReady) {
+            return true;
+        }
+        try {
+            stringRedisTemplate.opsForStream().createGroup(CreditLedger.JOURNAL_KEY, ReadOffset.from("0"), GROUP);
+        } catch (Exception e) {
+            // 消费者组已存在（BUSYGROUP）
+            if (!String.valueOf(e.getMessage()).contains("BUSYGROUP")
+                    && !(e.getCause() != null && String.valueOf(e.getCause().getMessage()).contains("BUSYGROUP"))) {
+                log.warn("创建积分流水消费者组失败", e);
+                return false;
+            }
+        }
+        groupReady = true;
+        return true;
+    }
+
+    private String emptyToNull(Object value) {
+        String text = value == null ? null : String.valueOf(value);
+        return StringUtils.hasText(text) ? text : null;
+    }
+}
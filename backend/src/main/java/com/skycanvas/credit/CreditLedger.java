@@ -0,0 +1,309 @@
+package com.skycanvas.credit;
+
+import com.skycanvas.entity.CreditOutbox;
+import com.skycanvas.entity.User;
+import com.skycanvas.mapper.UserMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Redis积分账本
+ *
+ * 设计说明：
+ * 1. 用户余额首次使用时从 tb_user.credits 加载到Redis（credit:balance:{userId}），之后所有检查和变动都在Redis中用Lua脚本原子完成
+ * 2. 扣费分两步：reserve 检查余额并预扣（记录在 credit:reservation:{userId}，同时记录关联的任务ID和描述），
+ *    commit 把预扣转为正式扣费并写入流水日志，release 退回预扣（不产生流水）；
+ *    事务提交后未能提交的预扣，由对账按任务是否已保存决定补做提交还是退回（见 CreditJournalFlusher）
+ * 3. 正式的余额变动（扣费、充值、退款）与余额更新在同一个脚本中写入Redis Stream流水日志（credit:journal），
+ *    由 CreditJournalFlusher 批量写入 tb_user 和 tb_credit_log；Redis需开启AOF持久化
+ * 4. 增加（充值、退款）来自业务事务中写入的待入账记录（tb_credit_outbox，见 CreditOutboxRelay），
+ *    在 credit:applied:{taskId}:{type}（关联任务时，与 tb_credit_log 的 uk_task_type 一致）
+ *    或 credit:applied:outbox:{id} 记录已执行，重复写入不会重复增加
+ * 5. credit:unflushed:{userId} 记录用户尚未写入MySQL的流水数，对账时只有没有预扣和未写入流水的用户才与MySQL比较，
+ *    不一致时删除Redis余额，下次使用时重新从MySQL加载
+ *
+ * 注意：所有脚本都访问全局流水日志，要求Redis为单实例或主从部署（不支持Redis Cluster）
+ */
+@Slf4j
+@Component
+public class CreditLedger {
+
+    public static final String JOURNAL_KEY = "credit:journal";
+
+    static final String USERS_KEY = "credit:users";
+
+    private static final String BALANCE_KEY_PREFIX = "credit:balance:";
+
+    private static final String RESERVATION_KEY_PREFIX = "credit:reservation:";
+
+    private static final String UNFLUSHED_KEY_PREFIX = "credit:unflushed:";
+
+    private static final String APPLIED_KEY_PREFIX = "credit:applied:";
+
+    /**
+     * 余额不在Redis中
+     */
+    private static final long NOT_LOADED = -2;
+
+    /**
+     * 余额不足
+     */
+    private static final long INSUFFICIENT = -1;
+
+    /**
+     * 同一任务已执行过相同类型的变动
+     */
+    private static final long DUPLICATE = -3;
+
+    /**
+     * KEYS: 余额、已加载用户集合；ARGV: MySQL余额、用户ID
+     * 已加载时保留Redis中的余额（可能包含尚未写入MySQL的变动）
+     */
+    private static final RedisScript<Long> LOAD_SCRIPT = new DefaultRedisScript<>(
+            "local b = redis.call('GET', KEYS[1]) " +
+            "if b then return tonumber(b) end " +
+            "redis.call('SET', KEYS[1], ARGV[1]) " +
+            "redis.call('SADD', KEYS[2], ARGV[2]) " +
+            "return tonumber(ARGV[1])", Long.class);
+
+    /**
+     * KEYS: 余额、预扣；ARGV: 积分、预扣ID、当前时间、任务ID:描述
+     * 预扣记录为 积分:预扣时间:任务ID:描述；返回预扣后的余额，-1余额不足，-2未加载
+     */
+    private static final RedisScript<Long> RESERVE_SCRIPT = new DefaultRedisScript<>(
+            "local b = redis.call('GET', KEYS[1]) " +
+            "if not b then return -2 end " +
+            "local amount = tonumber(ARGV[1]) " +
+            "if tonumber(b) < amount then return -1 end " +
+            "redis.call('HSET', KEYS[2], ARGV[2], ARGV[1] .. ':' .. ARGV[3] .. ':' .. ARGV[4]) " +
+            "return redis.call('DECRBY', KEYS[1], amount)", Long.class);
+
+    /**
+     * KEYS: 余额、预扣、流水日志、未写入流水数；ARGV: 预扣ID、用户ID、类型、描述、订单ID、任务ID
+     * 返回1表示已转为正式扣费，0表示预扣不存在（已提交或已退回）
+     */
+    private static final RedisScript<Long> COMMIT_SCRIPT = new DefaultRedisScript<>(
+            "local v = redis.call('HGET', KEYS[2], ARGV[1]) " +
+            "if not v then return 0 end " +
+            "redis.call('HDEL', KEYS[2], ARGV[1]) " +
+            "local amount = tonumber(string.match(v, '^(%d+)')) " +
+            "local b = redis.call('GET', KEYS[1]) or '0' " +
+            "redis.call('XADD', KEYS[3], '*', 'userId', ARGV[2], 'amount', tostring(-amount), 'type', ARGV[3], " +
+            "'balance', b, 'description', ARGV[4], 'orderId', ARGV[5], 'taskId', ARGV[6]) " +
+            "redis.call('INCR', KEYS[4]) " +
+            "return 1", Long.class);
+
+    /**
+     * KEYS: 余额、预扣；ARGV: 预扣ID
+     * 返回退回的积分，预扣不存在时返回0
+     */
+    private static final RedisScript<Long> RELEASE_SCRIPT = new DefaultRedisScript<>(
+            "local v = redis.call('HGET', KEYS[2], ARGV[1]) " +
+            "if not v then return 0 end " +
+            "redis.call('HDEL', KEYS[2], ARGV[1]) " +
+            "local amount = tonumber(string.match(v, '^(%d+)')) " +
+            "if redis.call('EXISTS', KEYS[1]) == 1 then redis.call('INCRBY', KEYS[1], amount) end " +
+            "return amount", Long.class);
+
+    /**
+     * KEYS: 余额、流水日志、未写入流水数、已执行记录；ARGV: 积分、用户ID、类型、描述、订单ID、任务ID、已执行记录过期时间（毫秒）
+     * 返回增加后的余额，-2未加载，-3重复
+     */
+    private static final RedisScript<Long> CREDIT_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('EXISTS', KEYS[1]) == 0 then return -2 end " +
+            "if not redis.call('SET', KEYS[4], '1', 'NX', 'PX', ARGV[7]) then return -3 end " +
+            "local b = redis.call('INCRBY', KEYS[1], tonumber(ARGV[1])) " +
+            "redis.call('XADD', KEYS[2], '*', 'userId', ARGV[2], 'amount', ARGV[1], 'type', ARGV[3], " +
+            "'balance', tostring(b), 'description', ARGV[4], 'orderId', ARGV[5], 'taskId', ARGV[6]) " +
+            "redis.call('INCR', KEYS[3]) " +
+            "return b", Long.class);
+
+    /**
+     * KEYS: 未写入流水数；ARGV: 已写入的条数
+     */
+    private static final RedisScript<Long> FLUSHED_SCRIPT = new DefaultRedisScript<>(
+            "local v = redis.call('DECRBY', KEYS[1], tonumber(ARGV[1])) " +
+            "if v <= 0 then redis.call('DEL', KEYS[1]) end " +
+            "return v", Long.class);
+
+    /**
+     * KEYS: 余额、预扣、未写入流水数、已加载用户集合；ARGV: MySQL余额、用户ID
+     * 没有预扣和未写入流水时与MySQL比较，不一致则删除Redis余额；返回1表示已删除
+     */
+    private static final RedisScript<Long> RECONCILE_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('HLEN', KEYS[2]) > 0 then return 0 end " +
+            "if tonumber(redis.call('GET', KEYS[3]) or '0') > 0 then return 0 end " +
+            "local b = redis.call('GET', KEYS[1]) " +
+            "if not b then redis.call('SREM', KEYS[4], ARGV[2]) return 0 end " +
+            "if b == ARGV[1] then return 0 end " +
+            "redis.call('DEL', KEYS[1]) " +
+            "redis.call('SREM', KEYS[4], ARGV[2]) " +
+            "return 1", Long.class);
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Autowired
+    private UserMapper userMapper;
+
+    @Value("${credit.ledger.enabled:false}")
+    private boolean enabled;
+
+    /**
+     * 已执行记录的保存时间，需大于待入账记录的最长补写时间
+     */
+    @Value("${credit.ledger.idempotency-ttl:604800}")
+    private long idempotencyTtl;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 查询余额（包含预扣）
+     */
+    public int getBalance(Long userId) {
+        String balance = stringRedisTemplate.opsForValue().get(BALANCE_KEY_PREFIX + userId);
+        return balance != null ? Integer.parseInt(balance) : load(userId);
+    }
+
+    /**
+     * 预扣积分，记录关联的任务ID和描述，对账时用于补做提交
+     * @return 预扣ID，用于commit或release
+     */
+    public String reserve(Long userId, int amount, Long taskId, String description) {
+        String reservationId = UUID.randomUUID().toString().replace("-", "");
+        Long result = executeLoaded(userId, RESERVE_SCRIPT,
+                Arrays.asList(balanceKey(userId), reservationKey(userId)),
+                String.valueOf(amount), reservationId, String.valueOf(System.currentTimeMillis()),
+                toArg(taskId) + ":" + nullToEmpty(description));
+        if (result == INSUFFICIENT) {
+            throw new RuntimeException("积分余额不足");
+        }
+        return reservationId;
+    }
+
+    /**
+     * 预扣转为正式扣费，写入流水日志
+     * @return 是否由本次调用提交（重复提交或已退回时返回false）
+     */
+    public boolean commit(Long userId, String reservationId, Long taskId, String description) {
+        Long result = stringRedisTemplate.execute(COMMIT_SCRIPT,
+                Arrays.asList(balanceKey(userId), reservationKey(userId), JOURNAL_KEY, unflushedKey(userId)),
+                reservationId, String.valueOf(userId), "2", nullToEmpty(description), "", toArg(taskId));
+        return result != null && result == 1L;
+    }
+
+    /**
+     * 退回预扣，不产生流水（重复退回是安全的）
+     */
+    public void release(Long userId, String reservationId) {
+        stringRedisTemplate.execute(RELEASE_SCRIPT,
+                Arrays.asList(balanceKey(userId), reservationKey(userId)), reservationId);
+    }
+
+    /**
+     * 按待入账记录增加积分（充值、退款），写入流水日志
+     * 关联任务时同一任务同一类型只执行一次，否则同一待入账记录只执行一次
+     * @return 增加后的余额（重复调用时为当前余额）
+     */
+    public int credit(CreditOutbox record) {
+        Long userId = record.getUserId();
+        String appliedKey = record.getTaskId() != null
+                ? APPLIED_KEY_PREFIX + record.getTaskId() + ":" + record.getType()
+                : APPLIED_KEY_PREFIX + "outbox:" + record.getId();
+        Long balance = executeLoaded(userId, CREDIT_SCRIPT,
+                Arrays.asList(balanceKey(userId), JOURNAL_KEY, unflushedKey(userId), appliedKey),
+                String.valueOf(record.getAmount()), String.valueOf(userId), String.valueOf(record.getType()),
+                nullToEmpty(record.getDescription()), toArg(record.getOrderId()), toArg(record.getTaskId()),
+                String.valueOf(idempotencyTtl * 1000));
+        if (balance == DUPLICATE) {
+            log.info("待入账记录{}已执行（任务: {}, 类型: {}），忽略重复调用", record.getId(), record.getTaskId(), record.getType());
+            return getBalance(userId);
+        }
+        return balance.intValue();
+    }
+
+    /**
+     * 用户的流水已写入MySQL
+     */
+    void markFlushed(Long userId, int count) {
+        stringRedisTemplate.execute(FLUSHED_SCRIPT,
+                Collections.singletonList(unflushedKey(userId)), String.valueOf(count));
+    }
+
+    /**
+     * 与MySQL余额对账
+     * @return Redis余额与MySQL不一致并已删除时返回true
+     */
+    boolean reconcile(Long userId, int mysqlCredits) {
+        Long result = stringRedisTemplate.execute(RECONCILE_SCRIPT,
+                Arrays.asList(balanceKey(userId), reservationKey(userId), unflushedKey(userId), USERS_KEY),
+                String.valueOf(mysqlCredits), String.valueOf(userId));
+        return result != null && result == 1L;
+    }
+
+    /**
+     * 用户的预扣（key: 预扣ID，value: 积分:预扣时间:任务ID:描述，升级前的预扣只有 积分:预扣时间）
+     */
+    Map<Object, Object> getReservations(Long userId) {
+        return stringRedisTemplate.opsForHash().entries(reservationKey(userId));
+    }
+
+    /**
+     * 执行需要余额已加载的脚本，未加载时从MySQL加载后重试一次
+     */
+    private Long executeLoaded(Long userId, RedisScript<Long> script, List<String> keys, String... args) {
+        Long result = stringRedisTemplate.execute(script, keys, (Object[]) args);
+        if (result != null && result == NOT_LOADED) {
+            load(userId);
+            result = stringRedisTemplate.execute(script, keys, (Object[]) args);
+        }
+        if (result == null || result == NOT_LOADED) {
+            throw new IllegalStateException("积分余额加载失败: " + userId);
+        }
+        return result;
+    }
+
+    private int load(Long userId) {
+        User user = userMapper.selectById(userId);
+        if (user == null) {
+            throw new RuntimeException("用户不存在");
+        }
+        Long balance = stringRedisTemplate.execute(LOAD_SCRIPT,
+                Arrays.asList(balanceKey(userId), USERS_KEY),
+                String.valueOf(user.getCredits()), String.valueOf(userId));
+        return balance == null ? user.getCredits() : balance.intValue();
+    }
+
+    private String balanceKey(Long userId) {
+        return BALANCE_KEY_PREFIX + userId;
+    }
+
+    private String reservationKey(Long userId) {
+        return RESERVATION_KEY_PREFIX + userId;
+    }
+
+    private String unflushedKey(Long userId) {
+        return UNFLUSHED_KEY_PREFIX + userId;
+    }
+
+    private String toArg(Long value) {
+        return value == null ? "" : String.valueOf(value);
+    }
+
+    private String nullToEmpty(String value) {
+        return value == null ? "" : value;
+    }
+}
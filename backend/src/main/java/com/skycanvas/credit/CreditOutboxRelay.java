@@ -0,0 +1,142 @@
+package com.skycanvas.credit;
+
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.skycanvas.entity.CreditOutbox;
+import com.skycanvas.mapper.CreditOutboxMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * 积分待入账记录写入账本
+ *
+ * 设计说明：
+ * 1. 开启Redis积分账本时，充值和退款在业务事务中写入 tb_credit_outbox，与订单、任务状态一起提交或回滚
+ * 2. 事务提交后立即写入账本（CreditLedger.credit）并删除记录；写入失败（如Redis不可用）或节点宕机时记录保留
+ * 3. 定时补写超过 outbox-delay 的记录；账本按任务或记录ID去重，多个节点同时补写、
+ *    写入账本后删除记录前宕机都不会重复增加
+ */
+@Slf4j
+@Component
+public class CreditOutboxRelay {
+
+    @Autowired
+    private CreditLedger ledger;
+
+    @Autowired
+    private CreditOutboxMapper outboxMapper;
+
+    @Value("${credit.ledger.outbox-delay:30000}")
+    private long delay;
+
+    @Value("${credit.ledger.outbox-batch-size:200}")
+    private int batchSize;
+
+    /**
+     * 在当前事务中写入待入账记录，事务提交后写入账本
+     * @return 是否已写入，关联任务且同一任务已有同类型记录时返回false
+     */
+    public boolean add(CreditOutbox record) {
+        outboxMapper.insertIgnore(record);
+        if (record.getId() == null) {
+            log.info("任务{}已有类型{}的待入账记录，忽略重复写入", record.getTaskId(), record.getType());
+            return false;
+        }
+        afterCommit(() -> apply(record));
+        return true;
+    }
+
+    /**
+     * 在当前事务中批量写入关联任务的待入账记录（批量退款），事务提交后写入账本
+     * 同一任务已有同类型记录的跳过
+     */
+    public void addBatch(List<CreditOutbox> records) {
+        if (records.isEmpty()) {
+            return;
+        }
+        outboxMapper.insertIgnoreBatch(records);
+        // 多行插入不能可靠地回填ID（重复的行也会分配），提交后按任务查询
+        List<Long> taskIds = records.stream().map(CreditOutbox::getTaskId).collect(Collectors.toList());
+        Integer type = records.get(0).getType();
+        afterCommit(() -> {
+            LambdaQueryWrapper<CreditOutbox> wrapper = new LambdaQueryWrapper<>();
+            wrapper.in(CreditOutbox::getTaskId, taskIds).eq(CreditOutbox::getType, type);
+            outboxMapper.selectList(wrapper).forEach(this::apply);
+        });
+    }
+
+    /**
+     * 补写提交后未能写入账本的记录
+     */
+    @Scheduled(initialDelay = 30000, fixedDelayString = "${credit.ledger.outbox-interval:10000}")
+    public void relay() {
+        if (!ledger.isEnabled()) {
+            return;
+        }
+        try {
+            Long lastId = 0L;
+            while (true) {
+                LambdaQueryWrapper<CreditOutbox> wrapper = new LambdaQueryWrapper<>();
+                wrapper.gt(CreditOutbox::getId, lastId)
+                        .lt(CreditOutbox::getCreateTime, LocalDateTime.now().minus(delay, ChronoUnit.MILLIS))
+                        .orderByAsc(CreditOutbox::getId)
+                        .last("LIMIT " + batchSize);
+                List<CreditOutbox> records = outboxMapper.selectList(wrapper);
+                int applied = 0;
+                for (CreditOutbox record : records) {
+                    if (apply(record)) {
+                        applied++;
+                    }
+                }
+                if (applied > 0) {
+                    log.warn("补写积分待入账记录: {}/{}", applied, records.size());
+                }
+                if (records.size() < batchSize || applied == 0) {
+                    return;
+                }
+                lastId = records.get(records.size() - 1).getId();
+            }
+        } catch (Exception e) {
+            log.error("补写积分待入账记录失败", e);
+        }
+    }
+
+    /**
+     * 写入账本并删除记录，失败时保留记录等待补写
+     */
+    private boolean apply(CreditOutbox record) {
+        try {
+            ledger.credit(record);
+            outboxMapper.deleteById(record.getId());
+            return true;
+        } catch (Exception e) {
+            log.warn("积分写入账本失败，稍后补写, 记录: {}, userId: {}", record.getId(), record.getUserId(), e);
+            return false;
+        }
+    }
+
+    /**
+     * 在当前事务提交后执行（无事务时立即执行），事务回滚时不执行
+     */
+    private void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package com.skycanvas.dto;
+
+import lombok.Data;
+
+import javax.validation.Valid;
+import javax.validation.constraints.NotEmpty;
+import javax.validation.constraints.Size;
+import java.util.List;
+
+/**
+ * 批量视频生成请求
+ */
+@Data
+public class VideoBatchGenerationRequest {
+
+    /**
+     * 生成请求列表
+     */
+    @NotEmpty(message = "生成请求不能为空")
+    @Size(max = 50, message = "单次最多提交50个任务")
+    @Valid
+    private List<VideoGenerationRequest> items;
+}
@@ -0,0 +1,22 @@
+package com.skycanvas.dto;
+
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * 批量视频生成结果
+ */
+@Data
+public class VideoBatchTaskDTO {
+
+    /**
+     * 消耗的总积分（单个任务失败时按任务退回）
+     */
+    private Integer totalCredits;
+
+    /**
+     * 各任务信息，与请求顺序一致（metadata.dbTaskId 为查询用的任务ID）
+     */
+    private List<VideoTaskDTO> tasks;
+}
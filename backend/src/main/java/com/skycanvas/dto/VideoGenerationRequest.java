@@ -56,5 +56,10 @@ public class VideoGenerationRequest {
      * 扩展参数
      */
     private Map<String, Object> extraParams;
+
+    /**
+     * 是否允许复用相同请求的生成结果（开启结果缓存时生效，默认允许）
+     */
+    private Boolean reuseResult;
 }
 
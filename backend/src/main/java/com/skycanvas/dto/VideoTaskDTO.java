@@ -49,6 +49,16 @@ public class VideoTaskDTO {
      */
     private Long estimatedTime;
 
+    /**
+     * 排队位置（从1开始，0表示无需排队，仅排队中的任务返回）
+     */
+    private Integer queuePosition;
+
+    /**
+     * 当前队列深度
+     */
+    private Integer queueDepth;
+
     /**
      * 元数据
      */
@@ -0,0 +1,50 @@
+package com.skycanvas.dto;
+
+import lombok.Data;
+
+/**
+ * 任务状态推送消息（WebSocket: /user/queue/tasks）
+ */
+@Data
+public class VideoTaskPushMessage {
+
+    /**
+     * 接收用户ID
+     */
+    private Long userId;
+
+    /**
+     * 数据库任务ID（与 GET /video/task/{taskId} 中的taskId一致）
+     */
+    private Long id;
+
+    /**
+     * 状态：PENDING/PROCESSING/COMPLETED/FAILED
+     */
+    private String status;
+
+    /**
+     * 进度：0-100
+     */
+    private Integer progress;
+
+    /**
+     * 视频URL（完成后）
+     */
+    private String videoUrl;
+
+    /**
+     * 封面URL
+     */
+    private String coverUrl;
+
+    /**
+     * 错误信息
+     */
+    private String errorMessage;
+
+    /**
+     * 状态变更时间戳
+     */
+    private Long timestamp;
+}
@@ -55,6 +55,11 @@ public class CreditLog implements Serializable {
      */
     private Long taskId;
 
+    /**
+     * 流水日志ID（通过Redis积分账本写入时的日志条目ID，用于防止重复写入）
+     */
+    private String journalId;
+
     /**
      * 创建时间
      */
@@ -0,0 +1,58 @@
+package com.skycanvas.entity;
+
+import com.baomidou.mybatisplus.annotation.*;
+import lombok.Data;
+import java.io.Serializable;
+import java.time.LocalDateTime;
+
+/**
+ * 积分待入账实体（开启Redis积分账本时，充值和退款在业务事务中写入，写入账本后删除）
+ */
+@Data
+@TableName("tb_credit_outbox")
+public class CreditOutbox implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * ID
+     */
+    @TableId(type = IdType.AUTO)
+    private Long id;
+
+    /**
+     * 用户ID
+     */
+    private Long userId;
+
+    /**
+     * 增加的积分
+     */
+    private Integer amount;
+
+    /**
+     * 类型：1-充值，3-退款
+     */
+    private Integer type;
+
+    /**
+     * 描述
+     */
+    private String description;
+
+    /**
+     * 关联订单ID（充值时）
+     */
+    private Long orderId;
+
+    /**
+     * 关联任务ID（退款时）
+     */
+    private Long taskId;
+
+    /**
+     * 创建时间
+     */
+    @TableField(fill = FieldFill.INSERT)
+    private LocalDateTime createTime;
+}
@@ -41,6 +41,11 @@ public class CreditPackage implements Serializable {
      */
     private Integer bonusCredits;
 
+    /**
+     * 调度权重：购买过该套餐的用户排队时按此权重分配启动机会（默认1.00）
+     */
+    private BigDecimal priorityWeight;
+
     /**
      * 排序
      */
@@ -47,7 +47,9 @@ public class User implements Serializable {
 
     /**
      * 积分余额
+     * 只通过积分服务的条件更新修改，updateById不写入此字段，避免用旧值覆盖并发的扣减
      */
+    @TableField(updateStrategy = FieldStrategy.NEVER)
     private Integer credits;
 
     /**
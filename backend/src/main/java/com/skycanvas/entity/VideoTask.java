@@ -80,6 +80,16 @@ public class VideoTask implements Serializable {
      */
     private String errorMsg;
 
+    /**
+     * 处理节点ID
+     */
+    private String nodeId;
+
+    /**
+     * 请求指纹（规范化请求参数的SHA-256，用于复用相同请求的生成结果）
+     */
+    private String fingerprint;
+
     /**
      * 是否删除
      */
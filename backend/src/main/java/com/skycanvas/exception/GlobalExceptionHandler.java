@@ -2,6 +2,7 @@ package com.skycanvas.exception;
 
 import com.skycanvas.common.Result;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.converter.HttpMessageNotReadableException;
 import org.springframework.validation.BindException;
@@ -15,6 +16,7 @@ import org.springframework.web.bind.annotation.RestControllerAdvice;
 import org.springframework.web.method.annotation.MethodArgumentTypeMismatchException;
 import org.springframework.web.servlet.NoHandlerFoundException;
 
+import javax.servlet.http.HttpServletResponse;
 import javax.validation.ConstraintViolation;
 import javax.validation.ConstraintViolationException;
 import java.util.stream.Collectors;
@@ -118,6 +120,17 @@ public class GlobalExceptionHandler {
         return Result.error(404, "请求的资源不存在");
     }
 
+    /**
+     * 处理请求过多异常（429），写入Retry-After响应头
+     */
+    @ExceptionHandler(TooManyRequestsException.class)
+    @ResponseStatus(HttpStatus.TOO_MANY_REQUESTS)
+    public Result<?> handleTooManyRequestsException(TooManyRequestsException e, HttpServletResponse response) {
+        log.warn("请求过多: {}", e.getMessage());
+        response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()));
+        return Result.error(e.getCode(), e.getMessage());
+    }
+
     /**
      * 处理业务异常
      */
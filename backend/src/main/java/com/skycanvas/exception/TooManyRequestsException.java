@@ -0,0 +1,25 @@
+package com.skycanvas.exception;
+
+import lombok.Getter;
+
+/**
+ * 请求过多异常（429）
+ * 携带建议的重试等待时间，由全局异常处理器写入Retry-After响应头
+ */
+@Getter
+public class TooManyRequestsException extends BusinessException {
+
+    /**
+     * 建议重试等待时间（秒）
+     */
+    private final long retryAfterSeconds;
+
+    public TooManyRequestsException(String message, long retryAfterSeconds) {
+        super(429, message);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public static TooManyRequestsException of(String message, long retryAfterSeconds) {
+        return new TooManyRequestsException(message, retryAfterSeconds);
+    }
+}
@@ -57,23 +57,17 @@ public class AuthInterceptor implements HandlerInterceptor {
         // 移除前缀
         token = token.substring(prefix.length()).trim();
 
-        // 验证Token
-        if (!jwtUtils.validateToken(token)) {
+        // 验证Token并获取用户ID（一次解析）
+        Long userId = jwtUtils.verify(token);
+        if (userId == null) {
             log.warn("Token验证失败，请求路径: {}", request.getRequestURI());
             writeErrorResponse(response, "Token已过期或无效，请重新登录");
             return false;
         }
 
-        // 获取用户ID并设置到ThreadLocal上下文中（而不是RequestAttribute）
-        try {
-            Long userId = jwtUtils.getUserIdFromToken(token);
-            UserContextHolder.setUserId(userId);
-            log.debug("用户认证成功，userId: {}, 请求路径: {}", userId, request.getRequestURI());
-        } catch (Exception e) {
-            log.error("解析Token失败，请求路径: {}", request.getRequestURI(), e);
-            writeErrorResponse(response, "Token解析失败，请重新登录");
-            return false;
-        }
+        // 设置到ThreadLocal上下文中（而不是RequestAttribute）
+        UserContextHolder.setUserId(userId);
+        log.debug("用户认证成功，userId: {}, 请求路径: {}", userId, request.getRequestURI());
 
         return true;
     }
@@ -0,0 +1,128 @@
+package com.skycanvas.interceptor;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.skycanvas.common.Result;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+import javax.annotation.PostConstruct;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 运行状态监控接口（/monitor/**）访问控制
+ *
+ * 监控接口输出熔断、连接池、积分账本等内部状态，不对普通用户开放（不使用用户Token认证）：
+ * 1. 请求来源地址（直连地址，不读取 X-Forwarded-For，避免伪造）在 monitor.allowed-networks 内时放行
+ * 2. 或请求头 X-Monitor-Token 与 monitor.token 一致时放行（监控面板不在内网时使用，为空表示不启用）
+ */
+@Slf4j
+@Component
+public class MonitorAccessInterceptor implements HandlerInterceptor {
+
+    private static final String TOKEN_HEADER = "X-Monitor-Token";
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${monitor.allowed-networks:127.0.0.1/32,::1/128}")
+    private List<String> allowedNetworks;
+
+    @Value("${monitor.token:}")
+    private String token;
+
+    private final List<Network> networks = new ArrayList<>();
+
+    @PostConstruct
+    public void init() {
+        for (String network : allowedNetworks) {
+            if (StringUtils.hasText(network)) {
+                networks.add(Network.parse(network.trim()));
+            }
+        }
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) throws IOException {
+        if (isTokenValid(request.getHeader(TOKEN_HEADER)) || isAllowedAddress(request.getRemoteAddr())) {
+            return true;
+        }
+        log.warn("拒绝访问监控接口, 来源: {}, 请求路径: {}", request.getRemoteAddr(), request.getRequestURI());
+        response.setStatus(403);
+        response.setContentType("application/json;charset=UTF-8");
+        response.setCharacterEncoding("UTF-8");
+        response.getWriter().write(objectMapper.writeValueAsString(Result.forbidden("无权访问监控接口")));
+        return false;
+    }
+
+    private boolean isTokenValid(String value) {
+        return StringUtils.hasText(token) && value != null
+                && MessageDigest.isEqual(token.getBytes(StandardCharsets.UTF_8), value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private boolean isAllowedAddress(String remoteAddr) {
+        byte[] address;
+        try {
+            address = InetAddress.getByName(remoteAddr).getAddress();
+        } catch (UnknownHostException e) {
+            return false;
+        }
+        return networks.stream().anyMatch(network -> network.contains(address));
+    }
+
+    /**
+     * CIDR网段（IPv4或IPv6），不带前缀长度时表示单个地址
+     */
+    private static class Network {
+
+        private final byte[] address;
+
+        private final int prefixLength;
+
+        private Network(byte[] address, int prefixLength) {
+            this.address = address;
+            this.prefixLength = prefixLength;
+        }
+
+        static Network parse(String cidr) {
+            int slash = cidr.indexOf('/');
+            String host = slash < 0 ? cidr : cidr.substring(0, slash);
+            try {
+                byte[] address = InetAddress.getByName(host).getAddress();
+                int prefixLength = slash < 0 ? address.length * 8 : Integer.parseInt(cidr.substring(slash + 1));
+                return new Network(address, prefixLength);
+            } catch (UnknownHostException | NumberFormatException e) {
+                throw new IllegalArgumentException("monitor.allowed-networks 配置错误: " + cidr, e);
+            }
+        }
+
+        boolean contains(byte[] candidate) {
+            if (candidate.length != address.length) {
+                return false;
+            }
+            int fullBytes = prefixLength / 8;
+            for (int i = 0; i < fullBytes; i++) {
+                if (candidate[i] != address[i]) {
+                    return false;
+                }
+            }
+            int remainingBits = prefixLength % 8;
+            if (remainingBits == 0) {
+                return true;
+            }
+            int mask = 0xFF << (8 - remainingBits);
+            return (candidate[fullBytes] & mask) == (address[fullBytes] & mask);
+        }
+    }
+}
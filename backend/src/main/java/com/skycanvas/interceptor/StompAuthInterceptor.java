@@ -0,0 +1,67 @@
+package com.skycanvas.interceptor;
+
+import com.skycanvas.utils.JwtUtils;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageDeliveryException;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageHeaderAccessor;
+import org.springframework.stereotype.Component;
+
+import java.security.Principal;
+
+/**
+ * WebSocket(STOMP)认证拦截器
+ *
+ * 职责：
+ * 1. CONNECT时校验原生头中的JWT Token，并将用户ID绑定为会话身份（用于 /user/queue/** 投递）
+ * 2. 禁止直接订阅 /queue/**，用户只能通过 /user/queue/** 订阅自己的消息
+ */
+@Slf4j
+@Component
+public class StompAuthInterceptor implements ChannelInterceptor {
+
+    @Autowired
+    private JwtUtils jwtUtils;
+
+    @Value("${jwt.header}")
+    private String header;
+
+    @Value("${jwt.prefix}")
+    private String prefix;
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        StompHeaderAccessor accessor = MessageHeaderAccessor.getAccessor(message, StompHeaderAccessor.class);
+        if (accessor == null) {
+            return message;
+        }
+
+        if (StompCommand.CONNECT.equals(accessor.getCommand())) {
+            String token = accessor.getFirstNativeHeader(header);
+            if (token == null || !token.startsWith(prefix)) {
+                throw new MessageDeliveryException("未授权，请先登录");
+            }
+            token = token.substring(prefix.length()).trim();
+            Long verifiedUserId = jwtUtils.verify(token);
+            if (verifiedUserId == null) {
+                throw new MessageDeliveryException("Token已过期或无效，请重新登录");
+            }
+            String userId = String.valueOf(verifiedUserId);
+            Principal principal = () -> userId;
+            accessor.setUser(principal);
+            log.debug("WebSocket认证成功，userId: {}", userId);
+        } else if (StompCommand.SUBSCRIBE.equals(accessor.getCommand())) {
+            String destination = accessor.getDestination();
+            if (destination != null && destination.startsWith("/queue/")) {
+                throw new MessageDeliveryException("不允许订阅该目的地: " + destination);
+            }
+        }
+        return message;
+    }
+}
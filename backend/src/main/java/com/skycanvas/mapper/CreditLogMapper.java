@@ -2,12 +2,71 @@ package com.skycanvas.mapper;
 
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
 import com.skycanvas.entity.CreditLog;
+import org.apache.ibatis.annotations.Insert;
 import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Options;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Update;
+
+import java.util.List;
+import java.util.Map;
 
 /**
  * 积分记录Mapper
  */
 @Mapper
 public interface CreditLogMapper extends BaseMapper<CreditLog> {
-}
 
+    /**
+     * 插入积分记录，同一任务已有同类型记录（uk_task_type冲突）时不插入，其他错误照常抛出
+     * 余额先写0，变更余额后由 updateBalanceFromLastInsertId 补写
+     * 是否插入以回填的ID判断（重复时不回填）：连接默认返回匹配行数，重复时返回值同样为1
+     */
+    @Insert("INSERT INTO tb_credit_log (user_id, amount, type, balance, description, order_id, task_id) " +
+            "VALUES (#{userId}, #{amount}, #{type}, 0, #{description}, #{orderId}, #{taskId}) " +
+            "ON DUPLICATE KEY UPDATE id = id")
+    @Options(useGeneratedKeys = true, keyProperty = "id", keyColumn = "id")
+    int insertIgnore(CreditLog creditLog);
+
+    /**
+     * 补写余额：取当前连接上一次 UserMapper.deductCredits/addCredits 记录在 LAST_INSERT_ID 中的余额
+     */
+    @Update("UPDATE tb_credit_log SET balance = LAST_INSERT_ID() WHERE id = #{id}")
+    int updateBalanceFromLastInsertId(@Param("id") Long id);
+
+    /**
+     * 批量插入积分记录（单条多行INSERT）
+     */
+    @Insert("<script>" +
+            "INSERT INTO tb_credit_log (user_id, amount, type, balance, description, order_id, task_id, journal_id) VALUES " +
+            "<foreach collection='logs' item='l' separator=','>" +
+            "(#{l.userId}, #{l.amount}, #{l.type}, #{l.balance}, #{l.description}, #{l.orderId}, #{l.taskId}, #{l.journalId})" +
+            "</foreach>" +
+            "</script>")
+    int insertBatch(@Param("logs") List<CreditLog> logs);
+
+    /**
+     * 批量插入积分记录，同一任务已有同类型记录（uk_task_type冲突）的跳过，其他错误照常抛出
+     * 多行插入时返回值和回填的ID都不能区分哪些行已插入，调用方以记录中的余额占位值识别本次插入的行
+     */
+    @Insert("<script>" +
+            "INSERT INTO tb_credit_log (user_id, amount, type, balance, description, order_id, task_id) VALUES " +
+            "<foreach collection='logs' item='l' separator=','>" +
+            "(#{l.userId}, #{l.amount}, #{l.type}, #{l.balance}, #{l.description}, #{l.orderId}, #{l.taskId})" +
+            "</foreach>" +
+            " ON DUPLICATE KEY UPDATE id = id" +
+            "</script>")
+    int insertIgnoreBatch(@Param("logs") List<CreditLog> logs);
+
+    /**
+     * 批量补写余额
+     * @param balances key: 记录ID，value: 余额
+     */
+    @Update("<script>" +
+            "UPDATE tb_credit_log SET balance = CASE id " +
+            "<foreach collection='balances' index='id' item='balance'>WHEN #{id} THEN #{balance} </foreach>" +
+            "END WHERE id IN " +
+            "<foreach collection='balances' index='id' open='(' separator=',' close=')'>#{id}</foreach>" +
+            "</script>")
+    int updateBalanceBatch(@Param("balances") Map<Long, Integer> balances);
+}
@@ -0,0 +1,39 @@
+package com.skycanvas.mapper;
+
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.skycanvas.entity.CreditOutbox;
+import org.apache.ibatis.annotations.Insert;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Options;
+import org.apache.ibatis.annotations.Param;
+
+import java.util.List;
+
+/**
+ * 积分待入账Mapper
+ */
+@Mapper
+public interface CreditOutboxMapper extends BaseMapper<CreditOutbox> {
+
+    /**
+     * 插入待入账记录，同一任务已有同类型记录（uk_task_type冲突）时不插入，其他错误照常抛出
+     * 是否插入以回填的ID判断（重复时不回填）：连接默认返回匹配行数，重复时返回值同样为1
+     */
+    @Insert("INSERT INTO tb_credit_outbox (user_id, amount, type, description, order_id, task_id) " +
+            "VALUES (#{userId}, #{amount}, #{type}, #{description}, #{orderId}, #{taskId}) " +
+            "ON DUPLICATE KEY UPDATE id = id")
+    @Options(useGeneratedKeys = true, keyProperty = "id", keyColumn = "id")
+    int insertIgnore(CreditOutbox outbox);
+
+    /**
+     * 批量插入待入账记录（单条多行INSERT），重复的任务跳过，其他错误照常抛出
+     */
+    @Insert("<script>" +
+            "INSERT INTO tb_credit_outbox (user_id, amount, type, description, order_id, task_id) VALUES " +
+            "<foreach collection='records' item='r' separator=','>" +
+            "(#{r.userId}, #{r.amount}, #{r.type}, #{r.description}, #{r.orderId}, #{r.taskId})" +
+            "</foreach>" +
+            " ON DUPLICATE KEY UPDATE id = id" +
+            "</script>")
+    int insertIgnoreBatch(@Param("records") List<CreditOutbox> records);
+}
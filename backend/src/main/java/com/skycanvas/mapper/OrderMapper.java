@@ -3,11 +3,23 @@ package com.skycanvas.mapper;
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
 import com.skycanvas.entity.Order;
 import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+
+import java.math.BigDecimal;
 
 /**
  * 订单Mapper
  */
 @Mapper
 public interface OrderMapper extends BaseMapper<Order> {
-}
 
+    /**
+     * 用户已支付订单中套餐调度权重的最大值
+     * @return 最大权重，没有已支付订单时返回null
+     */
+    @Select("SELECT MAX(p.priority_weight) FROM tb_order o " +
+            "JOIN tb_credit_package p ON p.id = o.package_id " +
+            "WHERE o.user_id = #{userId} AND o.status = 1")
+    BigDecimal selectMaxPriorityWeight(@Param("userId") Long userId);
+}
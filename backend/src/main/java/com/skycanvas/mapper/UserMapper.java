@@ -3,11 +3,50 @@ package com.skycanvas.mapper;
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
 import com.skycanvas.entity.User;
 import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.annotations.Update;
+
+import java.util.Map;
 
 /**
  * 用户Mapper
  */
 @Mapper
 public interface UserMapper extends BaseMapper<User> {
-}
 
+    /**
+     * 扣减积分（单条条件更新，余额不足时不更新）
+     * 更新后的余额通过 LAST_INSERT_ID(expr) 记录在当前连接上，随后用 selectLastBalance 读取
+     * @return 更新行数，0表示用户不存在或余额不足
+     */
+    @Update("UPDATE tb_user SET credits = LAST_INSERT_ID(credits - #{amount}) " +
+            "WHERE id = #{userId} AND deleted = 0 AND credits >= #{amount}")
+    int deductCredits(@Param("userId") Long userId, @Param("amount") int amount);
+
+    /**
+     * 增加积分（单条更新），更新后的余额同样记录在 LAST_INSERT_ID 中
+     * @return 更新行数，0表示用户不存在
+     */
+    @Update("UPDATE tb_user SET credits = LAST_INSERT_ID(credits + #{amount}) " +
+            "WHERE id = #{userId} AND deleted = 0")
+    int addCredits(@Param("userId") Long userId, @Param("amount") int amount);
+
+    /**
+     * 读取当前连接上一次 deductCredits/addCredits 后的余额（需在同一事务内、插入其他记录之前调用）
+     */
+    @Select("SELECT LAST_INSERT_ID()")
+    Integer selectLastBalance();
+
+    /**
+     * 批量增加积分（单条UPDATE，按用户ID分别增加）
+     * @param amounts key: 用户ID，value: 增加的积分
+     */
+    @Update("<script>" +
+            "UPDATE tb_user SET credits = credits + CASE id " +
+            "<foreach collection='amounts' index='userId' item='amount'>WHEN #{userId} THEN #{amount} </foreach>" +
+            "END WHERE id IN " +
+            "<foreach collection='amounts' index='userId' open='(' separator=',' close=')'>#{userId}</foreach>" +
+            "</script>")
+    int addCreditsBatch(@Param("amounts") Map<Long, Integer> amounts);
+}
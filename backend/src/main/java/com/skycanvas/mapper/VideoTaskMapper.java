@@ -2,12 +2,30 @@ package com.skycanvas.mapper;
 
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
 import com.skycanvas.entity.VideoTask;
+import org.apache.ibatis.annotations.Insert;
 import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Options;
+import org.apache.ibatis.annotations.Param;
+
+import java.util.List;
 
 /**
  * 视频任务Mapper
  */
 @Mapper
 public interface VideoTaskMapper extends BaseMapper<VideoTask> {
-}
 
+    /**
+     * 批量插入任务（单条多行INSERT），自增ID回填到每个任务
+     */
+    @Insert("<script>" +
+            "INSERT INTO tb_video_task (user_id, task_id, provider, prompt, params, status, progress, " +
+            "cost_credits, node_id, fingerprint, create_time) VALUES " +
+            "<foreach collection='tasks' item='t' separator=','>" +
+            "(#{t.userId}, #{t.taskId}, #{t.provider}, #{t.prompt}, #{t.params}, #{t.status}, #{t.progress}, " +
+            "#{t.costCredits}, #{t.nodeId}, #{t.fingerprint}, #{t.createTime})" +
+            "</foreach>" +
+            "</script>")
+    @Options(useGeneratedKeys = true, keyProperty = "tasks.id", keyColumn = "id")
+    int insertBatch(@Param("tasks") List<VideoTask> tasks);
+}
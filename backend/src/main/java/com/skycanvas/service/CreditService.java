@@ -1,32 +1,80 @@
 package com.skycanvas.service;
 
+import cn.hutool.cache.CacheUtil;
+import cn.hutool.cache.impl.TimedCache;
 import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
-import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
+import com.skycanvas.common.CursorResult;
+import com.skycanvas.common.PageCursor;
 import com.skycanvas.common.PageResult;
+import com.skycanvas.credit.CreditLedger;
+import com.skycanvas.credit.CreditOutboxRelay;
 import com.skycanvas.entity.CreditLog;
+import com.skycanvas.entity.CreditOutbox;
 import com.skycanvas.entity.User;
+import com.skycanvas.entity.VideoTask;
+import com.skycanvas.exception.BusinessException;
 import com.skycanvas.mapper.CreditLogMapper;
 import com.skycanvas.mapper.UserMapper;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import javax.annotation.PostConstruct;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
 
 /**
  * 积分服务
+ * 开启Redis积分账本（credit.ledger.enabled）时，余额检查和变动在Redis中完成，流水异步写入MySQL（见 CreditLedger）；
+ * 充值和退款先在当前事务中写入待入账记录，提交后再写入账本（见 CreditOutboxRelay）；
+ * 关闭时直接在MySQL中条件更新
  */
 @Slf4j
 @Service
 public class CreditService {
 
+    /**
+     * 批量退款时积分记录的余额占位值（正式余额不为负）
+     */
+    private static final int PENDING_BALANCE = -1;
+
     @Autowired
     private CreditLogMapper creditLogMapper;
 
     @Autowired
     private UserMapper userMapper;
 
+    @Autowired
+    private CreditLedger ledger;
+
+    @Autowired
+    private CreditOutboxRelay outboxRelay;
+
+    @Value("${pagination.max-size:100}")
+    private long maxPageSize;
+
+    @Value("${pagination.total-cache-ttl:60000}")
+    private long totalCacheTtl;
+
+    /**
+     * 用户积分记录总数（key: userId），避免每次翻页都COUNT
+     */
+    private TimedCache<Long, Long> totals;
+
+    @PostConstruct
+    public void init() {
+        totals = CacheUtil.newTimedCache(totalCacheTtl);
+        totals.schedulePrune(totalCacheTtl);
+    }
+
     /**
      * 充值积分
      * @param userId 用户ID
@@ -35,30 +83,29 @@ public class CreditService {
      */
     @Transactional(rollbackFor = Exception.class)
     public void recharge(Long userId, Integer amount, Long orderId) {
-        User user = userMapper.selectById(userId);
-        if (user == null) {
-            throw new RuntimeException("用户不存在");
+        if (ledger.isEnabled()) {
+            outboxRelay.add(outbox(userId, amount, 1, "充值" + amount + "积分", orderId, null));
+            return;
         }
-
-        // 更新用户积分
-        user.setCredits(user.getCredits() + amount);
-        userMapper.updateById(user);
+        int balance = add(userId, amount);
 
         // 记录积分流水
         CreditLog creditLog = new CreditLog();
         creditLog.setUserId(userId);
         creditLog.setAmount(amount);
         creditLog.setType(1);  // 充值
-        creditLog.setBalance(user.getCredits());
+        creditLog.setBalance(balance);
         creditLog.setDescription("充值" + amount + "积分");
         creditLog.setOrderId(orderId);
         creditLogMapper.insert(creditLog);
 
-        log.info("用户{}充值积分成功: +{}, 余额: {}", userId, amount, user.getCredits());
+        log.info("用户{}充值积分成功: +{}, 余额: {}", userId, amount, balance);
     }
 
     /**
      * 消费积分
+     * 余额检查和扣减在一条条件更新中完成，并发扣减不会丢失更新，也不会扣成负数；
+     * 关联任务时同一任务只扣一次（先插入流水，uk_task_type冲突时直接返回）
      * @param userId 用户ID
      * @param amount 积分数量
      * @param taskId 任务ID
@@ -66,83 +113,308 @@ public class CreditService {
      */
     @Transactional(rollbackFor = Exception.class)
     public void consume(Long userId, Integer amount, Long taskId, String description) {
-        User user = userMapper.selectById(userId);
-        if (user == null) {
-            throw new RuntimeException("用户不存在");
+        if (ledger.isEnabled()) {
+            consumeReserved(userId, amount, taskId, description);
+            return;
         }
-
-        // 检查积分余额
-        if (user.getCredits() < amount) {
-            throw new RuntimeException("积分余额不足");
-        }
-
-        // 扣除积分
-        user.setCredits(user.getCredits() - amount);
-        userMapper.updateById(user);
-
         // 记录积分流水
         CreditLog creditLog = new CreditLog();
         creditLog.setUserId(userId);
         creditLog.setAmount(-amount);  // 负数表示消费
         creditLog.setType(2);  // 消费
-        creditLog.setBalance(user.getCredits());
         creditLog.setDescription(description);
         creditLog.setTaskId(taskId);
-        creditLogMapper.insert(creditLog);
+        creditLogMapper.insertIgnore(creditLog);
+        if (creditLog.getId() == null) {
+            log.info("任务{}已扣费，忽略重复扣费", taskId);
+            return;
+        }
 
-        log.info("用户{}消费积分成功: -{}, 余额: {}", userId, amount, user.getCredits());
+        // 扣除积分（失败时抛出异常，事务回滚删除流水）
+        if (userMapper.deductCredits(userId, amount) == 0) {
+            if (userMapper.selectById(userId) == null) {
+                throw new RuntimeException("用户不存在");
+            }
+            throw new RuntimeException("积分余额不足");
+        }
+        creditLogMapper.updateBalanceFromLastInsertId(creditLog.getId());
+
+        log.info("用户{}消费积分成功: -{}", userId, amount);
+    }
+
+    /**
+     * 按任务消费积分（批量创建任务时使用）
+     * 一次条件更新扣除总积分（余额不足时整体失败），每个任务一条积分记录，一次批量插入；
+     * 记录中的余额按任务顺序依次扣减
+     * @param tasks 已保存的任务（需包含id、costCredits）
+     */
+    @Transactional(rollbackFor = Exception.class)
+    public void consumeBatch(Long userId, List<VideoTask> tasks, String description) {
+        List<VideoTask> charged = tasks.stream()
+                .filter(task -> task.getCostCredits() != null && task.getCostCredits() > 0)
+                .collect(Collectors.toList());
+        if (charged.isEmpty()) {
+            return;
+        }
+        if (ledger.isEnabled()) {
+            for (VideoTask task : charged) {
+                consumeReserved(userId, task.getCostCredits(), task.getId(), description);
+            }
+            return;
+        }
+
+        int total = charged.stream().mapToInt(VideoTask::getCostCredits).sum();
+        if (userMapper.deductCredits(userId, total) == 0) {
+            if (userMapper.selectById(userId) == null) {
+                throw new RuntimeException("用户不存在");
+            }
+            throw new RuntimeException("积分余额不足");
+        }
+        // 从扣减后的余额倒推每条记录的余额
+        int balance = userMapper.selectLastBalance() + total;
+
+        List<CreditLog> logs = new ArrayList<>(charged.size());
+        for (VideoTask task : charged) {
+            balance -= task.getCostCredits();
+
+            CreditLog creditLog = new CreditLog();
+            creditLog.setUserId(userId);
+            creditLog.setAmount(-task.getCostCredits());
+            creditLog.setType(2);  // 消费
+            creditLog.setBalance(balance);
+            creditLog.setDescription(description);
+            creditLog.setTaskId(task.getId());
+            logs.add(creditLog);
+        }
+        creditLogMapper.insertBatch(logs);
+
+        log.info("用户{}批量消费积分成功: -{}, 任务数: {}", userId, total, logs.size());
     }
 
     /**
      * 退回积分（任务失败时）
+     * 同一任务只退一次：先插入流水，uk_task_type冲突时直接返回，重复调用只有一次插入冲突的开销
      * @param userId 用户ID
      * @param amount 积分数量
      * @param taskId 任务ID
      */
     @Transactional(rollbackFor = Exception.class)
     public void refund(Long userId, Integer amount, Long taskId) {
-        User user = userMapper.selectById(userId);
-        if (user == null) {
-            throw new RuntimeException("用户不存在");
+        if (ledger.isEnabled()) {
+            outboxRelay.add(outbox(userId, amount, 3, "任务失败，退回" + amount + "积分", null, taskId));
+            return;
         }
-
-        // 退回积分
-        user.setCredits(user.getCredits() + amount);
-        userMapper.updateById(user);
-
         // 记录积分流水
         CreditLog creditLog = new CreditLog();
         creditLog.setUserId(userId);
         creditLog.setAmount(amount);
         creditLog.setType(3);  // 退款
-        creditLog.setBalance(user.getCredits());
         creditLog.setDescription("任务失败，退回" + amount + "积分");
         creditLog.setTaskId(taskId);
-        creditLogMapper.insert(creditLog);
+        creditLogMapper.insertIgnore(creditLog);
+        if (creditLog.getId() == null) {
+            log.info("任务{}已退款，忽略重复退款", taskId);
+            return;
+        }
 
-        log.info("用户{}退回积分成功: +{}, 余额: {}", userId, amount, user.getCredits());
+        // 退回积分
+        if (userMapper.addCredits(userId, amount) == 0) {
+            throw new RuntimeException("用户不存在");
+        }
+        creditLogMapper.updateBalanceFromLastInsertId(creditLog.getId());
+
+        log.info("用户{}退回积分成功: +{}", userId, amount);
     }
 
     /**
-     * 获取积分记录
+     * 批量退回失败任务的积分（清理超时任务时使用）
+     * 积分记录一次批量插入（余额占位），已退款的任务（uk_task_type冲突）跳过；
+     * 再按本次插入的记录每个用户一次更新余额，记录中的余额按任务顺序依次累加后一次补写
+     * @param tasks 已标记为失败的任务（需包含id、userId、costCredits）
+     */
+    @Transactional(rollbackFor = Exception.class)
+    public void refundBatch(List<VideoTask> tasks) {
+        List<VideoTask> charged = tasks.stream()
+                .filter(task -> task.getCostCredits() != null && task.getCostCredits() > 0)
+                .collect(Collectors.toList());
+        if (ledger.isEnabled()) {
+            outboxRelay.addBatch(charged.stream()
+                    .map(task -> outbox(task.getUserId(), task.getCostCredits(), 3,
+                            "任务失败，退回" + task.getCostCredits() + "积分", null, task.getId()))
+                    .collect(Collectors.toList()));
+            return;
+        }
+        if (charged.isEmpty()) {
+            return;
+        }
+
+        List<CreditLog> logs = new ArrayList<>(charged.size());
+        for (VideoTask task : charged) {
+            CreditLog creditLog = new CreditLog();
+            creditLog.setUserId(task.getUserId());
+            creditLog.setAmount(task.getCostCredits());
+            creditLog.setType(3);  // 退款
+            creditLog.setBalance(PENDING_BALANCE);
+            creditLog.setDescription("任务失败，退回" + task.getCostCredits() + "积分");
+            creditLog.setTaskId(task.getId());
+            logs.add(creditLog);
+        }
+        creditLogMapper.insertIgnoreBatch(logs);
+
+        // 余额仍为占位值的是本次插入的记录：已提交的记录余额都已补写，其他事务未提交的记录不可见
+        LambdaQueryWrapper<CreditLog> insertedWrapper = new LambdaQueryWrapper<>();
+        insertedWrapper.select(CreditLog::getId, CreditLog::getUserId, CreditLog::getAmount)
+                .eq(CreditLog::getType, 3)
+                .eq(CreditLog::getBalance, PENDING_BALANCE)
+                .in(CreditLog::getTaskId, charged.stream().map(VideoTask::getId).collect(Collectors.toList()))
+                .orderByAsc(CreditLog::getId);
+        List<CreditLog> inserted = creditLogMapper.selectList(insertedWrapper);
+        if (inserted.isEmpty()) {
+            log.info("批量退款的任务均已退款, 任务数: {}", charged.size());
+            return;
+        }
+
+        Map<Long, Integer> amounts = new LinkedHashMap<>();
+        for (CreditLog creditLog : inserted) {
+            amounts.merge(creditLog.getUserId(), creditLog.getAmount(), Integer::sum);
+        }
+        userMapper.addCreditsBatch(amounts);
+
+        // 从更新后的余额倒推每条记录的余额
+        LambdaQueryWrapper<User> wrapper = new LambdaQueryWrapper<>();
+        wrapper.select(User::getId, User::getCredits).in(User::getId, amounts.keySet());
+        Map<Long, Integer> running = new LinkedHashMap<>();
+        for (User user : userMapper.selectList(wrapper)) {
+            running.put(user.getId(), user.getCredits() - amounts.getOrDefault(user.getId(), 0));
+        }
+        Map<Long, Integer> balances = new LinkedHashMap<>();
+        for (CreditLog creditLog : inserted) {
+            // 用户不存在时没有增加积分，余额记为0
+            int balance = running.containsKey(creditLog.getUserId())
+                    ? running.merge(creditLog.getUserId(), creditLog.getAmount(), Integer::sum) : 0;
+            balances.put(creditLog.getId(), balance);
+        }
+        creditLogMapper.updateBalanceBatch(balances);
+
+        log.info("批量退回积分成功, 任务数: {}, 用户数: {}", inserted.size(), amounts.size());
+    }
+
+    /**
+     * 获取积分记录（只支持第一页，后续页使用 getCreditLogsByCursor）
      * @param userId 用户ID
      * @param current 当前页
      * @param size 每页大小
      */
     public PageResult<CreditLog> getCreditLogs(Long userId, Long current, Long size) {
-        Page<CreditLog> page = new Page<>(current, size);
+        if (current > 1) {
+            throw BusinessException.of(400, "请使用 /credit/logs/cursor 获取后续页");
+        }
+        long limit = pageLimit(size);
+        List<CreditLog> records = selectLogs(userId, null, limit);
+        return PageResult.of(records, countLogs(userId), 1L, limit);
+    }
+
+    /**
+     * 每页条数限制在 [1, pagination.max-size]
+     */
+    private long pageLimit(Long size) {
+        return Math.max(1, Math.min(size, maxPageSize));
+    }
+
+    /**
+     * 按游标获取积分记录
+     * 按 (create_time, id) 倒序从上一页最后一条之后读取（idx_user_create_time），不跳过行，也不COUNT
+     * @param cursor 上一页返回的游标，为空时读取第一页
+     * @param size 每页大小
+     * @param withTotal 是否返回总数（缓存 pagination.total-cache-ttl）
+     */
+    public CursorResult<CreditLog> getCreditLogsByCursor(Long userId, String cursor, Long size, boolean withTotal) {
+        long limit = pageLimit(size);
+        // 多读一条判断是否还有下一页
+        List<CreditLog> records = selectLogs(userId, PageCursor.decode(cursor), limit + 1);
+        String nextCursor = null;
+        if (records.size() > limit) {
+            records = new ArrayList<>(records.subList(0, (int) limit));
+            CreditLog last = records.get(records.size() - 1);
+            nextCursor = new PageCursor(last.getCreateTime(), last.getId()).encode();
+        }
+        return CursorResult.of(records, nextCursor, withTotal ? countLogs(userId) : null);
+    }
+
+    private List<CreditLog> selectLogs(Long userId, PageCursor cursor, long limit) {
         LambdaQueryWrapper<CreditLog> wrapper = new LambdaQueryWrapper<>();
         wrapper.eq(CreditLog::getUserId, userId);
-        wrapper.orderByDesc(CreditLog::getCreateTime);
+        if (cursor != null) {
+            LocalDateTime time = cursor.getCreateTime();
+            Long id = cursor.getId();
+            wrapper.and(w -> w.lt(CreditLog::getCreateTime, time)
+                    .or(o -> o.eq(CreditLog::getCreateTime, time).lt(CreditLog::getId, id)));
+        }
+        wrapper.orderByDesc(CreditLog::getCreateTime, CreditLog::getId)
+                .last("LIMIT " + limit);
+        return creditLogMapper.selectList(wrapper);
+    }
 
-        Page<CreditLog> result = creditLogMapper.selectPage(page, wrapper);
-        return PageResult.of(result.getRecords(), result.getTotal(), current, size);
+    private long countLogs(Long userId) {
+        Long total = totals.get(userId, false);
+        if (total == null) {
+            total = creditLogMapper.selectCount(new LambdaQueryWrapper<CreditLog>().eq(CreditLog::getUserId, userId));
+            totals.put(userId, total);
+        }
+        return total;
+    }
+
+    /**
+     * 通过Redis积分账本扣费：立即预扣（余额不足时抛出异常），当前事务提交后转为正式扣费，回滚时退回预扣
+     * 提交后转正式扣费失败（Redis异常、节点宕机）时预扣保留，由对账按任务是否已保存补做提交
+     */
+    private void consumeReserved(Long userId, int amount, Long taskId, String description) {
+        String reservationId = ledger.reserve(userId, amount, taskId, description);
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            ledger.commit(userId, reservationId, taskId, description);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status == STATUS_COMMITTED) {
+                    ledger.commit(userId, reservationId, taskId, description);
+                } else {
+                    ledger.release(userId, reservationId);
+                }
+            }
+        });
+        log.info("用户{}预扣积分: -{}", userId, amount);
+    }
+
+    private CreditOutbox outbox(Long userId, int amount, int type, String description, Long orderId, Long taskId) {
+        CreditOutbox outbox = new CreditOutbox();
+        outbox.setUserId(userId);
+        outbox.setAmount(amount);
+        outbox.setType(type);
+        outbox.setDescription(description);
+        outbox.setOrderId(orderId);
+        outbox.setTaskId(taskId);
+        return outbox;
+    }
+
+    /**
+     * 增加积分，返回更新后的余额（必须在事务内调用，保证读取余额使用同一连接）
+     */
+    private int add(Long userId, int amount) {
+        if (userMapper.addCredits(userId, amount) == 0) {
+            throw new RuntimeException("用户不存在");
+        }
+        return userMapper.selectLastBalance();
     }
 
     /**
      * 获取用户积分余额
      */
     public Integer getBalance(Long userId) {
+        if (ledger.isEnabled()) {
+            return ledger.getBalance(userId);
+        }
         User user = userMapper.selectById(userId);
         return user != null ? user.getCredits() : 0;
     }
@@ -1,6 +1,7 @@
 package com.skycanvas.service;
 
 import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.baomidou.mybatisplus.core.conditions.update.LambdaUpdateWrapper;
 import com.skycanvas.dto.LoginRequest;
 import com.skycanvas.dto.PhoneBindRequest;
 import com.skycanvas.dto.UserInfoDTO;
@@ -18,6 +19,8 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.client.RestTemplate;
 
+import javax.annotation.Resource;
+
 import java.util.HashMap;
 import java.util.Map;
 import java.util.concurrent.TimeUnit;
@@ -38,7 +41,7 @@ public class UserService {
     @Autowired
     private RedisUtils redisUtils;
 
-    @Autowired
+    @Resource(name = "wechatRestTemplate")
     private RestTemplate restTemplate;
 
     @Autowired
@@ -236,10 +239,10 @@ public class UserService {
      * 更新用户积分
      */
     public void updateCredits(Long userId, Integer credits) {
-        User user = userMapper.selectById(userId);
-        if (user != null) {
-            user.setCredits(credits);
-            userMapper.updateById(user);
+        LambdaUpdateWrapper<User> wrapper = new LambdaUpdateWrapper<>();
+        wrapper.set(User::getCredits, credits)
+                .eq(User::getId, userId);
+        if (userMapper.update(null, wrapper) > 0) {
             // 清除缓存
             redisUtils.delete("user:info:" + userId);
         }
@@ -249,13 +252,19 @@ public class UserService {
      * 增加视频生成次数
      */
     public void incrementTotalVideos(Long userId) {
-        User user = userMapper.selectById(userId);
-        if (user != null) {
-            user.setTotalVideos(user.getTotalVideos() + 1);
-            userMapper.updateById(user);
-            // 清除缓存
-            redisUtils.delete("user:info:" + userId);
-        }
+        incrementTotalVideos(userId, 1);
+    }
+
+    /**
+     * 增加视频生成次数（批量提交）
+     */
+    public void incrementTotalVideos(Long userId, int count) {
+        LambdaUpdateWrapper<User> wrapper = new LambdaUpdateWrapper<>();
+        wrapper.setSql("total_videos = total_videos + " + count)
+                .eq(User::getId, userId);
+        userMapper.update(null, wrapper);
+        // 清除缓存
+        redisUtils.delete("user:info:" + userId);
     }
 
     /**
@@ -1,23 +1,43 @@
 package com.skycanvas.service;
 
+import cn.hutool.cache.CacheUtil;
+import cn.hutool.cache.impl.TimedCache;
 import com.alibaba.fastjson2.JSON;
 import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
-import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
+import com.skycanvas.common.CursorResult;
+import com.skycanvas.common.PageCursor;
 import com.skycanvas.common.PageResult;
+import com.skycanvas.dto.VideoBatchGenerationRequest;
+import com.skycanvas.dto.VideoBatchTaskDTO;
 import com.skycanvas.dto.VideoGenerationRequest;
 import com.skycanvas.dto.VideoTaskDTO;
 import com.skycanvas.entity.VideoTask;
+import com.skycanvas.exception.BusinessException;
 import com.skycanvas.mapper.VideoTaskMapper;
 import com.skycanvas.video.VideoGenerationService;
 import com.skycanvas.video.VideoProviderFactory;
+import com.skycanvas.video.callback.VideoCallbackHandler;
+import com.skycanvas.video.routing.VideoProviderRouter;
+import com.skycanvas.video.task.ClusterNodeRegistry;
+import com.skycanvas.video.task.DispatchCommand;
+import com.skycanvas.video.task.ProviderAdmissionController;
+import com.skycanvas.video.task.QueueInfo;
+import com.skycanvas.video.task.TaskStatusSnapshot;
+import com.skycanvas.video.task.VideoResultCache;
+import com.skycanvas.video.task.VideoTaskDispatcher;
+import com.skycanvas.video.task.VideoTaskStateManager;
+import com.skycanvas.video.task.VideoTaskStatusCache;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.scheduling.annotation.Async;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import javax.annotation.PostConstruct;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 
@@ -40,6 +60,47 @@ public class VideoTaskService {
     @Autowired
     private UserService userService;
 
+    @Autowired
+    private VideoTaskDispatcher dispatcher;
+
+    @Autowired
+    private VideoTaskStateManager stateManager;
+
+    @Autowired
+    private ProviderAdmissionController admissionController;
+
+    @Autowired
+    private ClusterNodeRegistry nodeRegistry;
+
+    @Autowired
+    private VideoTaskStatusCache statusCache;
+
+    @Autowired
+    private VideoResultCache resultCache;
+
+    @Autowired
+    private VideoProviderRouter providerRouter;
+
+    @Autowired
+    private VideoCallbackHandler callbackHandler;
+
+    @Value("${pagination.max-size:100}")
+    private long maxPageSize;
+
+    @Value("${pagination.total-cache-ttl:60000}")
+    private long totalCacheTtl;
+
+    /**
+     * 用户任务总数（key: userId），避免每次翻页都COUNT
+     */
+    private TimedCache<Long, Long> totals;
+
+    @PostConstruct
+    public void init() {
+        totals = CacheUtil.newTimedCache(totalCacheTtl);
+        totals.schedulePrune(totalCacheTtl);
+    }
+
     /**
      * 创建视频生成任务
      */
@@ -54,11 +115,19 @@ public class VideoTaskService {
             throw new RuntimeException("积分不足，需要" + requiredCredits + "积分");
         }
 
-        // 3. 扣除积分
-        creditService.consume(userId, requiredCredits, null, "生成" + request.getDuration() + "秒视频");
+        // 3. 开启结果缓存时，相同请求直接复用已有结果，或合并到正在生成的相同任务
+        String fingerprint = resultCache.fingerprint(request);
+        if (fingerprint != null) {
+            VideoTask hit = resultCache.findCompleted(fingerprint);
+            Long leaderId = hit == null ? resultCache.findLeader(fingerprint) : null;
+            if (hit != null || leaderId != null) {
+                return createReusedTask(request, userId, requiredCredits, hit, leaderId);
+            }
+        }
 
-        // 4. 获取provider
-        VideoGenerationService provider = providerFactory.getProvider();
+        // 4. 按延迟和健康度选择provider并预占排队名额（队列已满时在扣积分前快速拒绝）
+        VideoGenerationService provider = providerRouter.select();
+        QueueInfo queueInfo = admissionController.reserve(provider.getProviderName());
 
         // 5. 先保存任务到数据库（使用临时taskId）
         VideoTask task = new VideoTask();
@@ -70,19 +139,30 @@ public class VideoTaskService {
         task.setStatus(0);  // 队列中
         task.setProgress(0);
         task.setCostCredits(requiredCredits);
+        task.setNodeId(nodeRegistry.getNodeId());
+        task.setFingerprint(fingerprint);
         videoTaskMapper.insert(task);
         
         Long dbTaskId = task.getId();
         log.info("任务已保存到数据库, ID: {}, userId: {}", dbTaskId, userId);
 
-        // 6. 增加用户生成次数
+        // 6. 扣除积分（关联任务ID，同一任务只扣一次；余额不足时事务回滚，任务一并删除）
+        creditService.consume(userId, requiredCredits, dbTaskId, "生成" + request.getDuration() + "秒视频");
+
+        // 7. 增加用户生成次数
         userService.incrementTotalVideos(userId);
 
-        // 7. 异步提交到第三方API并更新任务
-        submitTaskAsync(dbTaskId, request, provider, userId, requiredCredits);
+        // 8. 事务提交后交给分发器，由分发器异步提交到第三方API
+        dispatcher.dispatchAfterCommit(new DispatchCommand(
+                dbTaskId, userId, provider.getProviderName(), request, requiredCredits));
+        if (fingerprint != null) {
+            resultCache.registerLeaderAfterCommit(fingerprint, dbTaskId);
+        }
 
-        // 8. 返回任务信息
-        VideoTaskDTO taskDTO = convertToDTO(task);
+        // 9. 返回任务信息
+        VideoTaskDTO taskDTO = stateManager.convertToDTO(task);
+        taskDTO.setQueuePosition(queueInfo.getPosition());
+        taskDTO.setQueueDepth(queueInfo.getDepth());
         Map<String, Object> metadata = new HashMap<>();
         metadata.put("dbTaskId", dbTaskId);
         metadata.put("provider", provider.getProviderName());
@@ -92,123 +172,295 @@ public class VideoTaskService {
     }
 
     /**
-     * 异步提交任务到第三方API
+     * 批量创建视频生成任务
+     * 一条多行INSERT写入所有任务，按任务扣除积分（一次更新余额，每个任务一条积分记录），事务提交后连续分发
+     * 单个任务提交或生成失败时按该任务的 cost_credits 单独退回积分
+     * 批量任务不参与结果复用（同一批中的相同请求通常是有意生成多个版本）
      */
-    @Async
-    public void submitTaskAsync(Long dbTaskId, VideoGenerationRequest request, 
-                                 VideoGenerationService provider, Long userId, Integer requiredCredits) {
-        log.info("异步提交任务到第三方API, dbTaskId: {}", dbTaskId);
-        
-        try {
-            // 提交到第三方API
-            VideoTaskDTO taskDTO = provider.submitTask(request);
-            
-            // 更新数据库中的taskId和状态
-            VideoTask task = videoTaskMapper.selectById(dbTaskId);
-            if (task != null) {
-                task.setTaskId(taskDTO.getTaskId());
-                task.setStatus(mapStatusToInt(taskDTO.getStatus()));
-                task.setProgress(taskDTO.getProgress() != null ? taskDTO.getProgress() : 0);
-                task.setVideoUrl(taskDTO.getVideoUrl());
-                task.setCoverUrl(taskDTO.getCoverUrl());
-                task.setDuration(taskDTO.getDuration());
-                videoTaskMapper.updateById(task);
-                
-                log.info("任务提交成功, dbTaskId: {}, providerTaskId: {}", dbTaskId, taskDTO.getTaskId());
-                
-                // 启动状态检查
-                checkTaskStatusAsync(dbTaskId, taskDTO.getTaskId(), provider.getProviderName());
-            }
-        } catch (Exception e) {
-            log.error("提交任务到第三方API失败, dbTaskId: {}", dbTaskId, e);
-            
-            // 更新任务状态为失败
-            VideoTask task = videoTaskMapper.selectById(dbTaskId);
-            if (task != null) {
-                task.setStatus(3);  // 失败
-                task.setErrorMsg("提交任务失败: " + e.getMessage());
-                videoTaskMapper.updateById(task);
-            }
-            
-            // 退回积分
-            creditService.refund(userId, requiredCredits, dbTaskId);
+    @Transactional(rollbackFor = Exception.class)
+    public VideoBatchTaskDTO createBatchTask(VideoBatchGenerationRequest batchRequest, Long userId) {
+        List<VideoGenerationRequest> requests = batchRequest.getItems();
+
+        // 1. 计算所需积分
+        List<Integer> credits = new ArrayList<>(requests.size());
+        int totalCredits = 0;
+        for (VideoGenerationRequest request : requests) {
+            int required = calculateCredits(request);
+            credits.add(required);
+            totalCredits += required;
+        }
+
+        // 2. 检查积分余额
+        Integer balance = creditService.getBalance(userId);
+        if (balance < totalCredits) {
+            throw new RuntimeException("积分不足，需要" + totalCredits + "积分");
+        }
+
+        // 3. 选择provider并一次预占全部排队名额
+        VideoGenerationService provider = providerRouter.select();
+        List<QueueInfo> queueInfos = admissionController.reserve(provider.getProviderName(), requests.size());
+
+        // 4. 批量保存任务
+        LocalDateTime now = LocalDateTime.now();
+        List<VideoTask> tasks = new ArrayList<>(requests.size());
+        for (int i = 0; i < requests.size(); i++) {
+            VideoGenerationRequest request = requests.get(i);
+            VideoTask task = new VideoTask();
+            task.setUserId(userId);
+            task.setTaskId("temp_" + UUID.randomUUID().toString().substring(0, 16));  // 临时ID
+            task.setProvider(provider.getProviderName());
+            task.setPrompt(request.getPrompt());
+            task.setParams(JSON.toJSONString(request));
+            task.setStatus(0);  // 队列中
+            task.setProgress(0);
+            task.setCostCredits(credits.get(i));
+            task.setNodeId(nodeRegistry.getNodeId());
+            task.setCreateTime(now);
+            tasks.add(task);
+        }
+        videoTaskMapper.insertBatch(tasks);
+        log.info("批量任务已保存到数据库, 数量: {}, userId: {}", tasks.size(), userId);
+
+        // 5. 按任务扣除积分
+        creditService.consumeBatch(userId, tasks, "批量生成视频（共" + requests.size() + "个）");
+
+        // 6. 增加用户生成次数
+        userService.incrementTotalVideos(userId, tasks.size());
+
+        // 7. 事务提交后连续分发
+        List<DispatchCommand> commands = new ArrayList<>(tasks.size());
+        List<VideoTaskDTO> taskDTOs = new ArrayList<>(tasks.size());
+        for (int i = 0; i < tasks.size(); i++) {
+            VideoTask task = tasks.get(i);
+            commands.add(new DispatchCommand(task.getId(), userId, provider.getProviderName(),
+                    requests.get(i), task.getCostCredits()));
+
+            VideoTaskDTO taskDTO = stateManager.convertToDTO(task);
+            taskDTO.setQueuePosition(queueInfos.get(i).getPosition());
+            taskDTO.setQueueDepth(queueInfos.get(i).getDepth());
+            Map<String, Object> metadata = new HashMap<>();
+            metadata.put("dbTaskId", task.getId());
+            metadata.put("provider", provider.getProviderName());
+            taskDTO.setMetadata(metadata);
+            taskDTOs.add(taskDTO);
+        }
+        dispatcher.dispatchAllAfterCommit(commands);
+
+        VideoBatchTaskDTO result = new VideoBatchTaskDTO();
+        result.setTotalCredits(totalCredits);
+        result.setTasks(taskDTOs);
+        return result;
+    }
+
+    /**
+     * 创建复用结果的任务，按 hit-credit-ratio 收取积分
+     * 命中缓存时直接复制已有任务的视频和封面；否则挂在正在生成的相同任务上，随其完成或失败
+     */
+    private VideoTaskDTO createReusedTask(VideoGenerationRequest request, Long userId, Integer requiredCredits,
+                                          VideoTask hit, Long leaderId) {
+        int credits = resultCache.hitCredits(requiredCredits);
+
+        VideoTask task = new VideoTask();
+        task.setUserId(userId);
+        task.setPrompt(request.getPrompt());
+        task.setParams(JSON.toJSONString(request));
+        task.setCostCredits(credits);
+        task.setNodeId(nodeRegistry.getNodeId());
+        if (hit != null) {
+            task.setTaskId(VideoResultCache.HIT_PREFIX + hit.getId());
+            task.setProvider(hit.getProvider());
+            task.setStatus(2);  // 成功
+            task.setProgress(100);
+            task.setVideoUrl(hit.getVideoUrl());
+            task.setCoverUrl(hit.getCoverUrl());
+            task.setDuration(hit.getDuration());
+            task.setCompleteTime(LocalDateTime.now());
+        } else {
+            task.setTaskId(VideoResultCache.FOLLOWER_PREFIX + leaderId);
+            task.setProvider(providerRouter.select().getProviderName());
+            task.setStatus(0);  // 等待相同任务完成
+            task.setProgress(0);
         }
+        videoTaskMapper.insert(task);
+        log.info("任务复用相同请求的结果, ID: {}, userId: {}, 命中缓存: {}", task.getId(), userId, hit != null);
+
+        if (credits > 0) {
+            creditService.consume(userId, credits, task.getId(), "生成" + request.getDuration() + "秒视频（复用结果）");
+        }
+
+        userService.incrementTotalVideos(userId);
+
+        VideoTaskDTO taskDTO = stateManager.convertToDTO(task);
+        Map<String, Object> metadata = new HashMap<>();
+        metadata.put("dbTaskId", task.getId());
+        metadata.put("provider", task.getProvider());
+        metadata.put("reused", true);
+        taskDTO.setMetadata(metadata);
+        return taskDTO;
     }
 
     /**
      * 查询任务状态
+     * 优先读取状态缓存：终态直接返回；生成中的任务超过新鲜度窗口后才查询provider，且同一任务同时只有一个查询
      */
     public VideoTaskDTO queryTask(Long taskId, Long userId) {
+        TaskStatusSnapshot snapshot = statusCache.get(taskId);
+        if (snapshot == null) {
+            VideoTask task = videoTaskMapper.selectById(taskId);
+            if (task == null || !task.getUserId().equals(userId)) {
+                throw new RuntimeException("任务不存在");
+            }
+            snapshot = statusCache.put(task.getId(), task.getUserId(), task.getProvider(),
+                    stateManager.convertToDTO(task));
+        } else if (!userId.equals(snapshot.getUserId())) {
+            throw new RuntimeException("任务不存在");
+        }
+
+        VideoTaskDTO dto = snapshot.getState();
+
+        // 如果任务还在生成中，查询最新状态（队列中的任务尚未提交到第三方API）
+        if ("PROCESSING".equals(dto.getStatus()) && !statusCache.isFresh(snapshot)) {
+            String providerName = snapshot.getProvider();
+            String providerTaskId = dto.getTaskId();
+            dto = statusCache.refresh(taskId, dto, () -> refreshFromProvider(taskId, providerName, providerTaskId));
+        }
+
+        // 排队中的任务附带排队位置
+        if ("PENDING".equals(dto.getStatus())) {
+            QueueInfo queueInfo = admissionController.getQueueInfo(taskId);
+            if (queueInfo != null) {
+                dto.setQueuePosition(queueInfo.getPosition());
+                dto.setQueueDepth(queueInfo.getDepth());
+            }
+        }
+        return dto;
+    }
+
+    /**
+     * 取消任务
+     * 条件更新保证与轮询、回调、提交结果并发时只有一方生效，积分只退回一次；
+     * 所有节点停止轮询并释放名额，已提交到provider的任务在后台取消
+     */
+    public VideoTaskDTO cancelTask(Long taskId, Long userId) {
         VideoTask task = videoTaskMapper.selectById(taskId);
         if (task == null || !task.getUserId().equals(userId)) {
             throw new RuntimeException("任务不存在");
         }
+        if (task.getStatus() >= 2) {
+            throw BusinessException.of("任务已结束，无法取消");
+        }
+        if (hasFollowers(task)) {
+            throw BusinessException.of("任务结果正在被复用，暂时无法取消");
+        }
 
-        // 如果任务还在进行中，查询最新状态
-        if (task.getStatus() == 0 || task.getStatus() == 1) {
-            try {
-                VideoGenerationService provider = providerFactory.getProvider(task.getProvider());
-                VideoTaskDTO dto = provider.queryTask(task.getTaskId());
-                
-                // 更新数据库
-                updateTaskFromDTO(task, dto);
-                
-                return dto;
-            } catch (Exception e) {
-                log.error("查询任务状态失败", e);
-            }
+        if (!stateManager.markCancelled(taskId)) {
+            throw BusinessException.of("任务已结束，无法取消");
+        }
+        log.info("用户{}取消任务{}", userId, taskId);
+        callbackHandler.broadcastTerminal(taskId);
+
+        String providerTaskId = task.getTaskId();
+        if (stateManager.isProviderTaskId(providerTaskId)) {
+            dispatcher.cancelAtProvider(taskId, task.getProvider(), providerTaskId);
         }
 
-        // 返回数据库中的状态
-        return convertToDTO(task);
+        VideoTask cancelled = videoTaskMapper.selectById(taskId);
+        return statusCache.put(cancelled.getId(), cancelled.getUserId(), cancelled.getProvider(),
+                stateManager.convertToDTO(cancelled)).getState();
+    }
+
+    /**
+     * 是否有合并到该任务的相同请求（取消会使它们一起失败）
+     */
+    private boolean hasFollowers(VideoTask task) {
+        if (task.getFingerprint() == null) {
+            return false;
+        }
+        LambdaQueryWrapper<VideoTask> wrapper = new LambdaQueryWrapper<>();
+        wrapper.eq(VideoTask::getTaskId, VideoResultCache.FOLLOWER_PREFIX + task.getId())
+                .in(VideoTask::getStatus, 0, 1);
+        return videoTaskMapper.selectCount(wrapper) > 0;
     }
 
     /**
-     * 获取用户的任务列表
+     * 获取用户的任务列表（只支持第一页，后续页使用 getUserTasksByCursor）
      */
     public PageResult<VideoTask> getUserTasks(Long userId, Long current, Long size) {
-        Page<VideoTask> page = new Page<>(current, size);
+        if (current > 1) {
+            throw BusinessException.of(400, "请使用 /video/tasks/cursor 获取后续页");
+        }
+        long limit = pageLimit(size);
+        List<VideoTask> records = selectUserTasks(userId, null, limit);
+        return PageResult.of(records, countUserTasks(userId), 1L, limit);
+    }
+
+    /**
+     * 每页条数限制在 [1, pagination.max-size]
+     */
+    private long pageLimit(Long size) {
+        return Math.max(1, Math.min(size, maxPageSize));
+    }
+
+    /**
+     * 按游标获取用户的任务列表
+     * 按 (create_time, id) 倒序从上一页最后一条之后读取（idx_user_create_time），不跳过行，也不COUNT
+     * @param cursor 上一页返回的游标，为空时读取第一页
+     * @param withTotal 是否返回总数（缓存 pagination.total-cache-ttl）
+     */
+    public CursorResult<VideoTask> getUserTasksByCursor(Long userId, String cursor, Long size, boolean withTotal) {
+        long limit = pageLimit(size);
+        // 多读一条判断是否还有下一页
+        List<VideoTask> records = selectUserTasks(userId, PageCursor.decode(cursor), limit + 1);
+        String nextCursor = null;
+        if (records.size() > limit) {
+            records = new ArrayList<>(records.subList(0, (int) limit));
+            VideoTask last = records.get(records.size() - 1);
+            nextCursor = new PageCursor(last.getCreateTime(), last.getId()).encode();
+        }
+        return CursorResult.of(records, nextCursor, withTotal ? countUserTasks(userId) : null);
+    }
+
+    private List<VideoTask> selectUserTasks(Long userId, PageCursor cursor, long limit) {
         LambdaQueryWrapper<VideoTask> wrapper = new LambdaQueryWrapper<>();
         wrapper.eq(VideoTask::getUserId, userId);
-        wrapper.orderByDesc(VideoTask::getCreateTime);
+        if (cursor != null) {
+            LocalDateTime time = cursor.getCreateTime();
+            Long id = cursor.getId();
+            wrapper.and(w -> w.lt(VideoTask::getCreateTime, time)
+                    .or(o -> o.eq(VideoTask::getCreateTime, time).lt(VideoTask::getId, id)));
+        }
+        wrapper.orderByDesc(VideoTask::getCreateTime, VideoTask::getId)
+                .last("LIMIT " + limit);
+        return videoTaskMapper.selectList(wrapper);
+    }
 
-        Page<VideoTask> result = videoTaskMapper.selectPage(page, wrapper);
-        return PageResult.of(result.getRecords(), result.getTotal(), current, size);
+    private long countUserTasks(Long userId) {
+        Long total = totals.get(userId, false);
+        if (total == null) {
+            total = videoTaskMapper.selectCount(new LambdaQueryWrapper<VideoTask>().eq(VideoTask::getUserId, userId));
+            totals.put(userId, total);
+        }
+        return total;
     }
 
     /**
-     * 异步检查任务状态
+     * 查询provider并更新任务状态，返回更新后的缓存状态
      */
-    @Async
-    public void checkTaskStatusAsync(Long taskId, String providerTaskId, String providerName) {
-        log.info("开始异步检查任务状态: taskId={}, providerTaskId={}", taskId, providerTaskId);
-        
-        try {
-            VideoGenerationService provider = providerFactory.getProvider(providerName);
+    private VideoTaskDTO refreshFromProvider(Long taskId, String providerName, String providerTaskId) {
+        VideoGenerationService provider = providerFactory.getProvider(providerName);
+        VideoTaskDTO dto = provider.queryTask(providerTaskId);
+
+        // 更新数据库（状态变更事件会写回缓存）
+        if (stateManager.applyUpdate(taskId, dto)) {
+            // 终态以数据库为准（可能已被其他路径置为终态），重新加载一次缓存
             VideoTask task = videoTaskMapper.selectById(taskId);
-            
-            // 最多检查60次，每5秒一次（总共5分钟）
-            for (int i = 0; i < 60; i++) {
-                Thread.sleep(5000);  // 5秒
-                
-                VideoTaskDTO dto = provider.queryTask(providerTaskId);
-                updateTaskFromDTO(task, dto);
-                
-                // 如果任务完成或失败，停止检查
-                if ("COMPLETED".equals(dto.getStatus()) || "FAILED".equals(dto.getStatus())) {
-                    log.info("任务{}状态更新完成: {}", taskId, dto.getStatus());
-                    
-                    // 如果失败，退回积分
-                    if ("FAILED".equals(dto.getStatus())) {
-                        creditService.refund(task.getUserId(), task.getCostCredits(), taskId);
-                    }
-                    
-                    break;
-                }
+            if (task != null) {
+                return statusCache.put(task.getId(), task.getUserId(), task.getProvider(),
+                        stateManager.convertToDTO(task)).getState();
             }
-        } catch (Exception e) {
-            log.error("异步检查任务状态失败", e);
         }
+        TaskStatusSnapshot snapshot = statusCache.get(taskId);
+        return snapshot != null ? snapshot.getState() : dto;
     }
 
     /**
@@ -229,74 +481,4 @@ public class VideoTaskService {
         
         return baseCredits;
     }
-
-    /**
-     * 更新任务状态
-     */
-    private void updateTaskFromDTO(VideoTask task, VideoTaskDTO dto) {
-        task.setStatus(mapStatusToInt(dto.getStatus()));
-        task.setProgress(dto.getProgress());
-        task.setVideoUrl(dto.getVideoUrl());
-        task.setCoverUrl(dto.getCoverUrl());
-        task.setDuration(dto.getDuration());
-        task.setErrorMsg(dto.getErrorMessage());
-        
-        if ("COMPLETED".equals(dto.getStatus())) {
-            task.setCompleteTime(LocalDateTime.now());
-        }
-        
-        videoTaskMapper.updateById(task);
-    }
-
-    /**
-     * 状态字符串转数字
-     */
-    private Integer mapStatusToInt(String status) {
-        switch (status) {
-            case "PENDING":
-                return 0;
-            case "PROCESSING":
-                return 1;
-            case "COMPLETED":
-                return 2;
-            case "FAILED":
-                return 3;
-            default:
-                return 0;
-        }
-    }
-
-    /**
-     * 转换为DTO
-     */
-    private VideoTaskDTO convertToDTO(VideoTask task) {
-        VideoTaskDTO dto = new VideoTaskDTO();
-        dto.setTaskId(task.getTaskId());
-        dto.setStatus(mapIntToStatus(task.getStatus()));
-        dto.setProgress(task.getProgress());
-        dto.setVideoUrl(task.getVideoUrl());
-        dto.setCoverUrl(task.getCoverUrl());
-        dto.setDuration(task.getDuration());
-        dto.setErrorMessage(task.getErrorMsg());
-        return dto;
-    }
-
-    /**
-     * 状态数字转字符串
-     */
-    private String mapIntToStatus(Integer status) {
-        switch (status) {
-            case 0:
-                return "PENDING";
-            case 1:
-                return "PROCESSING";
-            case 2:
-                return "COMPLETED";
-            case 3:
-                return "FAILED";
-            default:
-                return "PENDING";
-        }
-    }
 }
-
@@ -0,0 +1,191 @@
+package com.skycanvas.storage;
+
+import com.aliyun.oss.OSS;
+import com.aliyun.oss.OSSClientBuilder;
+import com.aliyun.oss.model.AbortMultipartUploadRequest;
+import com.aliyun.oss.model.CompleteMultipartUploadRequest;
+import com.aliyun.oss.model.InitiateMultipartUploadRequest;
+import com.aliyun.oss.model.ObjectMetadata;
+import com.aliyun.oss.model.PartETag;
+import com.aliyun.oss.model.UploadPartRequest;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+
+/**
+ * 阿里云OSS存储
+ *
+ * 上传方式：
+ * 1. 按 part-size 从输入流依次读取分片，读满一片就交给分片线程上传，同时继续读取下一片
+ * 2. 单个文件同时上传的分片数不超过 part-parallelism，内存占用约为 (part-parallelism + 1) × part-size
+ * 3. 不足一个分片的小文件直接PutObject；任一分片失败时取消分片上传，不留下碎片
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(prefix = "video.mirror", name = "storage", havingValue = "oss", matchIfMissing = true)
+public class AliyunOssStorage implements ObjectStorage {
+
+    @Value("${aliyun.oss.endpoint:}")
+    private String endpoint;
+
+    @Value("${aliyun.oss.access-key-id:}")
+    private String accessKeyId;
+
+    @Value("${aliyun.oss.access-key-secret:}")
+    private String accessKeySecret;
+
+    @Value("${aliyun.oss.bucket-name:}")
+    private String bucketName;
+
+    @Value("${aliyun.oss.cdn-domain:}")
+    private String cdnDomain;
+
+    @Value("${video.mirror.part-size:5242880}")
+    private int partSize;
+
+    @Value("${video.mirror.part-parallelism:3}")
+    private int partParallelism;
+
+    @Value("${video.mirror.threads:2}")
+    private int transferThreads;
+
+    private OSS ossClient;
+
+    private ExecutorService partExecutor;
+
+    @PostConstruct
+    public void init() {
+        // 未配置OSS时不创建客户端，上传时报错
+        if (StringUtils.hasText(endpoint) && StringUtils.hasText(accessKeyId)) {
+            ossClient = new OSSClientBuilder().build(endpoint, accessKeyId, accessKeySecret);
+        }
+        partExecutor = Executors.newFixedThreadPool(Math.max(1, transferThreads * partParallelism),
+                new CustomizableThreadFactory("oss-part-"));
+    }
+
+    @PreDestroy
+    public void destroy() {
+        partExecutor.shutdownNow();
+        if (ossClient != null) {
+            ossClient.shutdown();
+        }
+    }
+
+    @Override
+    public String upload(String key, InputStream in, String contentType) throws IOException {
+        if (ossClient == null) {
+            throw new IllegalStateException("OSS未配置");
+        }
+
+        byte[] first = readPart(in);
+        if (first.length < partSize) {
+            ObjectMetadata metadata = new ObjectMetadata();
+            metadata.setContentLength(first.length);
+            if (contentType != null) {
+                metadata.setContentType(contentType);
+            }
+            ossClient.putObject(bucketName, key, new ByteArrayInputStream(first), metadata);
+            return getUrl(key);
+        }
+
+        ObjectMetadata metadata = new ObjectMetadata();
+        if (contentType != null) {
+            metadata.setContentType(contentType);
+        }
+        String uploadId = ossClient.initiateMultipartUpload(
+                new InitiateMultipartUploadRequest(bucketName, key, metadata)).getUploadId();
+
+        Semaphore permits = new Semaphore(partParallelism);
+        List<Future<PartETag>> parts = new ArrayList<>();
+        try {
+            byte[] data = first;
+            int partNumber = 1;
+            while (data.length > 0) {
+                permits.acquire();
+                parts.add(submitPart(key, uploadId, partNumber++, data, permits));
+                data = readPart(in);
+            }
+
+            List<PartETag> etags = new ArrayList<>(parts.size());
+            for (Future<PartETag> part : parts) {
+                etags.add(part.get());
+            }
+            etags.sort(Comparator.comparingInt(PartETag::getPartNumber));
+            ossClient.completeMultipartUpload(new CompleteMultipartUploadRequest(bucketName, key, uploadId, etags));
+            log.info("OSS分片上传完成: {}, 分片数: {}", key, etags.size());
+            return getUrl(key);
+        } catch (Exception e) {
+            parts.forEach(part -> part.cancel(true));
+            abort(key, uploadId);
+            if (e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
+            Throwable cause = e instanceof ExecutionException && e.getCause() != null ? e.getCause() : e;
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw new IOException("OSS分片上传失败: " + cause.getMessage(), cause);
+        }
+    }
+
+    @Override
+    public String getUrl(String key) {
+        if (StringUtils.hasText(cdnDomain)) {
+            String domain = cdnDomain.startsWith("http") ? cdnDomain : "https://" + cdnDomain;
+            return domain.replaceAll("/+$", "") + "/" + key;
+        }
+        String host = endpoint.replaceFirst("^https?://", "");
+        return "https://" + bucketName + "." + host + "/" + key;
+    }
+
+    private Future<PartETag> submitPart(String key, String uploadId, int partNumber, byte[] data, Semaphore permits) {
+        return partExecutor.submit(() -> {
+            try {
+                UploadPartRequest request = new UploadPartRequest(bucketName, key, uploadId, partNumber,
+                        new ByteArrayInputStream(data), data.length);
+                return ossClient.uploadPart(request).getPartETag();
+            } finally {
+                permits.release();
+            }
+        });
+    }
+
+    /**
+     * 读取一个分片，到达流末尾时返回的数组小于 part-size（可能为空）
+     */
+    private byte[] readPart(InputStream in) throws IOException {
+        byte[] buffer = new byte[partSize];
+        int length = in.readNBytes(buffer, 0, partSize);
+        if (length == partSize) {
+            return buffer;
+        }
+        byte[] part = new byte[length];
+        System.arraycopy(buffer, 0, part, 0, length);
+        return part;
+    }
+
+    private void abort(String key, String uploadId) {
+        try {
+            ossClient.abortMultipartUpload(new AbortMultipartUploadRequest(bucketName, key, uploadId));
+        } catch (Exception e) {
+            log.warn("取消OSS分片上传失败: {}, uploadId: {}", key, uploadId, e);
+        }
+    }
+}
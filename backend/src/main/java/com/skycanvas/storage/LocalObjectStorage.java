@@ -0,0 +1,49 @@
+package com.skycanvas.storage;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * 本地文件存储（代替OSS，用于本地联调和测试）
+ * 先写入临时文件再重命名，失败时不会留下不完整的文件
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(prefix = "video.mirror", name = "storage", havingValue = "local")
+public class LocalObjectStorage implements ObjectStorage {
+
+    @Value("${video.mirror.local.base-dir:./data/storage}")
+    private String baseDir;
+
+    @Value("${video.mirror.local.base-url:http://localhost:8080/files}")
+    private String baseUrl;
+
+    @Override
+    public String upload(String key, InputStream in, String contentType) throws IOException {
+        Path target = Paths.get(baseDir).resolve(key).normalize();
+        Files.createDirectories(target.getParent());
+        Path temp = Files.createTempFile(target.getParent(), ".upload-", ".tmp");
+        try {
+            long size = Files.copy(in, temp, StandardCopyOption.REPLACE_EXISTING);
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            log.info("文件已保存: {}, {}字节", target, size);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        return getUrl(key);
+    }
+
+    @Override
+    public String getUrl(String key) {
+        return baseUrl + "/" + key;
+    }
+}
@@ -0,0 +1,25 @@
+package com.skycanvas.storage;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * 对象存储
+ * 默认实现为阿里云OSS（video.mirror.storage=oss），本地联调和测试时可以换成本地文件（local）
+ */
+public interface ObjectStorage {
+
+    /**
+     * 从输入流上传对象（边读边传，不把整个文件读入内存）
+     * @param key 对象路径，例如 videos/20240101/123.mp4
+     * @param in 数据流，由调用方关闭
+     * @param contentType 内容类型，可以为null
+     * @return 对象的访问URL（配置了CDN时为CDN地址）
+     */
+    String upload(String key, InputStream in, String contentType) throws IOException;
+
+    /**
+     * 对象的访问URL
+     */
+    String getUrl(String key);
+}
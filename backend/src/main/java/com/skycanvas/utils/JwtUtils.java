@@ -1,19 +1,32 @@
 package com.skycanvas.utils;
 
+import cn.hutool.cache.CacheUtil;
+import cn.hutool.cache.impl.LRUCache;
+import cn.hutool.crypto.digest.DigestUtil;
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.SignatureAlgorithm;
 import io.jsonwebtoken.security.Keys;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
+import javax.annotation.PostConstruct;
 import javax.crypto.SecretKey;
 import java.nio.charset.StandardCharsets;
 import java.util.Date;
 
 /**
  * JWT工具类
+ *
+ * 设计说明：
+ * 1. 密钥和解析器在启动时创建一次（JwtParser线程安全），不再每次调用重新构建
+ * 2. verify 一次解析完成签名校验并返回用户ID，调用方不需要先校验再解析
+ * 3. 校验通过的Token以SHA-256摘要为key缓存用户ID（有容量上限，过期时间取 jwt.verified-cache.ttl 和Token剩余有效期的较小值），
+ *    同一Token的后续请求只需计算一次摘要
  */
+@Slf4j
 @Component
 public class JwtUtils {
 
@@ -23,11 +36,26 @@ public class JwtUtils {
     @Value("${jwt.expiration}")
     private Long expiration;
 
+    @Value("${jwt.verified-cache.size:10000}")
+    private int verifiedCacheSize;
+
+    @Value("${jwt.verified-cache.ttl:60000}")
+    private long verifiedCacheTtl;
+
+    private SecretKey secretKey;
+
+    private JwtParser parser;
+
     /**
-     * 获取密钥
+     * 已校验的Token（key: Token的SHA-256摘要，value: 用户ID）
      */
-    private SecretKey getSecretKey() {
-        return Keys.hmacShaKeyFor(secret.getBytes(StandardCharsets.UTF_8));
+    private LRUCache<String, Long> verified;
+
+    @PostConstruct
+    public void init() {
+        secretKey = Keys.hmacShaKeyFor(secret.getBytes(StandardCharsets.UTF_8));
+        parser = Jwts.parserBuilder().setSigningKey(secretKey).build();
+        verified = CacheUtil.newLRUCache(verifiedCacheSize, verifiedCacheTtl);
     }
 
     /**
@@ -41,36 +69,75 @@ public class JwtUtils {
                 .setSubject(String.valueOf(userId))
                 .setIssuedAt(now)
                 .setExpiration(expiryDate)
-                .signWith(getSecretKey(), SignatureAlgorithm.HS256)
+                .signWith(secretKey, SignatureAlgorithm.HS256)
                 .compact();
     }
 
+    /**
+     * 校验Token并获取用户ID
+     * @return 用户ID，Token无效或已过期时返回null
+     */
+    public Long verify(String token) {
+        if (verifiedCacheTtl <= 0) {
+            return parseUserId(token);
+        }
+        String digest = DigestUtil.sha256Hex(token);
+        Long userId = verified.get(digest, false);
+        if (userId != null) {
+            return userId;
+        }
+
+        Claims claims = parseClaims(token);
+        if (claims == null) {
+            return null;
+        }
+        userId = toUserId(claims);
+        if (userId == null) {
+            return null;
+        }
+        long ttl = verifiedCacheTtl;
+        if (claims.getExpiration() != null) {
+            ttl = Math.min(ttl, claims.getExpiration().getTime() - System.currentTimeMillis());
+        }
+        if (ttl > 0) {
+            verified.put(digest, userId, ttl);
+        }
+        return userId;
+    }
+
     /**
      * 从Token中获取用户ID
      */
     public Long getUserIdFromToken(String token) {
-        Claims claims = Jwts.parserBuilder()
-                .setSigningKey(getSecretKey())
-                .build()
-                .parseClaimsJws(token)
-                .getBody();
-
-        return Long.parseLong(claims.getSubject());
+        return Long.parseLong(parser.parseClaimsJws(token).getBody().getSubject());
     }
 
     /**
      * 验证Token
      */
     public boolean validateToken(String token) {
+        return verify(token) != null;
+    }
+
+    private Long parseUserId(String token) {
+        Claims claims = parseClaims(token);
+        return claims == null ? null : toUserId(claims);
+    }
+
+    private Claims parseClaims(String token) {
         try {
-            Jwts.parserBuilder()
-                    .setSigningKey(getSecretKey())
-                    .build()
-                    .parseClaimsJws(token);
-            return true;
+            return parser.parseClaimsJws(token).getBody();
         } catch (Exception e) {
-            return false;
+            log.debug("Token校验失败: {}", e.getMessage());
+            return null;
         }
     }
-}
 
+    private Long toUserId(Claims claims) {
+        try {
+            return Long.valueOf(claims.getSubject());
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
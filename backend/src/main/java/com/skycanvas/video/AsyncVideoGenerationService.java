@@ -0,0 +1,65 @@
+package com.skycanvas.video;
+
+import com.skycanvas.dto.VideoGenerationRequest;
+import com.skycanvas.dto.VideoTaskDTO;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Consumer;
+
+/**
+ * 异步视频生成服务接口
+ * 基于非阻塞HTTP客户端，调用不占用线程等待响应；同步方法作为适配器保留给现有调用方
+ */
+public interface AsyncVideoGenerationService extends VideoGenerationService {
+
+    /**
+     * 异步提交视频生成任务
+     * @param request 统一请求对象
+     * @return 任务信息（统一格式）
+     */
+    CompletableFuture<VideoTaskDTO> submitTaskAsync(VideoGenerationRequest request);
+
+    /**
+     * 异步提交视频生成任务，生成过程中上报进度
+     * 默认不上报进度；支持流式响应的provider在任务被接受后（带provider任务ID）和进度变化时调用监听器，
+     * 监听器在响应回调线程中按顺序调用，且都早于返回的future完成
+     * @param progressListener 进度监听（状态均为PROCESSING），可以为null
+     */
+    default CompletableFuture<VideoTaskDTO> submitTaskAsync(VideoGenerationRequest request,
+                                                            Consumer<VideoTaskDTO> progressListener) {
+        return submitTaskAsync(request);
+    }
+
+    /**
+     * 异步查询任务状态
+     * @param taskId 任务ID（provider的原始ID）
+     * @return 任务状态（统一格式）
+     */
+    CompletableFuture<VideoTaskDTO> queryTaskAsync(String taskId);
+
+    @Override
+    default VideoTaskDTO submitTask(VideoGenerationRequest request) {
+        return await(submitTaskAsync(request));
+    }
+
+    @Override
+    default VideoTaskDTO queryTask(String taskId) {
+        return await(queryTaskAsync(taskId));
+    }
+
+    /**
+     * 同步等待结果，异步调用中的异常原样抛出
+     */
+    static <T> T await(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw e;
+        }
+    }
+}
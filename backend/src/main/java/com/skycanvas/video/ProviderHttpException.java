@@ -0,0 +1,19 @@
+package com.skycanvas.video;
+
+/**
+ * provider返回非2xx状态码
+ * 保留状态码用于判断是否可以重试
+ */
+public class ProviderHttpException extends RuntimeException {
+
+    private final int statusCode;
+
+    public ProviderHttpException(int statusCode, String body) {
+        super("HTTP " + statusCode + ": " + body);
+        this.statusCode = statusCode;
+    }
+
+    public int getStatusCode() {
+        return statusCode;
+    }
+}
@@ -0,0 +1,27 @@
+package com.skycanvas.video;
+
+import com.skycanvas.dto.VideoTaskDTO;
+
+/**
+ * 支持完成回调的provider
+ * 开启回调后，provider在任务状态变化时调用 POST /video/callback/{providerName}，轮询只作为兜底
+ */
+public interface VideoCallbackSupport {
+
+    /**
+     * 是否已开启回调（未开启时仍通过轮询获取状态）
+     */
+    boolean isCallbackEnabled();
+
+    /**
+     * 回调签名密钥
+     */
+    String getCallbackSecret();
+
+    /**
+     * 解析回调请求体
+     * @param body 回调原始请求体
+     * @return 任务状态（统一格式，taskId为provider的原始ID）
+     */
+    VideoTaskDTO parseCallback(String body);
+}
@@ -1,25 +1,42 @@
 package com.skycanvas.video;
 
+import com.skycanvas.video.resilience.GuardedVideoGenerationService;
+import com.skycanvas.video.resilience.ProviderGuardRegistry;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
+import javax.annotation.PostConstruct;
+import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.stream.Collectors;
 
 /**
  * 视频Provider工厂（策略模式）
+ * 返回的provider均包装了熔断器和自适应并发限制
  */
 @Component
 public class VideoProviderFactory {
 
     @Autowired
-    private Map<String, VideoGenerationService> providers;
+    private Map<String, VideoGenerationService> providerBeans;
+
+    @Autowired
+    private ProviderGuardRegistry guardRegistry;
 
     @Value("${video.provider.default}")
     private String defaultProvider;
 
+    private final Map<String, VideoGenerationService> providers = new LinkedHashMap<>();
+
+    @PostConstruct
+    public void init() {
+        providerBeans.forEach((beanName, provider) ->
+                providers.put(beanName, new GuardedVideoGenerationService(provider, guardRegistry)));
+    }
+
     /**
      * 获取当前激活的provider
      */
@@ -39,6 +56,20 @@ public class VideoProviderFactory {
         return provider;
     }
 
+    /**
+     * 获取指定provider的异步调用入口（不支持异步的provider由包装层在调用线程中同步执行）
+     */
+    public AsyncVideoGenerationService getAsyncProvider(String providerName) {
+        return (AsyncVideoGenerationService) getProvider(providerName);
+    }
+
+    /**
+     * 获取所有已启用的provider实例
+     */
+    public Collection<VideoGenerationService> getAllProviders() {
+        return providers.values();
+    }
+
     /**
      * 获取所有可用provider
      */
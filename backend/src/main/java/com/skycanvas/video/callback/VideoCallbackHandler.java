@@ -0,0 +1,129 @@
+package com.skycanvas.video.callback;
+
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.skycanvas.dto.VideoTaskDTO;
+import com.skycanvas.entity.VideoTask;
+import com.skycanvas.exception.BusinessException;
+import com.skycanvas.mapper.VideoTaskMapper;
+import com.skycanvas.video.VideoCallbackSupport;
+import com.skycanvas.video.VideoGenerationService;
+import com.skycanvas.video.VideoProviderFactory;
+import com.skycanvas.video.task.ProviderAdmissionController;
+import com.skycanvas.video.task.VideoTaskPoller;
+import com.skycanvas.video.task.VideoTaskStateManager;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * provider回调处理
+ *
+ * 设计说明：
+ * 1. 校验签名后由provider自己的解析器转换为统一的VideoTaskDTO，走与轮询相同的状态流转
+ * 2. 状态流转是条件更新，重复投递、乱序投递都不会重复退款或覆盖终态
+ * 3. 回调可能落在任意节点，到达终态后通过Redis频道通知所有节点停止轮询并释放名额
+ */
+@Slf4j
+@Component
+public class VideoCallbackHandler implements MessageListener {
+
+    public static final String TERMINAL_CHANNEL = "video:task:terminal";
+
+    @Autowired
+    private VideoProviderFactory providerFactory;
+
+    @Autowired
+    private VideoCallbackSigner signer;
+
+    @Autowired
+    private VideoTaskMapper videoTaskMapper;
+
+    @Autowired
+    private VideoTaskStateManager stateManager;
+
+    @Autowired
+    private VideoTaskPoller poller;
+
+    @Autowired
+    private ProviderAdmissionController admissionController;
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    /**
+     * 处理回调
+     * @throws BusinessException 401-签名无效，404-provider或任务不存在（provider会重试）
+     */
+    public void handle(String providerName, String timestamp, String signature, String body) {
+        VideoCallbackSupport callbackSupport = getCallbackSupport(providerName);
+        if (!signer.verify(callbackSupport.getCallbackSecret(), timestamp, signature, body)) {
+            log.warn("回调签名校验失败, provider: {}", providerName);
+            throw BusinessException.of(401, "签名无效");
+        }
+
+        VideoTaskDTO dto = callbackSupport.parseCallback(body);
+        if (dto == null || dto.getTaskId() == null) {
+            throw BusinessException.of(400, "回调内容无效");
+        }
+
+        LambdaQueryWrapper<VideoTask> wrapper = new LambdaQueryWrapper<>();
+        wrapper.select(VideoTask::getId, VideoTask::getStatus)
+                .eq(VideoTask::getTaskId, dto.getTaskId())
+                .eq(VideoTask::getProvider, providerName);
+        VideoTask task = videoTaskMapper.selectOne(wrapper);
+        if (task == null) {
+            // 回调可能早于提交结果写入，返回404让provider稍后重试
+            throw BusinessException.of(404, "任务不存在");
+        }
+        if (task.getStatus() >= 2) {
+            log.debug("任务{}已处于终态，忽略重复回调", task.getId());
+            return;
+        }
+
+        log.info("收到回调, provider: {}, dbTaskId: {}, status: {}", providerName, task.getId(), dto.getStatus());
+        if (stateManager.applyUpdate(task.getId(), dto)) {
+            poller.stop(task.getId());
+            admissionController.release(task.getId());
+            broadcastTerminal(task.getId());
+        }
+    }
+
+    /**
+     * 通知所有节点任务已到达终态（停止轮询、释放名额）
+     */
+    public void broadcastTerminal(Long dbTaskId) {
+        stringRedisTemplate.convertAndSend(TERMINAL_CHANNEL, String.valueOf(dbTaskId));
+    }
+
+    /**
+     * 其他节点处理的回调或取消使任务到达终态：停止本节点的轮询并释放名额
+     */
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        try {
+            Long dbTaskId = Long.valueOf(new String(message.getBody(), StandardCharsets.UTF_8));
+            poller.stop(dbTaskId);
+            admissionController.release(dbTaskId);
+        } catch (Exception e) {
+            log.error("处理终态通知失败", e);
+        }
+    }
+
+    private VideoCallbackSupport getCallbackSupport(String providerName) {
+        VideoGenerationService provider;
+        try {
+            provider = providerFactory.getProvider(providerName);
+        } catch (Exception e) {
+            throw BusinessException.of(404, "Provider不存在");
+        }
+        if (!(provider instanceof VideoCallbackSupport) || !((VideoCallbackSupport) provider).isCallbackEnabled()) {
+            throw BusinessException.of(404, "Provider未开启回调");
+        }
+        return (VideoCallbackSupport) provider;
+    }
+}
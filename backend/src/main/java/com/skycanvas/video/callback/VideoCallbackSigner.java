@@ -0,0 +1,80 @@
+package com.skycanvas.video.callback;
+
+import cn.hutool.crypto.digest.HMac;
+import cn.hutool.crypto.digest.HmacAlgorithm;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+
+/**
+ * 回调签名
+ * 签名 = hex(HMAC-SHA256(secret, timestamp + "." + body))，timestamp为秒级时间戳
+ * 请求头：X-Callback-Timestamp、X-Callback-Signature
+ */
+@Component
+public class VideoCallbackSigner {
+
+    public static final String TIMESTAMP_HEADER = "X-Callback-Timestamp";
+
+    public static final String SIGNATURE_HEADER = "X-Callback-Signature";
+
+    /**
+     * 本服务对外可访问的地址（如 https://api.example.com/api），为空时不开启回调
+     */
+    @Value("${video.callback.base-url:}")
+    private String baseUrl;
+
+    /**
+     * 允许的时间戳偏差（秒），超出视为重放
+     */
+    @Value("${video.callback.tolerance:300}")
+    private long tolerance;
+
+    /**
+     * 是否已配置回调地址
+     */
+    public boolean isEnabled() {
+        return StringUtils.hasText(baseUrl);
+    }
+
+    /**
+     * 获取provider的回调地址
+     */
+    public String getCallbackUrl(String providerName) {
+        return baseUrl + "/video/callback/" + providerName;
+    }
+
+    /**
+     * 计算签名
+     */
+    public String sign(String secret, long timestamp, String body) {
+        HMac mac = new HMac(HmacAlgorithm.HmacSHA256, secret.getBytes(StandardCharsets.UTF_8));
+        return mac.digestHex(timestamp + "." + body);
+    }
+
+    /**
+     * 校验签名和时间戳
+     */
+    public boolean verify(String secret, String timestamp, String signature, String body) {
+        if (!StringUtils.hasText(secret) || !StringUtils.hasText(timestamp) || !StringUtils.hasText(signature)) {
+            return false;
+        }
+
+        long ts;
+        try {
+            ts = Long.parseLong(timestamp);
+        } catch (NumberFormatException e) {
+            return false;
+        }
+        if (Math.abs(System.currentTimeMillis() / 1000 - ts) > tolerance) {
+            return false;
+        }
+
+        String expected = sign(secret, ts, body);
+        return MessageDigest.isEqual(expected.getBytes(StandardCharsets.UTF_8),
+                signature.toLowerCase().getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,39 @@
+package com.skycanvas.video.mirror;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 带宽限制（所有转存任务共享）
+ * 按字节数预约发送时间，超出速率的读取在调用线程中等待；速率为0时不限制
+ */
+public class BandwidthLimiter {
+
+    private final long bytesPerSecond;
+
+    private long nextFreeNanos = System.nanoTime();
+
+    public BandwidthLimiter(long bytesPerSecond) {
+        this.bytesPerSecond = bytesPerSecond;
+    }
+
+    /**
+     * 申请传输指定字节数，必要时等待
+     */
+    public void acquire(int bytes) throws InterruptedException {
+        if (bytesPerSecond <= 0 || bytes <= 0) {
+            return;
+        }
+        long waitNanos;
+        synchronized (this) {
+            long now = System.nanoTime();
+            if (nextFreeNanos < now) {
+                nextFreeNanos = now;
+            }
+            waitNanos = nextFreeNanos - now;
+            nextFreeNanos += TimeUnit.SECONDS.toNanos(bytes) / bytesPerSecond;
+        }
+        if (waitNanos > 0) {
+            TimeUnit.NANOSECONDS.sleep(waitNanos);
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package com.skycanvas.video.mirror;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+
+/**
+ * 按带宽限制读取的输入流
+ */
+class ThrottledInputStream extends FilterInputStream {
+
+    private final BandwidthLimiter limiter;
+
+    ThrottledInputStream(InputStream in, BandwidthLimiter limiter) {
+        super(in);
+        this.limiter = limiter;
+    }
+
+    @Override
+    public int read() throws IOException {
+        int b = super.read();
+        if (b >= 0) {
+            throttle(1);
+        }
+        return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        int n = super.read(b, off, len);
+        if (n > 0) {
+            throttle(n);
+        }
+        return n;
+    }
+
+    private void throttle(int bytes) throws IOException {
+        try {
+            limiter.acquire(bytes);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("转存已中断");
+        }
+    }
+}
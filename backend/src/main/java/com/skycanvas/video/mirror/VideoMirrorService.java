@@ -0,0 +1,253 @@
+package com.skycanvas.video.mirror;
+
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.baomidou.mybatisplus.core.conditions.update.LambdaUpdateWrapper;
+import com.skycanvas.config.LimitedHttpClient;
+import com.skycanvas.dto.VideoTaskDTO;
+import com.skycanvas.entity.VideoTask;
+import com.skycanvas.mapper.VideoTaskMapper;
+import com.skycanvas.storage.ObjectStorage;
+import com.skycanvas.video.task.VideoResultCache;
+import com.skycanvas.video.task.VideoTaskStateChangedEvent;
+import com.skycanvas.video.task.VideoTaskStatusCache;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * 生成结果转存
+ *
+ * 设计说明：
+ * 1. 任务完成后把provider的视频和封面转存到对象存储（OSS），数据库中的地址改为CDN地址，
+ *    provider的临时地址过期后仍可访问
+ * 2. 下载流直接作为上传流，边下边传（OSS分片并行上传），不在内存中缓存整个视频
+ * 3. 转存在有界线程池中执行，所有转存共享带宽限制；队列已满或转存失败时保留provider地址，不影响任务状态
+ * 4. 复用该结果的任务（合并请求、命中结果缓存）地址一并替换
+ */
+@Slf4j
+@Component
+public class VideoMirrorService {
+
+    private static final DateTimeFormatter DATE_PATH = DateTimeFormatter.ofPattern("yyyyMMdd");
+
+    @Autowired(required = false)
+    private ObjectStorage objectStorage;
+
+    @Autowired
+    private VideoTaskMapper videoTaskMapper;
+
+    @Autowired
+    private VideoTaskStatusCache statusCache;
+
+    @Resource(name = "mirrorHttpClient")
+    private LimitedHttpClient httpClient;
+
+    @Value("${video.mirror.enabled:false}")
+    private boolean enabled;
+
+    @Value("${video.mirror.threads:2}")
+    private int threads;
+
+    @Value("${video.mirror.queue-size:200}")
+    private int queueSize;
+
+    @Value("${video.mirror.bandwidth:0}")
+    private long bandwidth;
+
+    @Value("${video.mirror.download-timeout:600000}")
+    private long downloadTimeout;
+
+    private ThreadPoolExecutor transferExecutor;
+
+    private BandwidthLimiter bandwidthLimiter;
+
+    @PostConstruct
+    public void init() {
+        transferExecutor = new ThreadPoolExecutor(threads, threads,
+                60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueSize),
+                new CustomizableThreadFactory("video-mirror-"));
+        bandwidthLimiter = new BandwidthLimiter(bandwidth);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        transferExecutor.shutdownNow();
+    }
+
+    /**
+     * 任务完成后提交转存
+     * 地址已是对象存储地址时不再转存；合并等待和直接复用的任务在转存线程中跳过（见 mirror）
+     */
+    @EventListener
+    public void onTaskStateChanged(VideoTaskStateChangedEvent event) {
+        VideoTaskDTO state = event.getState();
+        if (!enabled || objectStorage == null || !"COMPLETED".equals(state.getStatus())
+                || !StringUtils.hasText(state.getVideoUrl()) || isStorageUrl(state.getVideoUrl())) {
+            return;
+        }
+        try {
+            transferExecutor.execute(() -> mirror(event.getDbTaskId(), state.getVideoUrl(), state.getCoverUrl()));
+        } catch (RejectedExecutionException e) {
+            log.warn("转存队列已满，任务{}保留provider地址", event.getDbTaskId());
+        }
+    }
+
+    /**
+     * 运行状态
+     */
+    public Map<String, Object> getStats() {
+        return Map.of(
+                "enabled", enabled && objectStorage != null,
+                "active", transferExecutor.getActiveCount(),
+                "queued", transferExecutor.getQueue().size(),
+                "completed", transferExecutor.getCompletedTaskCount());
+    }
+
+    private void mirror(Long dbTaskId, String videoUrl, String coverUrl) {
+        long start = System.currentTimeMillis();
+        try {
+            if (isDerivedTask(dbTaskId)) {
+                return;
+            }
+            String datePath = LocalDate.now().format(DATE_PATH);
+            String mirroredVideo = transfer(videoUrl, "videos/" + datePath + "/" + dbTaskId, "mp4");
+            String mirroredCover = null;
+            if (StringUtils.hasText(coverUrl)) {
+                try {
+                    mirroredCover = transfer(coverUrl, "covers/" + datePath + "/" + dbTaskId, "jpg");
+                } catch (Exception e) {
+                    log.warn("封面转存失败, 任务{}保留provider封面地址", dbTaskId, e);
+                }
+            }
+            List<Long> updated = replaceUrls(dbTaskId, videoUrl, mirroredVideo, mirroredCover);
+            updated.forEach(statusCache::evict);
+            log.info("任务{}转存完成, 耗时{}ms, 更新任务: {}", dbTaskId, System.currentTimeMillis() - start, updated);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            log.error("任务{}转存失败，保留provider地址: {}", dbTaskId, videoUrl, e);
+        }
+    }
+
+    /**
+     * 合并等待（dedup_）或直接复用（cache_）的任务：结果来自另一个任务，
+     * 转存由那个任务完成，并一起替换这些任务的地址（见 replaceUrls）
+     */
+    private boolean isDerivedTask(Long dbTaskId) {
+        LambdaQueryWrapper<VideoTask> query = new LambdaQueryWrapper<>();
+        query.select(VideoTask::getTaskId).eq(VideoTask::getId, dbTaskId);
+        VideoTask task = videoTaskMapper.selectOne(query);
+        if (task == null) {
+            return true;
+        }
+        String taskId = task.getTaskId();
+        return taskId != null && (taskId.startsWith(VideoResultCache.FOLLOWER_PREFIX)
+                || taskId.startsWith(VideoResultCache.HIT_PREFIX));
+    }
+
+    private boolean isStorageUrl(String url) {
+        return url.startsWith(objectStorage.getUrl(""));
+    }
+
+    /**
+     * 下载并上传，返回对象存储地址
+     */
+    private String transfer(String url, String keyWithoutExt, String defaultExt) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(url))
+                .timeout(Duration.ofMillis(downloadTimeout))
+                .GET()
+                .build();
+        // 上传完成（响应体读完）后才释放连接名额
+        return httpClient.exchange(request, HttpResponse.BodyHandlers.ofInputStream(), response -> {
+            try (InputStream body = response.body()) {
+                if (response.statusCode() / 100 != 2) {
+                    throw new IOException("下载失败, HTTP " + response.statusCode() + ": " + url);
+                }
+                String contentType = response.headers().firstValue("Content-Type").orElse(null);
+                String key = keyWithoutExt + "." + extension(url, contentType, defaultExt);
+                return objectStorage.upload(key, new ThrottledInputStream(body, bandwidthLimiter), contentType);
+            }
+        });
+    }
+
+    /**
+     * 替换任务及复用该结果的任务的地址（只替换仍是原地址的已完成任务）
+     * @return 已更新的任务ID
+     */
+    private List<Long> replaceUrls(Long dbTaskId, String originalVideoUrl, String videoUrl, String coverUrl) {
+        LambdaQueryWrapper<VideoTask> query = new LambdaQueryWrapper<>();
+        query.select(VideoTask::getId)
+                .eq(VideoTask::getStatus, 2)
+                .eq(VideoTask::getVideoUrl, originalVideoUrl)
+                .and(w -> w.eq(VideoTask::getId, dbTaskId)
+                        .or()
+                        .in(VideoTask::getTaskId, VideoResultCache.FOLLOWER_PREFIX + dbTaskId,
+                                VideoResultCache.HIT_PREFIX + dbTaskId));
+        List<Long> ids = videoTaskMapper.selectList(query).stream()
+                .map(VideoTask::getId)
+                .collect(Collectors.toList());
+        if (ids.isEmpty()) {
+            return ids;
+        }
+
+        LambdaUpdateWrapper<VideoTask> update = new LambdaUpdateWrapper<>();
+        update.set(VideoTask::getVideoUrl, videoUrl)
+                .set(coverUrl != null, VideoTask::getCoverUrl, coverUrl)
+                .in(VideoTask::getId, ids)
+                .eq(VideoTask::getVideoUrl, originalVideoUrl);
+        videoTaskMapper.update(null, update);
+        return ids;
+    }
+
+    private String extension(String url, String contentType, String defaultExt) {
+        String path = URI.create(url).getPath();
+        if (path != null) {
+            int dot = path.lastIndexOf('.');
+            if (dot > path.lastIndexOf('/') && path.length() - dot <= 5) {
+                return path.substring(dot + 1).toLowerCase();
+            }
+        }
+        if (contentType != null) {
+            String type = contentType.split(";")[0].trim().toLowerCase();
+            switch (type) {
+                case "video/mp4":
+                    return "mp4";
+                case "video/webm":
+                    return "webm";
+                case "image/jpeg":
+                    return "jpg";
+                case "image/png":
+                    return "png";
+                case "image/webp":
+                    return "webp";
+                default:
+                    break;
+            }
+        }
+        return defaultExt;
+    }
+}
@@ -0,0 +1,145 @@
+package com.skycanvas.video.provider;
+
+import cn.hutool.cache.CacheUtil;
+import cn.hutool.cache.impl.LRUCache;
+import com.alibaba.fastjson2.JSON;
+import com.skycanvas.dto.VideoTaskDTO;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * provider侧的任务状态存储（provider任务ID -> 任务状态）
+ *
+ * 设计说明：
+ * 1. 本地缓存按容量（LRU）和存活时间淘汰，不会随任务数量无限增长
+ * 2. 只保存状态字段（不保存原始响应等元数据），单个条目只有几百字节
+ * 3. 开启Redis时同时写入Redis（同样带过期时间），服务重启后或其他节点查询时从Redis读取
+ */
+@Slf4j
+public class ProviderTaskStore {
+
+    private final String keyPrefix;
+
+    private final StringRedisTemplate stringRedisTemplate;
+
+    private final long ttlSeconds;
+
+    private final LRUCache<String, Entry> localCache;
+
+    /**
+     * @param providerName        provider名称（用于Redis key）
+     * @param stringRedisTemplate 为null时只使用本地缓存
+     * @param capacity            本地缓存最大条目数
+     * @param ttlSeconds          条目存活时间（秒）
+     */
+    public ProviderTaskStore(String providerName, StringRedisTemplate stringRedisTemplate, int capacity, long ttlSeconds) {
+        this.keyPrefix = "video:provider:" + providerName + ":task:";
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.ttlSeconds = ttlSeconds;
+        this.localCache = CacheUtil.newLRUCache(capacity, TimeUnit.SECONDS.toMillis(ttlSeconds));
+    }
+
+    /**
+     * 保存任务状态
+     */
+    public void put(VideoTaskDTO dto) {
+        Entry entry = Entry.of(dto);
+        localCache.put(dto.getTaskId(), entry);
+        if (stringRedisTemplate == null) {
+            return;
+        }
+        try {
+            stringRedisTemplate.opsForValue().set(keyPrefix + dto.getTaskId(), JSON.toJSONString(entry),
+                    ttlSeconds, TimeUnit.SECONDS);
+        } catch (Exception e) {
+            log.warn("写入任务状态失败, taskId: {}", dto.getTaskId(), e);
+        }
+    }
+
+    /**
+     * 读取任务状态
+     * @return 任务状态，不存在或已过期时返回null
+     */
+    public VideoTaskDTO get(String taskId) {
+        Entry entry = localCache.get(taskId);
+        if (entry == null && stringRedisTemplate != null) {
+            try {
+                String json = stringRedisTemplate.opsForValue().get(keyPrefix + taskId);
+                if (json != null) {
+                    entry = JSON.parseObject(json, Entry.class);
+                    localCache.put(taskId, entry);
+                }
+            } catch (Exception e) {
+                log.warn("读取任务状态失败, taskId: {}", taskId, e);
+            }
+        }
+        return entry == null ? null : entry.toDTO(taskId);
+    }
+
+    /**
+     * 删除任务状态
+     */
+    public void remove(String taskId) {
+        localCache.remove(taskId);
+        if (stringRedisTemplate == null) {
+            return;
+        }
+        try {
+            stringRedisTemplate.delete(keyPrefix + taskId);
+        } catch (Exception e) {
+            log.warn("删除任务状态失败, taskId: {}", taskId, e);
+        }
+    }
+
+    /**
+     * 本地缓存条目数
+     */
+    public int size() {
+        return localCache.size();
+    }
+
+    /**
+     * 紧凑的任务状态（不含元数据）
+     */
+    @Data
+    public static class Entry {
+
+        private String status;
+
+        private Integer progress;
+
+        private String videoUrl;
+
+        private String coverUrl;
+
+        private Integer duration;
+
+        private String errorMessage;
+
+        static Entry of(VideoTaskDTO dto) {
+            Entry entry = new Entry();
+            entry.setStatus(dto.getStatus());
+            entry.setProgress(dto.getProgress());
+            entry.setVideoUrl(dto.getVideoUrl());
+            entry.setCoverUrl(dto.getCoverUrl());
+            entry.setDuration(dto.getDuration());
+            entry.setErrorMessage(dto.getErrorMessage());
+            return entry;
+        }
+
+        VideoTaskDTO toDTO(String taskId) {
+            VideoTaskDTO dto = new VideoTaskDTO();
+            dto.setTaskId(taskId);
+            dto.setStatus(status);
+            dto.setProgress(progress);
+            dto.setVideoUrl(videoUrl);
+            dto.setCoverUrl(coverUrl);
+            dto.setDuration(duration);
+            dto.setErrorMessage(errorMessage);
+            return dto;
+        }
+    }
+}
@@ -2,19 +2,31 @@ package com.skycanvas.video.provider;
 
 import com.alibaba.fastjson2.JSON;
 import com.alibaba.fastjson2.JSONObject;
+import com.skycanvas.config.LimitedHttpClient;
 import com.skycanvas.dto.VideoGenerationRequest;
 import com.skycanvas.dto.VideoTaskDTO;
-import com.skycanvas.video.VideoGenerationService;
+import com.skycanvas.video.AsyncVideoGenerationService;
+import com.skycanvas.video.ProviderHttpException;
+import com.skycanvas.video.VideoCallbackSupport;
+import com.skycanvas.video.callback.VideoCallbackSigner;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.http.*;
 import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
 import org.springframework.web.client.RestTemplate;
 
 import javax.annotation.Resource;
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 /**
  * 第三方Sora中转站实现
@@ -22,7 +34,7 @@ import java.util.Map;
 @Slf4j
 @Service("sora-proxyProvider")
 @ConditionalOnProperty(prefix = "video.provider.sora-proxy", name = "enabled", havingValue = "true")
-public class SoraProxyProvider implements VideoGenerationService {
+public class SoraProxyProvider implements AsyncVideoGenerationService, VideoCallbackSupport {
 
     @Value("${video.provider.sora-proxy.api-key}")
     private String apiKey;
@@ -33,71 +45,52 @@ public class SoraProxyProvider implements VideoGenerationService {
     @Value("${video.provider.sora-proxy.timeout:300000}")
     private Integer timeout;
 
-    @Resource
+    @Value("${video.provider.sora-proxy.callback-secret:}")
+    private String callbackSecret;
+
+    @Resource(name = "soraProxyRestTemplate")
     private RestTemplate restTemplate;
 
+    @Resource(name = "soraProxyHttpClient")
+    private LimitedHttpClient httpClient;
+
+    @Autowired
+    private VideoCallbackSigner callbackSigner;
+
     @Override
-    public VideoTaskDTO submitTask(VideoGenerationRequest request) {
+    public CompletableFuture<VideoTaskDTO> submitTaskAsync(VideoGenerationRequest request) {
         log.info("Sora Proxy - 提交任务: {}", request.getPrompt());
 
-        try {
-            // 构建请求
-            Map<String, Object> body = new HashMap<>();
-            body.put("prompt", request.getPrompt());
-            body.put("duration", request.getDuration());
-            body.put("resolution", request.getResolution());
-            body.put("style", request.getStyle());
-            body.put("aspect_ratio", request.getAspectRatio());
-
-            if (request.getImageUrl() != null) {
-                body.put("image_url", request.getImageUrl());
-            }
-
-            // 发送请求
-            HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(MediaType.APPLICATION_JSON);
-            headers.set("Authorization", "Bearer " + apiKey);
+        // 构建请求
+        Map<String, Object> body = new HashMap<>();
+        body.put("prompt", request.getPrompt());
+        body.put("duration", request.getDuration());
+        body.put("resolution", request.getResolution());
+        body.put("style", request.getStyle());
+        body.put("aspect_ratio", request.getAspectRatio());
 
-            HttpEntity<Map<String, Object>> entity = new HttpEntity<>(body, headers);
-            ResponseEntity<String> response = restTemplate.postForEntity(
-                    baseUrl + "/v1/video/generate",
-                    entity,
-                    String.class
-            );
-
-            // 解析响应
-            JSONObject jsonResponse = JSON.parseObject(response.getBody());
-            return convertToTaskDTO(jsonResponse);
+        if (request.getImageUrl() != null) {
+            body.put("image_url", request.getImageUrl());
+        }
 
-        } catch (Exception e) {
-            log.error("Sora Proxy - 提交任务失败", e);
-            throw new RuntimeException("视频生成任务提交失败: " + e.getMessage());
+        // 开启回调时由中转站推送状态
+        if (isCallbackEnabled()) {
+            body.put("callback_url", callbackSigner.getCallbackUrl(getProviderName()));
         }
+
+        HttpRequest httpRequest = newRequest("/v1/video/generate")
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(JSON.toJSONString(body)))
+                .build();
+        return sendAsync(httpRequest, "提交任务", "视频生成任务提交失败: ");
     }
 
     @Override
-    public VideoTaskDTO queryTask(String taskId) {
+    public CompletableFuture<VideoTaskDTO> queryTaskAsync(String taskId) {
         log.info("Sora Proxy - 查询任务: {}", taskId);
 
-        try {
-            HttpHeaders headers = new HttpHeaders();
-            headers.set("Authorization", "Bearer " + apiKey);
-
-            HttpEntity<Void> entity = new HttpEntity<>(headers);
-            ResponseEntity<String> response = restTemplate.exchange(
-                    baseUrl + "/v1/video/query/" + taskId,
-                    HttpMethod.GET,
-                    entity,
-                    String.class
-            );
-
-            JSONObject jsonResponse = JSON.parseObject(response.getBody());
-            return convertToTaskDTO(jsonResponse);
-
-        } catch (Exception e) {
-            log.error("Sora Proxy - 查询任务失败", e);
-            throw new RuntimeException("查询任务失败: " + e.getMessage());
-        }
+        HttpRequest httpRequest = newRequest("/v1/video/query/" + taskId).GET().build();
+        return sendAsync(httpRequest, "查询任务", "查询任务失败: ");
     }
 
     @Override
@@ -117,6 +110,22 @@ public class SoraProxyProvider implements VideoGenerationService {
         return "sora-proxy";
     }
 
+    @Override
+    public boolean isCallbackEnabled() {
+        return callbackSigner.isEnabled() && StringUtils.hasText(callbackSecret);
+    }
+
+    @Override
+    public String getCallbackSecret() {
+        return callbackSecret;
+    }
+
+    @Override
+    public VideoTaskDTO parseCallback(String body) {
+        // 回调内容与查询接口的响应格式一致
+        return convertToTaskDTO(JSON.parseObject(body));
+    }
+
     @Override
     public boolean healthCheck() {
         try {
@@ -138,6 +147,30 @@ public class SoraProxyProvider implements VideoGenerationService {
         }
     }
 
+    private HttpRequest.Builder newRequest(String path) {
+        return HttpRequest.newBuilder(URI.create(baseUrl + path))
+                .timeout(Duration.ofMillis(timeout))
+                .header("Authorization", "Bearer " + apiKey);
+    }
+
+    /**
+     * 非阻塞发送请求并解析为统一格式，失败时抛出与同步调用一致的异常信息
+     */
+    private CompletableFuture<VideoTaskDTO> sendAsync(HttpRequest httpRequest, String action, String errorPrefix) {
+        return httpClient.sendAsync(httpRequest, HttpResponse.BodyHandlers.ofString())
+                .thenApply(response -> {
+                    if (response.statusCode() / 100 != 2) {
+                        throw new ProviderHttpException(response.statusCode(), response.body());
+                    }
+                    return convertToTaskDTO(JSON.parseObject(response.body()));
+                })
+                .exceptionally(e -> {
+                    Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+                    log.error("Sora Proxy - {}失败", action, cause);
+                    throw new RuntimeException(errorPrefix + cause.getMessage(), cause);
+                });
+    }
+
     /**
      * 转换为统一格式的DTO
      */
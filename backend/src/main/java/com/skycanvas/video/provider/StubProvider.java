@@ -0,0 +1,187 @@
+package com.skycanvas.video.provider;
+
+import com.alibaba.fastjson2.JSON;
+import com.alibaba.fastjson2.JSONObject;
+import com.skycanvas.dto.VideoGenerationRequest;
+import com.skycanvas.dto.VideoTaskDTO;
+import com.skycanvas.video.VideoCallbackSupport;
+import com.skycanvas.video.VideoGenerationService;
+import com.skycanvas.video.callback.VideoCallbackSigner;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.RestTemplate;
+
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 本地模拟provider（仅用于开发联调，不调用任何第三方API）
+ * 提交后按 delay 模拟生成过程：中途推送一次进度，结束时推送完成状态，
+ * 开启回调时通过签名回调通知本服务，否则由轮询获取状态
+ * 提示词包含 "[fail]" 时模拟生成失败
+ * 结束的任务保留 retention 毫秒供轮询和查询读取终态，之后删除
+ */
+@Slf4j
+@Service("stubProvider")
+@ConditionalOnProperty(prefix = "video.provider.stub", name = "enabled", havingValue = "true")
+public class StubProvider implements VideoGenerationService, VideoCallbackSupport {
+
+    @Value("${video.provider.stub.delay:10000}")
+    private long delay;
+
+    @Value("${video.provider.stub.callback-secret:}")
+    private String callbackSecret;
+
+    @Value("${video.provider.stub.retention:600000}")
+    private long retention;
+
+    @Resource
+    private RestTemplate restTemplate;
+
+    @Autowired
+    private VideoCallbackSigner callbackSigner;
+
+    /**
+     * 模拟的任务状态（key: taskId）
+     */
+    private final Map<String, JSONObject> tasks = new ConcurrentHashMap<>();
+
+    private final ScheduledExecutorService scheduler =
+            Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("video-stub-"));
+
+    @PreDestroy
+    public void destroy() {
+        scheduler.shutdownNow();
+    }
+
+    @Override
+    public VideoTaskDTO submitTask(VideoGenerationRequest request) {
+        log.info("Stub - 提交任务: {}", request.getPrompt());
+
+        String taskId = "stub_" + UUID.randomUUID().toString().replace("-", "");
+        boolean fail = request.getPrompt() != null && request.getPrompt().contains("[fail]");
+        update(taskId, "processing", 0, null, null);
+
+        scheduler.schedule(() -> {
+            update(taskId, "processing", 50, null, null);
+            notifyCallback(taskId);
+        }, delay / 2, TimeUnit.MILLISECONDS);
+        scheduler.schedule(() -> {
+            if (fail) {
+                update(taskId, "failed", 0, null, "模拟生成失败");
+            } else {
+                update(taskId, "completed", 100, "https://example.com/stub/" + taskId + ".mp4", null);
+            }
+            notifyCallback(taskId);
+            scheduler.schedule(() -> tasks.remove(taskId), retention, TimeUnit.MILLISECONDS);
+        }, delay, TimeUnit.MILLISECONDS);
+
+        VideoTaskDTO dto = convertToTaskDTO(tasks.get(taskId));
+        dto.setEstimatedTime(delay / 1000);
+        return dto;
+    }
+
+    @Override
+    public VideoTaskDTO queryTask(String taskId) {
+        JSONObject task = tasks.get(taskId);
+        if (task == null) {
+            throw new RuntimeException("任务不存在: " + taskId);
+        }
+        return convertToTaskDTO(task);
+    }
+
+    @Override
+    public VideoTaskDTO getResult(String taskId) {
+        return queryTask(taskId);
+    }
+
+    @Override
+    public boolean cancelTask(String taskId) {
+        return tasks.remove(taskId) != null;
+    }
+
+    @Override
+    public String getProviderName() {
+        return "stub";
+    }
+
+    @Override
+    public boolean healthCheck() {
+        return true;
+    }
+
+    @Override
+    public boolean isCallbackEnabled() {
+        return callbackSigner.isEnabled() && callbackSecret != null && !callbackSecret.isEmpty();
+    }
+
+    @Override
+    public String getCallbackSecret() {
+        return callbackSecret;
+    }
+
+    @Override
+    public VideoTaskDTO parseCallback(String body) {
+        return convertToTaskDTO(JSON.parseObject(body));
+    }
+
+    private void update(String taskId, String status, int progress, String videoUrl, String error) {
+        JSONObject task = new JSONObject();
+        task.put("task_id", taskId);
+        task.put("status", status);
+        task.put("progress", progress);
+        task.put("video_url", videoUrl);
+        task.put("error", error);
+        tasks.put(taskId, task);
+    }
+
+    /**
+     * 模拟provider发送签名回调
+     */
+    private void notifyCallback(String taskId) {
+        if (!isCallbackEnabled()) {
+            return;
+        }
+        try {
+            String body = JSON.toJSONString(tasks.get(taskId));
+            long timestamp = System.currentTimeMillis() / 1000;
+
+            HttpHeaders headers = new HttpHeaders();
+            headers.setContentType(MediaType.APPLICATION_JSON);
+            headers.set(VideoCallbackSigner.TIMESTAMP_HEADER, String.valueOf(timestamp));
+            headers.set(VideoCallbackSigner.SIGNATURE_HEADER, callbackSigner.sign(callbackSecret, timestamp, body));
+            restTemplate.postForEntity(callbackSigner.getCallbackUrl(getProviderName()),
+                    new HttpEntity<>(body, headers), String.class);
+        } catch (Exception e) {
+            log.warn("Stub - 回调失败, taskId: {}, {}", taskId, e.getMessage());
+        }
+    }
+
+    private VideoTaskDTO convertToTaskDTO(JSONObject task) {
+        VideoTaskDTO dto = new VideoTaskDTO();
+        dto.setTaskId(task.getString("task_id"));
+        dto.setStatus(task.getString("status").toUpperCase());
+        dto.setProgress(task.getInteger("progress"));
+        dto.setVideoUrl(task.getString("video_url"));
+        dto.setErrorMessage(task.getString("error"));
+
+        Map<String, Object> metadata = new HashMap<>();
+        metadata.put("provider", "stub");
+        dto.setMetadata(metadata);
+        return dto;
+    }
+}
@@ -3,19 +3,30 @@ package com.skycanvas.video.provider;
 import com.alibaba.fastjson2.JSON;
 import com.alibaba.fastjson2.JSONArray;
 import com.alibaba.fastjson2.JSONObject;
+import com.skycanvas.config.LimitedHttpClient;
 import com.skycanvas.dto.VideoGenerationRequest;
 import com.skycanvas.dto.VideoTaskDTO;
-import com.skycanvas.video.VideoGenerationService;
+import com.skycanvas.video.AsyncVideoGenerationService;
+import com.skycanvas.video.ProviderHttpException;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.http.*;
 import org.springframework.stereotype.Service;
 import org.springframework.web.client.RestTemplate;
 
+import javax.annotation.PostConstruct;
 import javax.annotation.Resource;
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Consumer;
 
 /**
  * WenwenAI API 实现（OpenAI chat/completions 兼容格式）
@@ -24,7 +35,7 @@ import java.util.concurrent.ConcurrentHashMap;
 @Slf4j
 @Service("wenwenaiProvider")
 @ConditionalOnProperty(prefix = "video.provider.wenwenai", name = "enabled", havingValue = "true")
-public class WenwenaiProvider implements VideoGenerationService {
+public class WenwenaiProvider implements AsyncVideoGenerationService {
 
     @Value("${video.provider.wenwenai.api-key}")
     private String apiKey;
@@ -38,60 +49,135 @@ public class WenwenaiProvider implements VideoGenerationService {
     @Value("${video.provider.wenwenai.timeout:300000}")
     private Integer timeout;
 
-    @Resource
+    @Value("${video.provider.wenwenai.stream:false}")
+    private boolean stream;
+
+    @Resource(name = "wenwenaiRestTemplate")
     private RestTemplate restTemplate;
 
-    // 存储任务信息的本地缓存（实际项目中应使用 Redis）
-    private final Map<String, VideoTaskDTO> taskCache = new ConcurrentHashMap<>();
+    @Resource(name = "wenwenaiHttpClient")
+    private LimitedHttpClient httpClient;
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Value("${video.provider.wenwenai.task-store.capacity:10000}")
+    private int taskStoreCapacity;
+
+    @Value("${video.provider.wenwenai.task-store.ttl:86400}")
+    private long taskStoreTtl;
+
+    @Value("${video.provider.wenwenai.task-store.redis:false}")
+    private boolean taskStoreRedis;
+
+    // 任务状态存储（按容量和过期时间淘汰，可选写入Redis供其他节点和重启后查询）
+    private ProviderTaskStore taskStore;
+
+    @PostConstruct
+    public void init() {
+        taskStore = new ProviderTaskStore(getProviderName(), taskStoreRedis ? stringRedisTemplate : null,
+                taskStoreCapacity, taskStoreTtl);
+    }
+
+    @Override
+    public CompletableFuture<VideoTaskDTO> submitTaskAsync(VideoGenerationRequest request) {
+        return submitTaskAsync(request, null);
+    }
 
     @Override
-    public VideoTaskDTO submitTask(VideoGenerationRequest request) {
+    public CompletableFuture<VideoTaskDTO> submitTaskAsync(VideoGenerationRequest request,
+                                                           Consumer<VideoTaskDTO> progressListener) {
         log.info("WenwenAI - 提交任务 (OpenAI格式): {}", request.getPrompt());
 
-        try {
-            // 构建 OpenAI chat/completions 格式的请求体
-            Map<String, Object> body = new HashMap<>();
-            body.put("model", model);  // sora_video2
-            
-            // 构建 messages 数组
-            List<Map<String, String>> messages = new ArrayList<>();
-            Map<String, String> message = new HashMap<>();
-            message.put("role", "user");
-            
-            // 构建完整的 content（包含所有参数）
-            String content = buildPromptContent(request);
-            message.put("content", content);
-            
-            messages.add(message);
-            body.put("messages", messages);
+        // 构建 OpenAI chat/completions 格式的请求体
+        Map<String, Object> body = new HashMap<>();
+        body.put("model", model);  // sora_video2
+        if (stream) {
+            body.put("stream", true);
+        }
 
-            // 发送请求
-            HttpHeaders headers = buildHeaders();
-            HttpEntity<Map<String, Object>> entity = new HttpEntity<>(body, headers);
-            
-            log.info("WenwenAI - 请求体: {}", JSON.toJSONString(body));
-            
-            ResponseEntity<String> response = restTemplate.postForEntity(
-                    baseUrl + "/v1/chat/completions",
-                    entity,
-                    String.class
-            );
+        // 构建 messages 数组
+        List<Map<String, String>> messages = new ArrayList<>();
+        Map<String, String> message = new HashMap<>();
+        message.put("role", "user");
 
-            log.info("WenwenAI - 响应: {}", response.getBody());
+        // 构建完整的 content（包含所有参数）
+        String content = buildPromptContent(request);
+        message.put("content", content);
 
-            // 解析响应
-            JSONObject jsonResponse = JSON.parseObject(response.getBody());
-            VideoTaskDTO taskDTO = parseOpenAIResponse(jsonResponse, request);
-            
-            // 缓存任务信息
-            taskCache.put(taskDTO.getTaskId(), taskDTO);
-            
-            return taskDTO;
+        messages.add(message);
+        body.put("messages", messages);
 
-        } catch (Exception e) {
-            log.error("WenwenAI - 提交任务失败", e);
-            throw new RuntimeException("视频生成任务提交失败: " + e.getMessage());
-        }
+        String json = JSON.toJSONString(body);
+        log.info("WenwenAI - 请求体: {}", json);
+
+        // 非阻塞发送，生成期间不占用线程
+        HttpRequest httpRequest = HttpRequest.newBuilder(URI.create(baseUrl + "/v1/chat/completions"))
+                .timeout(Duration.ofMillis(timeout))
+                .header("Content-Type", "application/json")
+                .header("Authorization", "Bearer " + apiKey)
+                .POST(HttpRequest.BodyPublishers.ofString(json))
+                .build();
+
+        CompletableFuture<VideoTaskDTO> future = stream
+                ? sendStreaming(httpRequest, request, progressListener)
+                : sendBlocking(httpRequest, request);
+        return future.exceptionally(e -> {
+            Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+            log.error("WenwenAI - 提交任务失败", cause);
+            throw new RuntimeException("视频生成任务提交失败: " + cause.getMessage(), cause);
+        });
+    }
+
+    /**
+     * 普通模式：等待完整响应后解析
+     */
+    private CompletableFuture<VideoTaskDTO> sendBlocking(HttpRequest httpRequest, VideoGenerationRequest request) {
+        return httpClient.sendAsync(httpRequest, HttpResponse.BodyHandlers.ofString())
+                .thenApply(response -> {
+                    if (response.statusCode() / 100 != 2) {
+                        throw new ProviderHttpException(response.statusCode(), response.body());
+                    }
+                    log.info("WenwenAI - 响应: {}", response.body());
+
+                    // 解析响应
+                    JSONObject jsonResponse = JSON.parseObject(response.body());
+                    VideoTaskDTO taskDTO = parseOpenAIResponse(jsonResponse, request);
+
+                    // 缓存任务信息
+                    taskStore.put(taskDTO);
+
+                    return taskDTO;
+                });
+    }
+
+    /**
+     * 流式模式：逐行解析SSE，生成过程中的进度写入任务状态存储并通知监听器
+     */
+    private CompletableFuture<VideoTaskDTO> sendStreaming(HttpRequest httpRequest, VideoGenerationRequest request,
+                                                          Consumer<VideoTaskDTO> progressListener) {
+        WenwenaiStreamParser parser = new WenwenaiStreamParser((taskId, progress) -> {
+            VideoTaskDTO dto = new VideoTaskDTO();
+            dto.setTaskId(taskId);
+            dto.setStatus("PROCESSING");
+            dto.setProgress(progress);
+            taskStore.put(dto);
+            if (progressListener != null) {
+                progressListener.accept(dto);
+            }
+        });
+
+        return httpClient.sendAsync(httpRequest, HttpResponse.BodyHandlers.fromLineSubscriber(parser))
+                .thenApply(response -> {
+                    if (response.statusCode() / 100 != 2) {
+                        throw new ProviderHttpException(response.statusCode(), parser.getErrorBody());
+                    }
+                    log.info("WenwenAI - 流式响应结束, id: {}", parser.getTaskId());
+
+                    VideoTaskDTO taskDTO = buildTaskDTO(parser.getTaskId(), parser.getContent(), request);
+                    taskStore.put(taskDTO);
+                    return taskDTO;
+                });
     }
 
     /**
@@ -121,29 +207,41 @@ public class WenwenaiProvider implements VideoGenerationService {
      * 解析 OpenAI 格式的响应
      */
     private VideoTaskDTO parseOpenAIResponse(JSONObject response, VideoGenerationRequest request) {
-        VideoTaskDTO dto = new VideoTaskDTO();
-        
-        // 生成任务ID（使用响应中的 id 或自己生成）
-        String taskId = response.getString("id");
-        if (taskId == null) {
-            taskId = "task_" + UUID.randomUUID().toString().replace("-", "").substring(0, 16);
-        }
-        dto.setTaskId(taskId);
-        
         // 解析 choices 中的内容
+        String content = null;
         JSONArray choices = response.getJSONArray("choices");
         if (choices != null && !choices.isEmpty()) {
             JSONObject choice = choices.getJSONObject(0);
             JSONObject message = choice.getJSONObject("message");
             
             if (message != null) {
-                String content = message.getString("content");
-                log.info("WenwenAI - 返回内容: {}", content);
-                
-                // 尝试从 content 中提取视频URL或任务信息
-                parseContentForVideoInfo(dto, content);
+                content = message.getString("content");
             }
         }
+
+        VideoTaskDTO dto = buildTaskDTO(response.getString("id"), content, request);
+        dto.getMetadata().put("rawResponse", response);
+        return dto;
+    }
+
+    /**
+     * 根据返回内容构建任务信息
+     */
+    private VideoTaskDTO buildTaskDTO(String taskId, String content, VideoGenerationRequest request) {
+        VideoTaskDTO dto = new VideoTaskDTO();
+        
+        // 生成任务ID（使用响应中的 id 或自己生成）
+        if (taskId == null) {
+            taskId = "task_" + UUID.randomUUID().toString().replace("-", "").substring(0, 16);
+        }
+        dto.setTaskId(taskId);
+
+        if (content != null) {
+            log.info("WenwenAI - 返回内容: {}", content);
+
+            // 尝试从 content 中提取视频URL或任务信息
+            parseContentForVideoInfo(dto, content);
+        }
         
         // 如果还没有视频URL，设置状态为处理中
         if (dto.getVideoUrl() == null) {
@@ -159,7 +257,6 @@ public class WenwenaiProvider implements VideoGenerationService {
         metadata.put("provider", "wenwenai");
         metadata.put("model", model);
         metadata.put("prompt", request.getPrompt());
-        metadata.put("rawResponse", response);
         dto.setMetadata(metadata);
         
         return dto;
@@ -208,11 +305,16 @@ public class WenwenaiProvider implements VideoGenerationService {
     }
 
     @Override
-    public VideoTaskDTO queryTask(String taskId) {
+    public CompletableFuture<VideoTaskDTO> queryTaskAsync(String taskId) {
+        // 生成结果在提交响应中返回，查询只读取任务状态存储
+        return CompletableFuture.completedFuture(queryCachedTask(taskId));
+    }
+
+    private VideoTaskDTO queryCachedTask(String taskId) {
         log.info("WenwenAI - 查询任务: {}", taskId);
 
         // 从缓存中获取任务信息
-        VideoTaskDTO cachedTask = taskCache.get(taskId);
+        VideoTaskDTO cachedTask = taskStore.get(taskId);
         if (cachedTask != null) {
             log.info("从缓存获取任务信息: {}", taskId);
             return cachedTask;
@@ -240,7 +342,7 @@ public class WenwenaiProvider implements VideoGenerationService {
         
         // OpenAI chat/completions 格式通常是即时返回，不支持取消
         // 从缓存中移除任务
-        taskCache.remove(taskId);
+        taskStore.remove(taskId);
         log.info("已从缓存中移除任务: {}", taskId);
         
         return true;
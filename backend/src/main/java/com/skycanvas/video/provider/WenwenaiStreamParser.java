@@ -0,0 +1,145 @@
+package com.skycanvas.video.provider;
+
+import com.alibaba.fastjson2.JSON;
+import com.alibaba.fastjson2.JSONArray;
+import com.alibaba.fastjson2.JSONObject;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.Flow;
+import java.util.function.BiConsumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * WenwenAI 流式响应（SSE）解析
+ *
+ * 按行处理 "data: {chunk}"，不保存原始响应：
+ * 1. 第一个带id的chunk即表示任务已被接受
+ * 2. delta.content 中出现的百分比作为进度，进度增加时通知监听器
+ * 3. 拼接 delta.content 作为最终内容，从中解析视频URL
+ * 非SSE格式的行（例如错误响应体）只保留前若干字符用于错误信息
+ */
+@Slf4j
+class WenwenaiStreamParser implements Flow.Subscriber<String> {
+
+    private static final Pattern PROGRESS_PATTERN = Pattern.compile("(\\d{1,3})(?:\\.\\d+)?\\s*%");
+
+    private static final int MAX_ERROR_BODY = 1000;
+
+    /**
+     * 进度监听（provider任务ID, 进度），在HTTP回调线程中按顺序调用
+     */
+    private final BiConsumer<String, Integer> progressListener;
+
+    private final StringBuilder content = new StringBuilder();
+
+    private final StringBuilder errorBody = new StringBuilder();
+
+    private String taskId;
+
+    private int progress = -1;
+
+    WenwenaiStreamParser(BiConsumer<String, Integer> progressListener) {
+        this.progressListener = progressListener;
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+        subscription.request(Long.MAX_VALUE);
+    }
+
+    @Override
+    public void onNext(String line) {
+        if (line.startsWith("data:")) {
+            String data = line.substring(5).trim();
+            if (!data.isEmpty() && !"[DONE]".equals(data)) {
+                onChunk(data);
+            }
+        } else if (!line.isEmpty() && !line.startsWith(":") && !line.startsWith("event:") && !line.startsWith("id:")
+                && errorBody.length() < MAX_ERROR_BODY) {
+            errorBody.append(line, 0, Math.min(line.length(), MAX_ERROR_BODY - errorBody.length()));
+        }
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+        // 异常由 sendAsync 返回的future传递
+    }
+
+    @Override
+    public void onComplete() {
+        // 结果由BodySubscriber的finisher读取
+    }
+
+    private void onChunk(String data) {
+        JSONObject chunk;
+        try {
+            chunk = JSON.parseObject(data);
+        } catch (Exception e) {
+            log.debug("WenwenAI - 忽略无法解析的chunk: {}", data);
+            return;
+        }
+        if (taskId == null && chunk.getString("id") != null) {
+            taskId = chunk.getString("id");
+            report(0);
+        }
+
+        JSONArray choices = chunk.getJSONArray("choices");
+        if (choices == null || choices.isEmpty()) {
+            return;
+        }
+        JSONObject choice = choices.getJSONObject(0);
+        JSONObject delta = choice.getJSONObject("delta");
+        if (delta == null) {
+            delta = choice.getJSONObject("message");
+        }
+        String text = delta != null ? delta.getString("content") : null;
+        if (text == null || text.isEmpty()) {
+            return;
+        }
+        content.append(text);
+
+        Integer hint = lastProgress(text);
+        if (hint != null) {
+            report(hint);
+        }
+    }
+
+    /**
+     * 进度只增不减，100%以URL为准，不作为进度上报
+     */
+    private void report(int value) {
+        if (taskId == null || value <= progress || value >= 100) {
+            return;
+        }
+        progress = value;
+        if (progressListener != null) {
+            try {
+                progressListener.accept(taskId, value);
+            } catch (Exception e) {
+                log.warn("WenwenAI - 进度回调失败, taskId: {}", taskId, e);
+            }
+        }
+    }
+
+    private Integer lastProgress(String text) {
+        Matcher matcher = PROGRESS_PATTERN.matcher(text);
+        Integer value = null;
+        while (matcher.find()) {
+            value = Integer.parseInt(matcher.group(1));
+        }
+        return value;
+    }
+
+    String getTaskId() {
+        return taskId;
+    }
+
+    String getContent() {
+        return content.toString();
+    }
+
+    String getErrorBody() {
+        return errorBody.toString();
+    }
+}
@@ -0,0 +1,95 @@
+package com.skycanvas.video.resilience;
+
+/**
+ * 自适应并发限制（AIMD + 延迟梯度）
+ *
+ * 1. 以成功调用耗时的慢速移动平均作为基线，耗时超过 基线 × tolerance 视为慢调用
+ *    （同一provider的提交和查询耗时差异很大，分别使用各自的限制器和基线）
+ * 2. 调用成功且不慢：限制加性增长（每个限制周期约+1）
+ * 3. 调用失败或慢调用：限制乘性下降（× backoff-ratio），上游变慢时迅速收缩并发，
+ *    超出限制的调用立即拒绝，不再占用线程等待
+ */
+public class AdaptiveConcurrencyLimiter {
+
+    /**
+     * 基线平滑系数，基线变化较慢，持续变慢时才会被逐步接受
+     */
+    private static final double BASELINE_ALPHA = 0.05;
+
+    private final int minLimit;
+
+    private final int maxLimit;
+
+    private final double tolerance;
+
+    private final long minSlowCallMs;
+
+    private final double backoffRatio;
+
+    private double limit;
+
+    private int inFlight;
+
+    private double baselineMs;
+
+    public AdaptiveConcurrencyLimiter(int initialLimit, int minLimit, int maxLimit,
+                                      double tolerance, long minSlowCallMs, double backoffRatio) {
+        this.limit = initialLimit;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.tolerance = tolerance;
+        this.minSlowCallMs = minSlowCallMs;
+        this.backoffRatio = backoffRatio;
+    }
+
+    /**
+     * 申请并发名额
+     * @return 是否获得名额（返回true时必须调用onComplete或release）
+     */
+    public synchronized boolean tryAcquire() {
+        if (inFlight >= (int) limit) {
+            return false;
+        }
+        inFlight++;
+        return true;
+    }
+
+    /**
+     * 调用结束，按结果调整限制
+     */
+    public synchronized void onComplete(long elapsedMs, boolean success) {
+        inFlight--;
+        boolean slow = baselineMs > 0 && elapsedMs > Math.max(baselineMs * tolerance, minSlowCallMs);
+        if (success) {
+            baselineMs = baselineMs == 0 ? elapsedMs : baselineMs * (1 - BASELINE_ALPHA) + elapsedMs * BASELINE_ALPHA;
+        }
+
+        if (success && !slow) {
+            // 只有并发接近限制时才增长，避免空闲时限制无限变大
+            if (inFlight + 1 >= (int) limit / 2) {
+                limit = Math.min(maxLimit, limit + 1.0 / limit);
+            }
+        } else {
+            limit = Math.max(minLimit, limit * backoffRatio);
+        }
+    }
+
+    /**
+     * 归还名额但不调整限制（获得名额后未发出调用时使用）
+     */
+    public synchronized void release() {
+        inFlight--;
+    }
+
+    public synchronized int getLimit() {
+        return (int) limit;
+    }
+
+    public synchronized int getInFlight() {
+        return inFlight;
+    }
+
+    public synchronized long getBaselineMs() {
+        return Math.round(baselineMs);
+    }
+}
@@ -0,0 +1,141 @@
+package com.skycanvas.video.resilience;
+
+/**
+ * 熔断器
+ *
+ * 状态流转：
+ * CLOSED   --最近N次调用失败率超过阈值-->  OPEN
+ * OPEN     --等待open-duration-->          HALF_OPEN（放行少量探测调用）
+ * HALF_OPEN --探测全部成功--> CLOSED；--任一探测失败--> OPEN
+ */
+public class CircuitBreaker {
+
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private final int windowSize;
+
+    private final int minimumCalls;
+
+    private final double failureRateThreshold;
+
+    private final long openDurationMs;
+
+    private final int halfOpenProbes;
+
+    /**
+     * 最近windowSize次调用结果的环形缓冲（true表示失败）
+     */
+    private final boolean[] window;
+
+    private int windowIndex;
+
+    private int recordedCalls;
+
+    private int failures;
+
+    private State state = State.CLOSED;
+
+    private long openedAt;
+
+    private int probesInFlight;
+
+    private int probesSucceeded;
+
+    public CircuitBreaker(int windowSize, int minimumCalls, double failureRateThreshold,
+                          long openDurationMs, int halfOpenProbes) {
+        this.windowSize = windowSize;
+        this.minimumCalls = minimumCalls;
+        this.failureRateThreshold = failureRateThreshold;
+        this.openDurationMs = openDurationMs;
+        this.halfOpenProbes = halfOpenProbes;
+        this.window = new boolean[windowSize];
+    }
+
+    /**
+     * 申请调用许可
+     * @return 是否允许调用（返回true时必须调用onSuccess或onFailure）
+     */
+    public synchronized boolean tryAcquire() {
+        if (state == State.OPEN) {
+            if (System.currentTimeMillis() - openedAt < openDurationMs) {
+                return false;
+            }
+            state = State.HALF_OPEN;
+            probesInFlight = 0;
+            probesSucceeded = 0;
+        }
+        if (state == State.HALF_OPEN) {
+            if (probesInFlight + probesSucceeded >= halfOpenProbes) {
+                return false;
+            }
+            probesInFlight++;
+        }
+        return true;
+    }
+
+    public synchronized void onSuccess() {
+        if (state == State.HALF_OPEN) {
+            probesInFlight = Math.max(0, probesInFlight - 1);
+            probesSucceeded++;
+            if (probesSucceeded >= halfOpenProbes) {
+                reset();
+            }
+            return;
+        }
+        record(false);
+    }
+
+    public synchronized void onFailure() {
+        if (state == State.HALF_OPEN) {
+            open();
+            return;
+        }
+        record(true);
+        if (state == State.CLOSED && recordedCalls >= minimumCalls
+                && (double) failures / recordedCalls >= failureRateThreshold) {
+            open();
+        }
+    }
+
+    public synchronized State getState() {
+        if (state == State.OPEN && System.currentTimeMillis() - openedAt >= openDurationMs) {
+            return State.HALF_OPEN;
+        }
+        return state;
+    }
+
+    public synchronized double getFailureRate() {
+        return recordedCalls == 0 ? 0 : (double) failures / recordedCalls;
+    }
+
+    private void record(boolean failed) {
+        if (recordedCalls == windowSize) {
+            if (window[windowIndex]) {
+                failures--;
+            }
+        } else {
+            recordedCalls++;
+        }
+        window[windowIndex] = failed;
+        if (failed) {
+            failures++;
+        }
+        windowIndex = (windowIndex + 1) % windowSize;
+    }
+
+    private void open() {
+        state = State.OPEN;
+        openedAt = System.currentTimeMillis();
+    }
+
+    private void reset() {
+        state = State.CLOSED;
+        windowIndex = 0;
+        recordedCalls = 0;
+        failures = 0;
+        probesInFlight = 0;
+        probesSucceeded = 0;
+    }
+}
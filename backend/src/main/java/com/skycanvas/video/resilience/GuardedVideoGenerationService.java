@@ -0,0 +1,288 @@
+package com.skycanvas.video.resilience;
+
+import com.skycanvas.dto.VideoGenerationRequest;
+import com.skycanvas.dto.VideoTaskDTO;
+import com.skycanvas.video.AsyncVideoGenerationService;
+import com.skycanvas.video.VideoCallbackSupport;
+import com.skycanvas.video.VideoGenerationService;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * 带熔断和自适应并发限制的provider装饰器
+ * 熔断打开或并发已达上限时立即抛出ProviderUnavailableException，不发出调用
+ * healthCheck不经过熔断，回调相关方法直接委托；客户端错误（4xx，见RetryPolicy.isClientError）不计入熔断失败
+ * 异步方法在请求发出前申请名额，在响应完成时归还；被装饰的provider不支持异步时在调用线程中同步执行
+ * 提交和查询按RetryPolicy重试（每次重试都重新经过熔断和并发限制，并受重试预算约束）；
+ * 查询耗时超过最近的耗时分位数仍未返回时，再发出一个对冲请求，先成功的结果生效
+ */
+@Slf4j
+public class GuardedVideoGenerationService implements AsyncVideoGenerationService, VideoCallbackSupport {
+
+    private final VideoGenerationService delegate;
+
+    private final CircuitBreaker breaker;
+
+    private final AdaptiveConcurrencyLimiter submitLimiter;
+
+    private final AdaptiveConcurrencyLimiter queryLimiter;
+
+    private final AdaptiveConcurrencyLimiter cancelLimiter;
+
+    private final ProviderGuardRegistry registry;
+
+    private final RetryPolicy retryPolicy;
+
+    private final RetryBudget retryBudget;
+
+    private final LatencyTracker queryLatency;
+
+    public GuardedVideoGenerationService(VideoGenerationService delegate, ProviderGuardRegistry registry) {
+        this.delegate = delegate;
+        this.registry = registry;
+        this.retryPolicy = registry.retryPolicy(delegate.getProviderName());
+        this.retryBudget = registry.retryBudget(delegate.getProviderName());
+        this.queryLatency = registry.queryLatency(delegate.getProviderName());
+        this.breaker = registry.breaker(delegate.getProviderName());
+        this.submitLimiter = registry.limiter(delegate.getProviderName(), "submit");
+        this.queryLimiter = registry.limiter(delegate.getProviderName(), "query");
+        this.cancelLimiter = registry.limiter(delegate.getProviderName(), "cancel");
+    }
+
+    /**
+     * 被装饰的provider
+     */
+    public VideoGenerationService getDelegate() {
+        return delegate;
+    }
+
+    @Override
+    public VideoTaskDTO submitTask(VideoGenerationRequest request) {
+        return AsyncVideoGenerationService.await(submitTaskAsync(request));
+    }
+
+    @Override
+    public VideoTaskDTO queryTask(String taskId) {
+        return AsyncVideoGenerationService.await(queryTaskAsync(taskId));
+    }
+
+    @Override
+    public CompletableFuture<VideoTaskDTO> submitTaskAsync(VideoGenerationRequest request) {
+        return submitTaskAsync(request, null);
+    }
+
+    @Override
+    public CompletableFuture<VideoTaskDTO> submitTaskAsync(VideoGenerationRequest request,
+                                                           Consumer<VideoTaskDTO> progressListener) {
+        return withRetry(false, () -> callAsync(submitLimiter, () -> {
+            if (delegate instanceof AsyncVideoGenerationService) {
+                return ((AsyncVideoGenerationService) delegate).submitTaskAsync(request, progressListener);
+            }
+            return CompletableFuture.completedFuture(delegate.submitTask(request));
+        }));
+    }
+
+    @Override
+    public CompletableFuture<VideoTaskDTO> queryTaskAsync(String taskId) {
+        return withRetry(true, () -> hedged(() -> callAsync(queryLimiter, () -> {
+            if (delegate instanceof AsyncVideoGenerationService) {
+                return ((AsyncVideoGenerationService) delegate).queryTaskAsync(taskId);
+            }
+            return CompletableFuture.completedFuture(delegate.queryTask(taskId));
+        })));
+    }
+
+    @Override
+    public VideoTaskDTO getResult(String taskId) {
+        return call(queryLimiter, () -> delegate.getResult(taskId));
+    }
+
+    @Override
+    public boolean cancelTask(String taskId) {
+        return call(cancelLimiter, () -> delegate.cancelTask(taskId));
+    }
+
+    @Override
+    public String getProviderName() {
+        return delegate.getProviderName();
+    }
+
+    @Override
+    public boolean healthCheck() {
+        return delegate.healthCheck();
+    }
+
+    @Override
+    public boolean isCallbackEnabled() {
+        return delegate instanceof VideoCallbackSupport && ((VideoCallbackSupport) delegate).isCallbackEnabled();
+    }
+
+    @Override
+    public String getCallbackSecret() {
+        return delegate instanceof VideoCallbackSupport ? ((VideoCallbackSupport) delegate).getCallbackSecret() : null;
+    }
+
+    @Override
+    public VideoTaskDTO parseCallback(String body) {
+        if (!(delegate instanceof VideoCallbackSupport)) {
+            throw new UnsupportedOperationException(getProviderName() + "不支持回调");
+        }
+        return ((VideoCallbackSupport) delegate).parseCallback(body);
+    }
+
+    private <T> T call(AdaptiveConcurrencyLimiter limiter, Supplier<T> invocation) {
+        acquire(limiter);
+        long start = System.currentTimeMillis();
+        try {
+            T result = invocation.get();
+            complete(limiter, start, null);
+            return result;
+        } catch (RuntimeException | Error e) {
+            complete(limiter, start, e);
+            throw e;
+        }
+    }
+
+    private <T> CompletableFuture<T> callAsync(AdaptiveConcurrencyLimiter limiter,
+                                               Supplier<CompletableFuture<T>> invocation) {
+        try {
+            acquire(limiter);
+        } catch (ProviderUnavailableException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+
+        long start = System.currentTimeMillis();
+        CompletableFuture<T> future;
+        try {
+            future = invocation.get();
+        } catch (Exception e) {
+            complete(limiter, start, e);
+            return CompletableFuture.failedFuture(e);
+        }
+        return future.whenComplete((result, error) -> complete(limiter, start, error));
+    }
+
+    /**
+     * 失败时按退避时间重试，重试次数用完、错误不可重试或重试预算不足时返回最后一次的错误
+     */
+    private <T> CompletableFuture<T> withRetry(boolean idempotent, Supplier<CompletableFuture<T>> attempt) {
+        retryBudget.onRequest();
+        CompletableFuture<T> result = new CompletableFuture<>();
+        attempt(attempt, idempotent, 0, result);
+        return result;
+    }
+
+    private <T> void attempt(Supplier<CompletableFuture<T>> attempt, boolean idempotent, int retry,
+                             CompletableFuture<T> result) {
+        CompletableFuture<T> future;
+        try {
+            future = attempt.get();
+        } catch (Exception e) {
+            future = CompletableFuture.failedFuture(e);
+        }
+        future.whenComplete((value, error) -> {
+            if (error == null) {
+                result.complete(value);
+                return;
+            }
+            Throwable cause = unwrap(error);
+            if (retry >= retryPolicy.getMaxRetries() || !retryPolicy.isRetryable(cause, idempotent)
+                    || !retryBudget.tryRetry()) {
+                result.completeExceptionally(cause);
+                return;
+            }
+            long delay = retryPolicy.backoff(retry);
+            log.warn("{}调用失败，{}ms后第{}次重试: {}", getProviderName(), delay, retry + 1, cause.getMessage());
+            CompletableFuture.delayedExecutor(delay, TimeUnit.MILLISECONDS)
+                    .execute(() -> attempt(attempt, idempotent, retry + 1, result));
+        });
+    }
+
+    /**
+     * 对冲请求：等待超过耗时分位数仍未返回时再发出一次相同的请求（消耗一次重试预算），先成功的结果生效，
+     * 两个请求都失败时返回失败
+     */
+    private CompletableFuture<VideoTaskDTO> hedged(Supplier<CompletableFuture<VideoTaskDTO>> attempt) {
+        CompletableFuture<VideoTaskDTO> primary = timed(attempt);
+        long hedgeDelay = registry.hedgeDelay(queryLatency);
+        if (hedgeDelay < 0 || primary.isDone()) {
+            return primary;
+        }
+
+        CompletableFuture<VideoTaskDTO> result = new CompletableFuture<>();
+        AtomicInteger pending = new AtomicInteger(1);
+        BiConsumer<VideoTaskDTO, Throwable> settle = (value, error) -> {
+            if (error == null) {
+                result.complete(value);
+            } else if (pending.decrementAndGet() == 0) {
+                result.completeExceptionally(unwrap(error));
+            }
+        };
+        primary.whenComplete(settle);
+        CompletableFuture.delayedExecutor(hedgeDelay, TimeUnit.MILLISECONDS).execute(() -> {
+            if (result.isDone() || !retryBudget.tryRetry()) {
+                return;
+            }
+            pending.incrementAndGet();
+            queryLatency.onHedged();
+            log.debug("{}查询超过{}ms未返回，发出对冲请求", getProviderName(), hedgeDelay);
+            timed(attempt).whenComplete(settle);
+        });
+        return result;
+    }
+
+    /**
+     * 发出请求并记录成功调用的耗时
+     */
+    private CompletableFuture<VideoTaskDTO> timed(Supplier<CompletableFuture<VideoTaskDTO>> attempt) {
+        long start = System.currentTimeMillis();
+        CompletableFuture<VideoTaskDTO> future;
+        try {
+            future = attempt.get();
+        } catch (Exception e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        return future.whenComplete((value, error) -> {
+            if (error == null) {
+                queryLatency.record(System.currentTimeMillis() - start);
+            }
+        });
+    }
+
+    private Throwable unwrap(Throwable error) {
+        if (error instanceof CompletionException && error.getCause() != null) {
+            return error.getCause();
+        }
+        return error;
+    }
+
+    private void acquire(AdaptiveConcurrencyLimiter limiter) {
+        if (!limiter.tryAcquire()) {
+            throw new ProviderUnavailableException(getProviderName() + "并发已达上限（" + limiter.getLimit() + "）");
+        }
+        if (!breaker.tryAcquire()) {
+            limiter.release();
+            throw new ProviderUnavailableException(getProviderName() + "服务暂不可用（熔断中）");
+        }
+    }
+
+    /**
+     * @param error 调用的错误，成功时为null
+     */
+    private void complete(AdaptiveConcurrencyLimiter limiter, long start, Throwable error) {
+        boolean success = error == null || retryPolicy.isClientError(error);
+        limiter.onComplete(System.currentTimeMillis() - start, success);
+        if (success) {
+            breaker.onSuccess();
+        } else {
+            breaker.onFailure();
+        }
+    }
+}
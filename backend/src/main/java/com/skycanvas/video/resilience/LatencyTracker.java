@@ -0,0 +1,55 @@
+package com.skycanvas.video.resilience;
+
+import java.util.Arrays;
+
+/**
+ * 最近N次成功调用的耗时，用于计算对冲请求的触发时间（耗时分位数）
+ */
+public class LatencyTracker {
+
+    private final long[] samples;
+
+    private int next;
+
+    private int count;
+
+    private long hedged;
+
+    public LatencyTracker(int size) {
+        this.samples = new long[size];
+    }
+
+    public synchronized void record(long elapsedMs) {
+        samples[next] = elapsedMs;
+        next = (next + 1) % samples.length;
+        if (count < samples.length) {
+            count++;
+        }
+    }
+
+    /**
+     * @param percentile 分位数（0-1）
+     * @return 耗时分位数（毫秒），没有样本时返回-1
+     */
+    public synchronized long percentile(double percentile) {
+        if (count == 0) {
+            return -1;
+        }
+        long[] sorted = Arrays.copyOf(samples, count);
+        Arrays.sort(sorted);
+        int index = (int) Math.ceil(percentile * count) - 1;
+        return sorted[Math.max(0, Math.min(index, count - 1))];
+    }
+
+    public synchronized int getCount() {
+        return count;
+    }
+
+    public synchronized void onHedged() {
+        hedged++;
+    }
+
+    public synchronized long getHedged() {
+        return hedged;
+    }
+}
@@ -0,0 +1,171 @@
+package com.skycanvas.video.resilience;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 每个provider的熔断器、自适应并发限制、重试策略和对冲请求统计
+ */
+@Component
+public class ProviderGuardRegistry {
+
+    @Autowired
+    private Environment environment;
+
+    @Value("${video.resilience.breaker.window-size:20}")
+    private int windowSize;
+
+    @Value("${video.resilience.breaker.minimum-calls:10}")
+    private int minimumCalls;
+
+    @Value("${video.resilience.breaker.failure-rate:0.5}")
+    private double failureRate;
+
+    @Value("${video.resilience.breaker.open-duration:30000}")
+    private long openDuration;
+
+    @Value("${video.resilience.breaker.half-open-probes:3}")
+    private int halfOpenProbes;
+
+    @Value("${video.resilience.limiter.initial-limit:20}")
+    private int initialLimit;
+
+    @Value("${video.resilience.limiter.min-limit:2}")
+    private int minLimit;
+
+    @Value("${video.resilience.limiter.max-limit:200}")
+    private int maxLimit;
+
+    @Value("${video.resilience.limiter.tolerance:2.0}")
+    private double tolerance;
+
+    @Value("${video.resilience.limiter.min-slow-call:1000}")
+    private long minSlowCall;
+
+    @Value("${video.resilience.limiter.backoff-ratio:0.7}")
+    private double backoffRatio;
+
+    @Value("${video.resilience.retry.max-retries:2}")
+    private int defaultMaxRetries;
+
+    @Value("${video.resilience.retry.base-delay:200}")
+    private long retryBaseDelay;
+
+    @Value("${video.resilience.retry.max-delay:5000}")
+    private long retryMaxDelay;
+
+    @Value("${video.resilience.retry.budget-ratio:0.2}")
+    private double retryBudgetRatio;
+
+    @Value("${video.resilience.retry.budget-min-per-second:3}")
+    private int retryBudgetMinPerSecond;
+
+    @Value("${video.resilience.hedge.enabled:true}")
+    private boolean hedgeEnabled;
+
+    @Value("${video.resilience.hedge.percentile:0.95}")
+    private double hedgePercentile;
+
+    @Value("${video.resilience.hedge.min-delay:500}")
+    private long hedgeMinDelay;
+
+    @Value("${video.resilience.hedge.min-samples:20}")
+    private int hedgeMinSamples;
+
+    private final Map<String, CircuitBreaker> breakers = new ConcurrentHashMap<>();
+
+    private final Map<String, RetryBudget> retryBudgets = new ConcurrentHashMap<>();
+
+    private final Map<String, LatencyTracker> queryLatencies = new ConcurrentHashMap<>();
+
+    private final Map<String, AdaptiveConcurrencyLimiter> limiters = new ConcurrentHashMap<>();
+
+    public CircuitBreaker breaker(String providerName) {
+        return breakers.computeIfAbsent(providerName,
+                name -> new CircuitBreaker(windowSize, minimumCalls, failureRate, openDuration, halfOpenProbes));
+    }
+
+    /**
+     * @param operation 调用类型（submit/query/cancel），不同调用的耗时差异大，分别限制
+     */
+    public AdaptiveConcurrencyLimiter limiter(String providerName, String operation) {
+        return limiters.computeIfAbsent(providerName + ":" + operation,
+                name -> new AdaptiveConcurrencyLimiter(initialLimit, minLimit, maxLimit,
+                        tolerance, minSlowCall, backoffRatio));
+    }
+
+    /**
+     * 重试策略：重试次数取 video.provider.{name}.retry，退避时间可以用
+     * video.provider.{name}.retry-base-delay / retry-max-delay 单独配置，未配置时使用 video.resilience.retry.*
+     */
+    public RetryPolicy retryPolicy(String providerName) {
+        String prefix = "video.provider." + providerName + ".";
+        return new RetryPolicy(
+                environment.getProperty(prefix + "retry", Integer.class, defaultMaxRetries),
+                environment.getProperty(prefix + "retry-base-delay", Long.class, retryBaseDelay),
+                environment.getProperty(prefix + "retry-max-delay", Long.class, retryMaxDelay));
+    }
+
+    public RetryBudget retryBudget(String providerName) {
+        return retryBudgets.computeIfAbsent(providerName,
+                name -> new RetryBudget(retryBudgetRatio, retryBudgetMinPerSecond));
+    }
+
+    public LatencyTracker queryLatency(String providerName) {
+        return queryLatencies.computeIfAbsent(providerName, name -> new LatencyTracker(200));
+    }
+
+    /**
+     * 查询请求发出后多久未返回就发出对冲请求
+     * @return 等待时间（毫秒），未开启或样本不足时返回-1
+     */
+    public long hedgeDelay(LatencyTracker tracker) {
+        if (!hedgeEnabled || tracker.getCount() < hedgeMinSamples) {
+            return -1;
+        }
+        return Math.max(hedgeMinDelay, tracker.percentile(hedgePercentile));
+    }
+
+    /**
+     * 各provider的熔断状态和并发限制快照
+     */
+    public Map<String, Map<String, Object>> getStats() {
+        Map<String, Map<String, Object>> result = new LinkedHashMap<>();
+        breakers.forEach((name, breaker) -> {
+            Map<String, Object> item = new LinkedHashMap<>();
+            item.put("breakerState", breaker.getState().name());
+            item.put("failureRate", breaker.getFailureRate());
+            result.put(name, item);
+        });
+        limiters.forEach((key, limiter) -> {
+            int index = key.lastIndexOf(':');
+            Map<String, Object> item = result.computeIfAbsent(key.substring(0, index), name -> new LinkedHashMap<>());
+            Map<String, Object> limit = new LinkedHashMap<>();
+            limit.put("concurrencyLimit", limiter.getLimit());
+            limit.put("inFlight", limiter.getInFlight());
+            limit.put("baselineMs", limiter.getBaselineMs());
+            item.put(key.substring(index + 1), limit);
+        });
+        retryBudgets.forEach((name, budget) -> {
+            Map<String, Object> retry = new LinkedHashMap<>();
+            retry.put("retries", budget.getRetries());
+            retry.put("rejected", budget.getRejected());
+            retry.put("budget", Math.floor(budget.getBalance() * 100) / 100);
+            result.computeIfAbsent(name, key -> new LinkedHashMap<>()).put("retry", retry);
+        });
+        queryLatencies.forEach((name, tracker) -> {
+            Map<String, Object> hedge = new LinkedHashMap<>();
+            hedge.put("queryP95Ms", tracker.percentile(0.95));
+            hedge.put("hedgeDelayMs", hedgeDelay(tracker));
+            hedge.put("hedged", tracker.getHedged());
+            result.computeIfAbsent(name, key -> new LinkedHashMap<>()).put("hedge", hedge);
+        });
+        return result;
+    }
+}
@@ -0,0 +1,13 @@
+package com.skycanvas.video.resilience;
+
+import com.skycanvas.exception.BusinessException;
+
+/**
+ * provider暂不可用（熔断打开或并发已达上限），调用未发出
+ */
+public class ProviderUnavailableException extends BusinessException {
+
+    public ProviderUnavailableException(String message) {
+        super(503, message);
+    }
+}
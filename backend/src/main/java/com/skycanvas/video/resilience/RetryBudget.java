@@ -0,0 +1,75 @@
+package com.skycanvas.video.resilience;
+
+/**
+ * 重试预算，避免上游故障时重试放大请求量（重试风暴）
+ *
+ * 每个请求存入 ratio 个令牌（最多积累 ratio × 100 个），每次重试消耗1个，
+ * 重试总量约为请求量的 ratio 倍；另外每秒保底允许 minPerSecond 次重试，保证低流量时也能重试
+ */
+public class RetryBudget {
+
+    private final double ratio;
+
+    private final int minPerSecond;
+
+    private final double maxBalance;
+
+    private double balance;
+
+    private long currentSecond;
+
+    private int retriesThisSecond;
+
+    private long retries;
+
+    private long rejected;
+
+    public RetryBudget(double ratio, int minPerSecond) {
+        this.ratio = ratio;
+        this.minPerSecond = minPerSecond;
+        this.maxBalance = Math.max(1, ratio * 100);
+    }
+
+    /**
+     * 记录一次请求（不含重试）
+     */
+    public synchronized void onRequest() {
+        balance = Math.min(maxBalance, balance + ratio);
+    }
+
+    /**
+     * 申请一次重试
+     * @return 预算不足时返回false，调用方应直接返回失败
+     */
+    public synchronized boolean tryRetry() {
+        long second = System.currentTimeMillis() / 1000;
+        if (second != currentSecond) {
+            currentSecond = second;
+            retriesThisSecond = 0;
+        }
+        if (retriesThisSecond < minPerSecond) {
+            retriesThisSecond++;
+            retries++;
+            return true;
+        }
+        if (balance >= 1) {
+            balance -= 1;
+            retries++;
+            return true;
+        }
+        rejected++;
+        return false;
+    }
+
+    public synchronized double getBalance() {
+        return balance;
+    }
+
+    public synchronized long getRetries() {
+        return retries;
+    }
+
+    public synchronized long getRejected() {
+        return rejected;
+    }
+}
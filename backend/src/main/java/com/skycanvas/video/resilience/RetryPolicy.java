@@ -0,0 +1,83 @@
+package com.skycanvas.video.resilience;
+
+import com.skycanvas.video.ProviderHttpException;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.http.HttpConnectTimeoutException;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 重试策略：指数退避 + 全抖动（full jitter），按异常类型判断是否可以重试
+ *
+ * 可重试的错误：
+ * 1. 请求确定未被上游处理：连接失败、连接超时、429/503（提交和查询都可以重试）
+ * 2. 请求可能已被上游处理：读取超时、连接中断、408/500，以及网关返回的502/504（上游可能已收到请求，
+ *    只是网关未等到响应；只有查询这类幂等调用可以重试，提交重试可能在上游产生重复任务）
+ * 熔断或并发限制拒绝（ProviderUnavailableException）和其他4xx不重试
+ */
+public class RetryPolicy {
+
+    private final int maxRetries;
+
+    private final long baseDelayMs;
+
+    private final long maxDelayMs;
+
+    public RetryPolicy(int maxRetries, long baseDelayMs, long maxDelayMs) {
+        this.maxRetries = maxRetries;
+        this.baseDelayMs = baseDelayMs;
+        this.maxDelayMs = maxDelayMs;
+    }
+
+    public int getMaxRetries() {
+        return maxRetries;
+    }
+
+    /**
+     * 第retry次重试（从0开始）前的等待时间：0 ~ min(maxDelay, baseDelay × 2^retry) 之间随机
+     */
+    public long backoff(int retry) {
+        long ceiling = Math.min(maxDelayMs, baseDelayMs << Math.min(retry, 20));
+        return ceiling <= 0 ? 0 : ThreadLocalRandom.current().nextLong(ceiling + 1);
+    }
+
+    /**
+     * 是否为客户端错误（除408/429外的4xx）：上游已正常处理并拒绝了请求，不说明provider不健康，
+     * 不计入熔断失败和并发限制的失败
+     */
+    public boolean isClientError(Throwable error) {
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            if (cause instanceof ProviderHttpException) {
+                int status = ((ProviderHttpException) cause).getStatusCode();
+                return status >= 400 && status < 500 && status != 408 && status != 429;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @param idempotent 调用是否幂等（查询为true，提交为false）
+     */
+    public boolean isRetryable(Throwable error, boolean idempotent) {
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            if (cause instanceof ProviderUnavailableException) {
+                return false;
+            }
+            if (cause instanceof ProviderHttpException) {
+                int status = ((ProviderHttpException) cause).getStatusCode();
+                if (status == 429 || status == 503) {
+                    return true;
+                }
+                return idempotent && (status == 408 || status == 500 || status == 502 || status == 504);
+            }
+            if (cause instanceof ConnectException || cause instanceof HttpConnectTimeoutException) {
+                return true;
+            }
+            if (cause instanceof IOException) {
+                return idempotent;
+            }
+        }
+        return false;
+    }
+}
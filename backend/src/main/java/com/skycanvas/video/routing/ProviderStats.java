@@ -0,0 +1,113 @@
+package com.skycanvas.video.routing;
+
+/**
+ * provider调用统计（指数加权移动平均）
+ * 提交和查询分开统计：两者耗时可能相差几个数量级（如同步等待生成的提交与读取本地状态的查询），
+ * 路由得分和健康状态只按提交计算
+ * 所有方法在对象锁内执行
+ */
+public class ProviderStats {
+
+    /**
+     * 平滑系数，越大越偏重最近的调用
+     */
+    private static final double ALPHA = 0.2;
+
+    private final Ewma submit;
+
+    private final Ewma query;
+
+    private int consecutiveFailures;
+
+    private long lastFailureAt;
+
+    public ProviderStats(double initialLatencyMs) {
+        this.submit = new Ewma(initialLatencyMs);
+        this.query = new Ewma(initialLatencyMs);
+    }
+
+    /**
+     * 记录一次提交
+     */
+    public synchronized void recordSubmit(long elapsedMs, boolean success) {
+        submit.record(elapsedMs, success);
+        if (success) {
+            consecutiveFailures = 0;
+        } else {
+            consecutiveFailures++;
+            lastFailureAt = System.currentTimeMillis();
+        }
+    }
+
+    /**
+     * 记录一次查询（只用于监控，不影响路由）
+     */
+    public synchronized void recordQuery(long elapsedMs, boolean success) {
+        query.record(elapsedMs, success);
+    }
+
+    /**
+     * 连续提交失败达到阈值且仍在冷却期内视为不健康，冷却期过后重新参与选择（相当于探测）
+     */
+    public synchronized boolean isHealthy(int failureThreshold, long cooldownMs) {
+        return consecutiveFailures < failureThreshold || System.currentTimeMillis() - lastFailureAt >= cooldownMs;
+    }
+
+    /**
+     * 路由得分：权重 × 提交成功率² / 提交平均耗时
+     */
+    public synchronized double score(double weight) {
+        double successRate = 1 - submit.errorRate;
+        return weight * successRate * successRate / Math.max(submit.latencyMs, 1);
+    }
+
+    public synchronized double getSubmitLatencyMs() {
+        return submit.latencyMs;
+    }
+
+    public synchronized double getSubmitErrorRate() {
+        return submit.errorRate;
+    }
+
+    public synchronized long getSubmitCalls() {
+        return submit.calls;
+    }
+
+    public synchronized double getQueryLatencyMs() {
+        return query.latencyMs;
+    }
+
+    public synchronized double getQueryErrorRate() {
+        return query.errorRate;
+    }
+
+    public synchronized long getQueryCalls() {
+        return query.calls;
+    }
+
+    public synchronized int getConsecutiveFailures() {
+        return consecutiveFailures;
+    }
+
+    /**
+     * 一类调用的耗时和错误率
+     */
+    private static class Ewma {
+
+        private double latencyMs;
+
+        private double errorRate;
+
+        private long calls;
+
+        Ewma(double initialLatencyMs) {
+            this.latencyMs = initialLatencyMs;
+        }
+
+        void record(long elapsedMs, boolean success) {
+            calls++;
+            latencyMs = latencyMs * (1 - ALPHA) + elapsedMs * ALPHA;
+            errorRate = errorRate * (1 - ALPHA) + (success ? 0 : ALPHA);
+        }
+    }
+}
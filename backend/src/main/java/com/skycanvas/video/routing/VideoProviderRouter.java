@@ -0,0 +1,244 @@
+package com.skycanvas.video.routing;
+
+import com.skycanvas.video.VideoGenerationService;
+import com.skycanvas.video.VideoProviderFactory;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import javax.annotation.PostConstruct;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 多provider路由
+ *
+ * 设计说明：
+ * 1. 按provider分别记录提交和查询的耗时和错误率（指数加权移动平均），路由只看提交
+ * 2. 得分 = 权重 × 提交成功率² / 提交平均耗时，首选provider按得分加权随机选择，让负载随延迟和健康度自动倾斜，
+ *    同时保留少量流量探测其他provider
+ * 3. 连续提交失败达到阈值的provider在冷却期内排在最后，冷却期过后重新参与选择
+ * 4. 提交失败时分发器按排序依次切换到下一个provider，全部失败才退款
+ * 5. 只在 video.routing.providers 列出的provider之间路由（未列出时只有 video.provider.default），
+ *    启用新的provider不会自动分到生产流量
+ * 6. 关闭路由（video.routing.enabled=false，默认）时始终使用 video.provider.default，不做切换
+ */
+@Slf4j
+@Component
+public class VideoProviderRouter {
+
+    @Autowired
+    private VideoProviderFactory providerFactory;
+
+    @Value("${video.provider.default}")
+    private String defaultProvider;
+
+    @Value("${video.routing.enabled:false}")
+    private boolean enabled;
+
+    /**
+     * 参与路由的provider，格式：name,name（为空时只有默认provider）
+     */
+    @Value("${video.routing.providers:}")
+    private String providersConfig;
+
+    /**
+     * provider权重，格式：name:weight,name:weight（未配置的provider权重为1）
+     */
+    @Value("${video.routing.weights:}")
+    private String weightsConfig;
+
+    @Value("${video.routing.failure-threshold:3}")
+    private int failureThreshold;
+
+    @Value("${video.routing.cooldown:30000}")
+    private long cooldown;
+
+    @Value("${video.routing.initial-latency:2000}")
+    private double initialLatency;
+
+    private final Map<String, Double> weights = new HashMap<>();
+
+    private final List<String> candidates = new ArrayList<>();
+
+    private final Map<String, ProviderStats> stats = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void init() {
+        if (StringUtils.hasText(providersConfig)) {
+            for (String name : providersConfig.split(",")) {
+                if (StringUtils.hasText(name)) {
+                    candidates.add(name.trim());
+                }
+            }
+        }
+        if (candidates.isEmpty()) {
+            candidates.add(defaultProvider);
+        }
+
+        if (!StringUtils.hasText(weightsConfig)) {
+            return;
+        }
+        for (String item : weightsConfig.split(",")) {
+            String[] pair = item.trim().split(":");
+            if (pair.length == 2) {
+                weights.put(pair[0].trim(), Double.parseDouble(pair[1].trim()));
+            }
+        }
+    }
+
+    /**
+     * 选择新任务使用的provider
+     */
+    public VideoGenerationService select() {
+        return rank().get(0);
+    }
+
+    /**
+     * 选择下一个可切换的provider
+     * @param attempted 已尝试过的provider名称
+     * @return 下一个provider，没有可用的provider时返回null
+     */
+    public VideoGenerationService next(Collection<String> attempted) {
+        if (!enabled) {
+            return null;
+        }
+        for (VideoGenerationService provider : rank()) {
+            if (!attempted.contains(provider.getProviderName())
+                    && stats(provider.getProviderName()).isHealthy(failureThreshold, cooldown)) {
+                return provider;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 记录一次提交
+     */
+    public void recordSubmit(String providerName, long elapsedMs, boolean success) {
+        stats(providerName).recordSubmit(elapsedMs, success);
+    }
+
+    /**
+     * 记录一次状态查询
+     */
+    public void recordQuery(String providerName, long elapsedMs, boolean success) {
+        stats(providerName).recordQuery(elapsedMs, success);
+    }
+
+    /**
+     * 各provider的统计快照
+     */
+    public Map<String, Map<String, Object>> getStats() {
+        Map<String, Map<String, Object>> result = new LinkedHashMap<>();
+        for (VideoGenerationService provider : providerFactory.getAllProviders()) {
+            String name = provider.getProviderName();
+            ProviderStats providerStats = stats(name);
+            Map<String, Object> submit = new LinkedHashMap<>();
+            submit.put("latencyMs", Math.round(providerStats.getSubmitLatencyMs()));
+            submit.put("errorRate", providerStats.getSubmitErrorRate());
+            submit.put("calls", providerStats.getSubmitCalls());
+            Map<String, Object> query = new LinkedHashMap<>();
+            query.put("latencyMs", Math.round(providerStats.getQueryLatencyMs()));
+            query.put("errorRate", providerStats.getQueryErrorRate());
+            query.put("calls", providerStats.getQueryCalls());
+
+            Map<String, Object> item = new LinkedHashMap<>();
+            item.put("submit", submit);
+            item.put("query", query);
+            item.put("consecutiveFailures", providerStats.getConsecutiveFailures());
+            item.put("healthy", providerStats.isHealthy(failureThreshold, cooldown));
+            item.put("score", providerStats.score(weight(name)));
+            result.put(name, item);
+        }
+        return result;
+    }
+
+    /**
+     * 按优先级排序所有provider：健康的在前，首位按得分加权随机选出，其余按得分降序
+     */
+    private List<VideoGenerationService> rank() {
+        if (!enabled) {
+            List<VideoGenerationService> single = new ArrayList<>();
+            single.add(providerFactory.getProvider(defaultProvider));
+            return single;
+        }
+
+        List<VideoGenerationService> healthy = new ArrayList<>();
+        List<VideoGenerationService> unhealthy = new ArrayList<>();
+        for (VideoGenerationService provider : candidateProviders()) {
+            if (stats(provider.getProviderName()).isHealthy(failureThreshold, cooldown)) {
+                healthy.add(provider);
+            } else {
+                unhealthy.add(provider);
+            }
+        }
+        if (healthy.isEmpty() && unhealthy.isEmpty()) {
+            throw new RuntimeException("没有可用的视频生成服务");
+        }
+
+        Comparator<VideoGenerationService> byScore = Comparator.comparingDouble(
+                (VideoGenerationService provider) -> score(provider.getProviderName())).reversed();
+        healthy.sort(byScore);
+        unhealthy.sort(byScore);
+
+        if (healthy.size() > 1) {
+            VideoGenerationService first = weightedPick(healthy);
+            healthy.remove(first);
+            healthy.add(0, first);
+        }
+        healthy.addAll(unhealthy);
+        return healthy;
+    }
+
+    /**
+     * 已启用的候选provider（未启用的跳过）
+     */
+    private List<VideoGenerationService> candidateProviders() {
+        List<VideoGenerationService> providers = new ArrayList<>();
+        for (String name : candidates) {
+            try {
+                providers.add(providerFactory.getProvider(name));
+            } catch (Exception e) {
+                log.debug("路由候选provider未启用: {}", name);
+            }
+        }
+        return providers;
+    }
+
+    private VideoGenerationService weightedPick(List<VideoGenerationService> candidates) {
+        double total = 0;
+        for (VideoGenerationService provider : candidates) {
+            total += score(provider.getProviderName());
+        }
+        double point = ThreadLocalRandom.current().nextDouble() * total;
+        for (VideoGenerationService provider : candidates) {
+            point -= score(provider.getProviderName());
+            if (point <= 0) {
+                return provider;
+            }
+        }
+        return candidates.get(0);
+    }
+
+    private double score(String providerName) {
+        return stats(providerName).score(weight(providerName));
+    }
+
+    private double weight(String providerName) {
+        return weights.getOrDefault(providerName, 1.0);
+    }
+
+    private ProviderStats stats(String providerName) {
+        return stats.computeIfAbsent(providerName, name -> new ProviderStats(initialLatency));
+    }
+}
@@ -0,0 +1,87 @@
+package com.skycanvas.video.task;
+
+import com.skycanvas.utils.RedisUtils;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import javax.annotation.PostConstruct;
+import java.net.InetAddress;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 集群节点注册
+ * 每个节点定期在Redis写入心跳，任务记录处理节点，心跳消失的节点上的任务由其他节点接管
+ */
+@Slf4j
+@Component
+public class ClusterNodeRegistry {
+
+    private static final String HEARTBEAT_KEY_PREFIX = "video:node:heartbeat:";
+
+    /**
+     * 心跳过期时间（秒）
+     */
+    private static final long HEARTBEAT_TTL = 30;
+
+    @Autowired
+    private RedisUtils redisUtils;
+
+    /**
+     * 节点ID，未配置时使用 主机名:端口，保证同一节点重启后ID不变
+     */
+    @Value("${video.node-id:}")
+    private String configuredNodeId;
+
+    @Value("${server.port:8080}")
+    private int serverPort;
+
+    private String nodeId;
+
+    @PostConstruct
+    public void init() {
+        nodeId = StringUtils.hasText(configuredNodeId) ? configuredNodeId : resolveHostName() + ":" + serverPort;
+        log.info("当前节点ID: {}", nodeId);
+        heartbeat();
+    }
+
+    /**
+     * 当前节点ID
+     */
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    /**
+     * 节点是否存活
+     */
+    public boolean isAlive(String otherNodeId) {
+        if (nodeId.equals(otherNodeId)) {
+            return true;
+        }
+        return Boolean.TRUE.equals(redisUtils.hasKey(HEARTBEAT_KEY_PREFIX + otherNodeId));
+    }
+
+    /**
+     * 定期续期心跳
+     */
+    @Scheduled(fixedDelay = 10000)
+    public void heartbeat() {
+        try {
+            redisUtils.set(HEARTBEAT_KEY_PREFIX + nodeId, System.currentTimeMillis(), HEARTBEAT_TTL, TimeUnit.SECONDS);
+        } catch (Exception e) {
+            log.error("写入节点心跳失败: {}", nodeId, e);
+        }
+    }
+
+    private String resolveHostName() {
+        try {
+            return InetAddress.getLocalHost().getHostName();
+        } catch (Exception e) {
+            return "unknown";
+        }
+    }
+}
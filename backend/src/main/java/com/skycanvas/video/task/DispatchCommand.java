@@ -0,0 +1,61 @@
+package com.skycanvas.video.task;
+
+import com.skycanvas.dto.VideoGenerationRequest;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * 任务分发指令
+ * 事务提交后由VideoTaskService交给分发器，携带提交第三方API所需的全部信息
+ */
+@Data
+@NoArgsConstructor
+public class DispatchCommand {
+
+    /**
+     * 数据库任务ID
+     */
+    private Long dbTaskId;
+
+    /**
+     * 用户ID
+     */
+    private Long userId;
+
+    /**
+     * provider名称
+     */
+    private String providerName;
+
+    /**
+     * 生成请求
+     */
+    private VideoGenerationRequest request;
+
+    /**
+     * 消耗积分
+     */
+    private Integer costCredits;
+
+    /**
+     * 已尝试提交过的provider（提交失败切换provider时使用）
+     */
+    private Set<String> attemptedProviders = new LinkedHashSet<>();
+
+    /**
+     * 首次因provider熔断或并发已满未能提交的时间（延迟重新提交时使用）
+     */
+    private Long unavailableSince;
+
+    public DispatchCommand(Long dbTaskId, Long userId, String providerName,
+                           VideoGenerationRequest request, Integer costCredits) {
+        this.dbTaskId = dbTaskId;
+        this.userId = userId;
+        this.providerName = providerName;
+        this.request = request;
+        this.costCredits = costCredits;
+    }
+}
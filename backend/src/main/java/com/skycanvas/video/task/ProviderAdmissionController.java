@@ -0,0 +1,507 @@
+package com.skycanvas.video.task;
+
+import com.skycanvas.exception.TooManyRequestsException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * Provider准入控制
+ *
+ * 设计说明：
+ * 1. 每个provider一条通道，在途任务数不超过 video.task.max-concurrent
+ * 2. 超出的任务在有界队列中等待（数据库状态保持0-队列中），队列上限为 video.task.queue-size
+ * 3. 队列已满时在扣积分之前快速拒绝（429），并根据平均任务耗时给出重试建议
+ * 4. 任务到达终态后释放名额，按用户公平调度启动排队中的任务：
+ *    - 排队任务按用户分组，用户之间加权差额轮询（DRR），轮到的用户每轮获得与权重相同的启动额度，
+ *      一个用户连续提交大量任务不会挤占其他用户的启动机会
+ *    - 用户在途数受集群级上限约束（见 UserSchedulingPolicy），达到上限的用户本轮跳过；
+ *      其他节点释放名额不会触发本节点调度，由定时任务补充启动
+ *    - 候选任务在通道锁内选出并预先计入在途，用户名额（Redis）在锁外申请，未获得名额的任务放回用户队首
+ *
+ * 注意：provider在途计数为单节点内的计数，多节点部署时总并发为 节点数 × max-concurrent
+ */
+@Slf4j
+@Component
+public class ProviderAdmissionController {
+
+    /**
+     * 未观测到任务耗时时使用的默认值（毫秒）
+     */
+    private static final double DEFAULT_DURATION_MS = 60000;
+
+    @Value("${video.task.max-concurrent:10}")
+    private int maxConcurrent;
+
+    @Value("${video.task.queue-size:100}")
+    private int queueSize;
+
+    @Autowired
+    private UserSchedulingPolicy schedulingPolicy;
+
+    private final Map<String, Lane> lanes = new ConcurrentHashMap<>();
+
+    /**
+     * 任务所在通道（在途或排队中）
+     */
+    private final Map<Long, Lane> owners = new ConcurrentHashMap<>();
+
+    /**
+     * 获得名额后的启动回调（由分发器设置）
+     */
+    private volatile Consumer<DispatchCommand> launcher;
+
+    public void setLauncher(Consumer<DispatchCommand> launcher) {
+        this.launcher = launcher;
+    }
+
+    /**
+     * 预占名额，队列已满时抛出429异常
+     * 预占在当前事务结束时释放，事务提交后由offer转为正式排队
+     * @return 预计排队信息
+     */
+    public QueueInfo reserve(String providerName) {
+        return reserve(providerName, 1).get(0);
+    }
+
+    /**
+     * 一次预占多个名额（批量提交），剩余名额不足时整体拒绝
+     * @return 各任务的预计排队信息
+     */
+    public List<QueueInfo> reserve(String providerName, int count) {
+        Lane lane = lane(providerName);
+        List<QueueInfo> infos = new ArrayList<>(count);
+        synchronized (lane) {
+            int occupied = lane.inFlight.size() + lane.waitingCount + lane.reserved;
+            if (occupied + count > maxConcurrent + queueSize) {
+                long retryAfter = lane.estimateWaitSeconds(lane.waitingCount + count, maxConcurrent);
+                log.warn("Provider {}排队已满, 在途: {}, 排队: {}, 申请: {}",
+                        providerName, lane.inFlight.size(), lane.waitingCount, count);
+                throw TooManyRequestsException.of("当前排队任务过多，请" + retryAfter + "秒后重试", retryAfter);
+            }
+            lane.reserved += count;
+            for (int i = 0; i < count; i++) {
+                infos.add(new QueueInfo(Math.max(0, occupied + 1 + i - maxConcurrent), lane.waitingCount));
+            }
+        }
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    unreserve(lane, count);
+                }
+            });
+        } else {
+            unreserve(lane, count);
+        }
+        return infos;
+    }
+
+    /**
+     * 任务入队：有空闲名额时按公平调度启动，否则排队等待
+     */
+    public void offer(DispatchCommand command) {
+        // 权重可能需要查询数据库，在通道锁之外获取
+        double weight = schedulingPolicy.weight(command.getUserId());
+        Lane lane = lane(command.getProviderName());
+        synchronized (lane) {
+            owners.put(command.getDbTaskId(), lane);
+            lane.enqueue(command, weight);
+        }
+
+        List<DispatchCommand> launched = schedule(lane);
+        if (!launched.contains(command)) {
+            log.info("任务进入排队, dbTaskId: {}, userId: {}, provider: {}",
+                    command.getDbTaskId(), command.getUserId(), command.getProviderName());
+        }
+    }
+
+    /**
+     * 登记已在provider处生成中的任务（服务重启恢复时使用），直接计入在途数，不受上限约束
+     */
+    public void adopt(String providerName, Long userId, Long dbTaskId) {
+        Lane lane = lane(providerName);
+        synchronized (lane) {
+            owners.put(dbTaskId, lane);
+            lane.inFlight.put(dbTaskId, new Running(userId, System.currentTimeMillis()));
+        }
+        schedulingPolicy.track(userId, dbTaskId);
+    }
+
+    /**
+     * 任务是否由本节点跟踪（在途或排队中）
+     */
+    public boolean isTracking(Long dbTaskId) {
+        return owners.containsKey(dbTaskId);
+    }
+
+    /**
+     * 释放任务占用的名额（在途或排队均可），并启动排队中的任务
+     * 重复释放是安全的
+     */
+    public void release(Long dbTaskId) {
+        Lane lane = owners.remove(dbTaskId);
+        if (lane == null) {
+            return;
+        }
+
+        Running running;
+        synchronized (lane) {
+            running = lane.inFlight.remove(dbTaskId);
+            if (running != null) {
+                lane.recordDuration(System.currentTimeMillis() - running.startedAt);
+            } else {
+                lane.remove(dbTaskId);
+            }
+        }
+        // 先归还用户名额，同一用户排队中的任务在本次调度中即可启动
+        if (running != null) {
+            schedulingPolicy.release(running.userId, dbTaskId);
+        }
+        schedule(lane);
+    }
+
+    /**
+     * 定期补充启动排队任务
+     * 用户名额可能由其他节点释放，本节点收不到释放通知，达到用户上限的排队任务在这里重新尝试
+     */
+    @Scheduled(fixedDelayString = "${video.task.fair-share.pump-interval:2000}")
+    public void pump() {
+        if (!schedulingPolicy.isCapEnabled()) {
+            return;
+        }
+        for (Lane lane : lanes.values()) {
+            synchronized (lane) {
+                if (lane.waitingCount == 0) {
+                    continue;
+                }
+            }
+            schedule(lane);
+        }
+    }
+
+    /**
+     * 查询任务的排队信息
+     * 排队位置按加权轮询估算：任务是所属用户的第n个排队任务时，
+     * 排在它前面的是该用户的前n-1个任务，以及每个其他用户按权重比例在同一时间内启动的任务
+     * @return 排队信息，任务不在本节点排队时返回null
+     */
+    public QueueInfo getQueueInfo(Long dbTaskId) {
+        Lane lane = owners.get(dbTaskId);
+        if (lane == null) {
+            return null;
+        }
+        synchronized (lane) {
+            if (lane.inFlight.containsKey(dbTaskId)) {
+                return new QueueInfo(0, lane.waitingCount);
+            }
+            for (UserQueue queue : lane.userQueues.values()) {
+                int index = 1;
+                for (DispatchCommand command : queue.commands) {
+                    if (command.getDbTaskId().equals(dbTaskId)) {
+                        return new QueueInfo(lane.estimatePosition(queue, index), lane.waitingCount);
+                    }
+                    index++;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 任务到达终态时释放名额
+     */
+    @EventListener
+    public void onTaskStateChanged(VideoTaskStateChangedEvent event) {
+        if (event.isTerminal()) {
+            release(event.getDbTaskId());
+        }
+    }
+
+    /**
+     * 按公平调度启动排队中的任务
+     * 通道锁内选出候选任务并计入在途，锁外申请用户在途名额（Redis调用不阻塞同一通道的其他线程）；
+     * 未获得名额的任务放回用户队首，该用户在本次调度中不再参与；申请期间被释放（取消）的任务不再启动
+     * @return 已启动的任务
+     */
+    private List<DispatchCommand> schedule(Lane lane) {
+        List<DispatchCommand> launched = new ArrayList<>();
+        // 本次调度中已达到在途上限的用户，不再重复检查
+        Set<Long> blocked = new HashSet<>();
+        while (true) {
+            List<Candidate> candidates = new ArrayList<>();
+            synchronized (lane) {
+                while (lane.inFlight.size() < maxConcurrent) {
+                    Candidate candidate = lane.pollNext(blocked);
+                    if (candidate == null) {
+                        break;
+                    }
+                    DispatchCommand command = candidate.command;
+                    lane.inFlight.put(command.getDbTaskId(), new Running(command.getUserId(), System.currentTimeMillis()));
+                    candidates.add(candidate);
+                }
+            }
+            if (candidates.isEmpty()) {
+                return launched;
+            }
+
+            List<Candidate> acquired = new ArrayList<>();
+            List<Candidate> denied = new ArrayList<>();
+            for (Candidate candidate : candidates) {
+                Long userId = candidate.command.getUserId();
+                if (!blocked.contains(userId) && schedulingPolicy.tryAcquire(userId, candidate.command.getDbTaskId())) {
+                    acquired.add(candidate);
+                } else {
+                    blocked.add(userId);
+                    denied.add(candidate);
+                }
+            }
+
+            List<DispatchCommand> next = new ArrayList<>();
+            List<DispatchCommand> cancelled = new ArrayList<>();
+            synchronized (lane) {
+                // 倒序放回队首，保持用户任务原来的顺序
+                for (int i = denied.size() - 1; i >= 0; i--) {
+                    Candidate candidate = denied.get(i);
+                    if (lane.inFlight.remove(candidate.command.getDbTaskId()) != null) {
+                        lane.requeue(candidate);
+                    } else if (!lane.userQueues.containsKey(candidate.command.getUserId())) {
+                        // 已取消且用户没有其他排队任务，不再计入阻塞用户（pollNext按数量判断是否还有可轮询的用户）
+                        blocked.remove(candidate.command.getUserId());
+                    }
+                }
+                for (Candidate candidate : acquired) {
+                    if (lane.inFlight.containsKey(candidate.command.getDbTaskId())) {
+                        next.add(candidate.command);
+                    } else {
+                        cancelled.add(candidate.command);
+                    }
+                }
+            }
+            for (DispatchCommand command : cancelled) {
+                schedulingPolicy.release(command.getUserId(), command.getDbTaskId());
+            }
+            launchAll(next);
+            launched.addAll(next);
+        }
+    }
+
+    private void launchAll(List<DispatchCommand> commands) {
+        for (DispatchCommand command : commands) {
+            launcher.accept(command);
+        }
+    }
+
+    private void unreserve(Lane lane, int count) {
+        synchronized (lane) {
+            lane.reserved -= count;
+        }
+    }
+
+    private Lane lane(String providerName) {
+        return lanes.computeIfAbsent(providerName, name -> new Lane());
+    }
+
+    /**
+     * provider通道（所有字段在通道锁内访问）
+     */
+    private static class Lane {
+
+        /**
+         * 在途任务（key: 数据库任务ID）
+         */
+        private final Map<Long, Running> inFlight = new LinkedHashMap<>();
+
+        /**
+         * 排队中的任务（key: 用户ID）
+         */
+        private final Map<Long, UserQueue> userQueues = new HashMap<>();
+
+        /**
+         * 有排队任务的用户，按轮询顺序排列，队首为当前轮到的用户
+         */
+        private final Deque<Long> activeUsers = new ArrayDeque<>();
+
+        /**
+         * 排队任务总数
+         */
+        private int waitingCount;
+
+        /**
+         * 已预占但事务尚未结束的名额
+         */
+        private int reserved;
+
+        /**
+         * 任务平均耗时（指数加权移动平均，毫秒）
+         */
+        private double avgDurationMs = DEFAULT_DURATION_MS;
+
+        void enqueue(DispatchCommand command, double weight) {
+            UserQueue queue = userQueues.get(command.getUserId());
+            if (queue == null) {
+                queue = new UserQueue(weight);
+                userQueues.put(command.getUserId(), queue);
+                activeUsers.addLast(command.getUserId());
+            }
+            queue.commands.addLast(command);
+            waitingCount++;
+        }
+
+        /**
+         * 加权差额轮询取出下一个任务
+         * 轮到的用户获得与权重相同的额度，额度不少于1时取出一个任务并扣减1，
+         * 额度用完后轮到下一个用户；达到在途上限的用户跳过
+         * @param blocked 已达到在途上限的用户
+         * @return 下一个任务，没有可启动的任务时返回null
+         */
+        Candidate pollNext(Set<Long> blocked) {
+            while (activeUsers.size() > blocked.size()) {
+                Long userId = activeUsers.pollFirst();
+                UserQueue queue = userQueues.get(userId);
+                if (blocked.contains(userId)) {
+                    activeUsers.addLast(userId);
+                    continue;
+                }
+                if (queue.deficit < 1) {
+                    queue.deficit += queue.weight;
+                    if (queue.deficit < 1) {
+                        activeUsers.addLast(userId);
+                        continue;
+                    }
+                }
+
+                DispatchCommand command = queue.commands.pollFirst();
+                queue.deficit -= 1;
+                waitingCount--;
+                if (queue.commands.isEmpty()) {
+                    // 没有排队任务的用户不保留额度
+                    userQueues.remove(userId);
+                } else {
+                    activeUsers.addFirst(userId);
+                }
+                return new Candidate(command, queue.weight);
+            }
+            return null;
+        }
+
+        /**
+         * 未获得用户名额的任务放回用户队首并退回额度
+         * 被阻塞期间不累积额度，解除后不会连续启动大量任务
+         */
+        void requeue(Candidate candidate) {
+            Long userId = candidate.command.getUserId();
+            UserQueue queue = userQueues.get(userId);
+            if (queue == null) {
+                queue = new UserQueue(candidate.weight);
+                userQueues.put(userId, queue);
+                activeUsers.addLast(userId);
+            }
+            queue.commands.addFirst(candidate.command);
+            queue.deficit = Math.min(queue.deficit + 1, Math.max(1, queue.weight));
+            waitingCount++;
+        }
+
+        void remove(Long dbTaskId) {
+            for (Map.Entry<Long, UserQueue> entry : userQueues.entrySet()) {
+                UserQueue queue = entry.getValue();
+                if (queue.commands.removeIf(command -> command.getDbTaskId().equals(dbTaskId))) {
+                    waitingCount--;
+                    if (queue.commands.isEmpty()) {
+                        userQueues.remove(entry.getKey());
+                        activeUsers.remove(entry.getKey());
+                    }
+                    return;
+                }
+            }
+        }
+
+        int estimatePosition(UserQueue own, int index) {
+            int position = index;
+            for (UserQueue other : userQueues.values()) {
+                if (other != own) {
+                    int share = (int) Math.ceil(index * other.weight / own.weight);
+                    position += Math.min(other.commands.size(), share);
+                }
+            }
+            return position;
+        }
+
+        void recordDuration(long durationMs) {
+            avgDurationMs = avgDurationMs * 0.8 + durationMs * 0.2;
+        }
+
+        long estimateWaitSeconds(int position, int maxConcurrent) {
+            long rounds = (position + maxConcurrent - 1) / maxConcurrent;
+            long seconds = (long) (avgDurationMs / 1000 * rounds);
+            return Math.max(5, Math.min(seconds, 600));
+        }
+    }
+
+    /**
+     * 用户的排队任务
+     */
+    private static class UserQueue {
+
+        private final Deque<DispatchCommand> commands = new ArrayDeque<>();
+
+        private final double weight;
+
+        /**
+         * 本轮剩余的启动额度
+         */
+        private double deficit;
+
+        UserQueue(double weight) {
+            this.weight = weight;
+        }
+    }
+
+    /**
+     * 调度选出、尚未申请用户名额的任务
+     */
+    private static class Candidate {
+
+        private final DispatchCommand command;
+
+        private final double weight;
+
+        Candidate(DispatchCommand command, double weight) {
+            this.command = command;
+            this.weight = weight;
+        }
+    }
+
+    /**
+     * 在途任务
+     */
+    private static class Running {
+
+        private final Long userId;
+
+        private final long startedAt;
+
+        Running(Long userId, long startedAt) {
+            this.userId = userId;
+            this.startedAt = startedAt;
+        }
+    }
+}
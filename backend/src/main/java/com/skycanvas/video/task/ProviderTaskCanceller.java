@@ -0,0 +1,67 @@
+package com.skycanvas.video.task;
+
+import com.skycanvas.video.VideoProviderFactory;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 取消provider处的任务
+ * 在独立的有界线程池中执行，队列满时放弃取消（provider任务会自行结束），不影响任务提交和轮询
+ */
+@Slf4j
+@Component
+public class ProviderTaskCanceller {
+
+    @Autowired
+    private VideoProviderFactory providerFactory;
+
+    @Value("${video.task.cancel-threads:2}")
+    private int cancelThreads;
+
+    @Value("${video.task.cancel-queue-size:1000}")
+    private int cancelQueueSize;
+
+    private ThreadPoolExecutor executor;
+
+    @PostConstruct
+    public void init() {
+        executor = new ThreadPoolExecutor(cancelThreads, cancelThreads,
+                60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(cancelQueueSize),
+                new CustomizableThreadFactory("video-cancel-"));
+    }
+
+    @PreDestroy
+    public void destroy() {
+        executor.shutdown();
+    }
+
+    /**
+     * 在后台取消provider处的任务，失败或队列已满时只记录日志
+     */
+    public void cancel(Long dbTaskId, String providerName, String providerTaskId) {
+        try {
+            executor.execute(() -> {
+                try {
+                    boolean cancelled = providerFactory.getProvider(providerName).cancelTask(providerTaskId);
+                    log.info("取消provider任务, dbTaskId: {}, provider: {}, providerTaskId: {}, 结果: {}",
+                            dbTaskId, providerName, providerTaskId, cancelled);
+                } catch (Exception e) {
+                    log.warn("取消provider任务失败, dbTaskId: {}, provider: {}", dbTaskId, providerName, e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            log.warn("取消队列已满或已关闭，未取消provider任务, dbTaskId: {}, provider: {}", dbTaskId, providerName);
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package com.skycanvas.video.task;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * 排队信息
+ */
+@Data
+@AllArgsConstructor
+public class QueueInfo {
+
+    /**
+     * 排队位置（从1开始，0表示无需排队）
+     */
+    private Integer position;
+
+    /**
+     * 当前队列深度
+     */
+    private Integer depth;
+}
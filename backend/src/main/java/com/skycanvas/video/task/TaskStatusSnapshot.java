@@ -0,0 +1,31 @@
+package com.skycanvas.video.task;
+
+import com.skycanvas.dto.VideoTaskDTO;
+import lombok.Data;
+
+/**
+ * 任务状态缓存条目
+ */
+@Data
+public class TaskStatusSnapshot {
+
+    /**
+     * 任务所属用户ID（用于权限校验，命中缓存时无需查询数据库）
+     */
+    private Long userId;
+
+    /**
+     * provider名称
+     */
+    private String provider;
+
+    /**
+     * 任务状态
+     */
+    private VideoTaskDTO state;
+
+    /**
+     * 最近一次刷新时间（毫秒时间戳）
+     */
+    private Long refreshedAt;
+}
@@ -0,0 +1,167 @@
+package com.skycanvas.video.task;
+
+import cn.hutool.cache.CacheUtil;
+import cn.hutool.cache.impl.TimedCache;
+import com.skycanvas.mapper.OrderMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.Collections;
+
+/**
+ * 按用户的调度策略
+ *
+ * 1. 用户在途上限：集群内每个用户的在途任务记录在Redis有序集合 video:user:inflight:{userId}
+ *    （成员为数据库任务ID，分值为启动时间），申请名额使用Lua脚本原子地检查和登记，所有节点共享同一上限；
+ *    节点宕机未释放的记录超过 stale-after 后不再占用名额
+ * 2. 用户权重：购买过套餐的用户取已支付订单中套餐 priority_weight 的最大值，未购买的用户使用默认权重，
+ *    权重决定排队时轮到该用户的频率
+ * 3. Redis不可用时不限制（只保留单节点内的公平轮询），避免因为计数不可用导致任务无法启动
+ */
+@Slf4j
+@Component
+public class UserSchedulingPolicy {
+
+    private static final String INFLIGHT_KEY_PREFIX = "video:user:inflight:";
+
+    /**
+     * 权重下限，避免权重配置为0时用户永远轮不到
+     */
+    private static final double MIN_WEIGHT = 0.1;
+
+    /**
+     * KEYS[1] 用户在途集合；ARGV: 残留截止时间、上限、任务ID、当前时间、集合过期时间（毫秒）
+     * 返回1表示获得名额（重复申请同一任务视为已获得）
+     */
+    private static final RedisScript<Long> ACQUIRE_SCRIPT = new DefaultRedisScript<>(
+            "redis.call('ZREMRANGEBYSCORE', KEYS[1], '-inf', ARGV[1]) " +
+            "if redis.call('ZSCORE', KEYS[1], ARGV[3]) then return 1 end " +
+            "if redis.call('ZCARD', KEYS[1]) >= tonumber(ARGV[2]) then return 0 end " +
+            "redis.call('ZADD', KEYS[1], ARGV[4], ARGV[3]) " +
+            "redis.call('PEXPIRE', KEYS[1], ARGV[5]) " +
+            "return 1", Long.class);
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Autowired
+    private OrderMapper orderMapper;
+
+    @Value("${video.task.fair-share.user-max-inflight:3}")
+    private int userMaxInflight;
+
+    @Value("${video.task.fair-share.default-weight:1.0}")
+    private double defaultWeight;
+
+    @Value("${video.task.fair-share.weight-cache-ttl:300}")
+    private long weightCacheTtl;
+
+    @Value("${video.task.fair-share.stale-after:1800000}")
+    private long staleAfter;
+
+    /**
+     * 用户权重缓存（key: 用户ID）
+     */
+    private TimedCache<Long, Double> weights;
+
+    @PostConstruct
+    public void init() {
+        weights = CacheUtil.newTimedCache(weightCacheTtl * 1000);
+        weights.schedulePrune(weightCacheTtl * 1000);
+    }
+
+    /**
+     * 是否限制用户在途数
+     */
+    public boolean isCapEnabled() {
+        return userMaxInflight > 0;
+    }
+
+    /**
+     * 申请用户在途名额
+     * @return 是否获得名额，未开启上限、用户未知或Redis不可用时返回true
+     */
+    public boolean tryAcquire(Long userId, Long dbTaskId) {
+        if (!isCapEnabled() || userId == null) {
+            return true;
+        }
+        long now = System.currentTimeMillis();
+        try {
+            Long acquired = stringRedisTemplate.execute(ACQUIRE_SCRIPT,
+                    Collections.singletonList(INFLIGHT_KEY_PREFIX + userId),
+                    String.valueOf(now - staleAfter), String.valueOf(userMaxInflight),
+                    String.valueOf(dbTaskId), String.valueOf(now), String.valueOf(staleAfter));
+            return acquired == null || acquired == 1L;
+        } catch (Exception e) {
+            log.warn("申请用户在途名额失败，本次不限制, userId: {}, dbTaskId: {}", userId, dbTaskId, e);
+            return true;
+        }
+    }
+
+    /**
+     * 登记已在生成中的任务（服务重启恢复时使用），不受上限约束
+     */
+    public void track(Long userId, Long dbTaskId) {
+        if (!isCapEnabled() || userId == null) {
+            return;
+        }
+        String key = INFLIGHT_KEY_PREFIX + userId;
+        try {
+            stringRedisTemplate.opsForZSet().add(key, String.valueOf(dbTaskId), System.currentTimeMillis());
+            stringRedisTemplate.expire(key, Duration.ofMillis(staleAfter));
+        } catch (Exception e) {
+            log.warn("登记用户在途任务失败, userId: {}, dbTaskId: {}", userId, dbTaskId, e);
+        }
+    }
+
+    /**
+     * 释放用户在途名额，重复释放是安全的
+     */
+    public void release(Long userId, Long dbTaskId) {
+        if (!isCapEnabled() || userId == null) {
+            return;
+        }
+        try {
+            stringRedisTemplate.opsForZSet().remove(INFLIGHT_KEY_PREFIX + userId, String.valueOf(dbTaskId));
+        } catch (Exception e) {
+            log.warn("释放用户在途名额失败, userId: {}, dbTaskId: {}", userId, dbTaskId, e);
+        }
+    }
+
+    /**
+     * 用户调度权重
+     */
+    public double weight(Long userId) {
+        if (userId == null) {
+            return normalize(defaultWeight);
+        }
+        Double cached = weights.get(userId, false);
+        if (cached != null) {
+            return cached;
+        }
+        double weight = defaultWeight;
+        try {
+            BigDecimal purchased = orderMapper.selectMaxPriorityWeight(userId);
+            if (purchased != null) {
+                weight = Math.max(weight, purchased.doubleValue());
+            }
+        } catch (Exception e) {
+            log.warn("查询用户调度权重失败，使用默认权重, userId: {}", userId, e);
+        }
+        weight = normalize(weight);
+        weights.put(userId, weight);
+        return weight;
+    }
+
+    private double normalize(double weight) {
+        return Math.max(MIN_WEIGHT, weight);
+    }
+}
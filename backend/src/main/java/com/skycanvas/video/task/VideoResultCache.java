@@ -0,0 +1,305 @@
+package com.skycanvas.video.task;
+
+import cn.hutool.crypto.digest.DigestUtil;
+import com.alibaba.fastjson2.JSON;
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.baomidou.mybatisplus.core.conditions.update.LambdaUpdateWrapper;
+import com.skycanvas.dto.VideoGenerationRequest;
+import com.skycanvas.dto.VideoTaskDTO;
+import com.skycanvas.entity.VideoTask;
+import com.skycanvas.mapper.VideoTaskMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 生成结果缓存（按请求内容寻址）
+ *
+ * 设计说明：
+ * 1. 对规范化后的请求参数计算SHA-256指纹，记录在生成任务的 fingerprint 字段
+ * 2. 相同指纹已有成功任务时直接复用其视频和封面（新建一条成功状态的任务记录），不再调用provider
+ * 3. 相同指纹的任务正在生成时，新任务挂在首个任务上等待（task_id = dedup_{首个任务ID}），
+ *    首个任务完成时一并完成；失败时最早的等待任务接替为首个任务重新提交，其余任务改为等待它
+ * 4. 命中缓存或合并等待的任务按 hit-credit-ratio 收取积分；接替为首个任务后仍按该价格计费，不补收差额
+ * 5. 状态事件的处理在发布方的线程中同步执行，出错只记录日志，不影响其他监听器（释放名额、停止轮询等）
+ */
+@Slf4j
+@Component
+public class VideoResultCache {
+
+    /**
+     * 合并到其他任务的任务ID前缀
+     */
+    public static final String FOLLOWER_PREFIX = "dedup_";
+
+    /**
+     * 命中缓存的任务ID前缀
+     */
+    public static final String HIT_PREFIX = "cache_";
+
+    private static final String RESULT_KEY_PREFIX = "video:result:";
+
+    private static final String LEADER_KEY_PREFIX = "video:result:leader:";
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Autowired
+    private VideoTaskMapper videoTaskMapper;
+
+    @Autowired
+    private VideoTaskStateManager stateManager;
+
+    @Autowired
+    private VideoTaskDispatcher dispatcher;
+
+    @Autowired
+    private ClusterNodeRegistry nodeRegistry;
+
+    @Value("${video.result-cache.enabled:false}")
+    private boolean enabled;
+
+    @Value("${video.result-cache.ttl:604800}")
+    private long ttl;
+
+    @Value("${video.result-cache.hit-credit-ratio:0.2}")
+    private double hitCreditRatio;
+
+    @Value("${video.task.recovery.deadline:1800000}")
+    private long leaderTtl;
+
+    /**
+     * 计算请求指纹
+     * @return 指纹，未开启缓存或请求不允许复用时返回null
+     */
+    public String fingerprint(VideoGenerationRequest request) {
+        if (!enabled || Boolean.FALSE.equals(request.getReuseResult())) {
+            return null;
+        }
+
+        Map<String, Object> normalized = new TreeMap<>();
+        normalized.put("prompt", request.getPrompt().trim().replaceAll("\\s+", " "));
+        normalized.put("imageUrl", request.getImageUrl());
+        normalized.put("duration", request.getDuration());
+        normalized.put("resolution", lower(request.getResolution()));
+        normalized.put("style", lower(request.getStyle()));
+        normalized.put("aspectRatio", lower(request.getAspectRatio()));
+        normalized.put("temperature", request.getTemperature() == null ? null
+                : BigDecimal.valueOf(request.getTemperature()).stripTrailingZeros().toPlainString());
+        if (request.getExtraParams() != null) {
+            new TreeMap<>(request.getExtraParams()).forEach((key, value) -> normalized.put("extra." + key, value));
+        }
+
+        StringBuilder canonical = new StringBuilder();
+        normalized.forEach((key, value) -> canonical.append(key).append('=').append(value).append('\n'));
+        return DigestUtil.sha256Hex(canonical.toString());
+    }
+
+    /**
+     * 查找相同指纹的成功任务
+     */
+    public VideoTask findCompleted(String fingerprint) {
+        String cached = stringRedisTemplate.opsForValue().get(RESULT_KEY_PREFIX + fingerprint);
+        if (cached != null) {
+            VideoTask task = videoTaskMapper.selectById(Long.valueOf(cached));
+            if (isReusable(task)) {
+                return task;
+            }
+            stringRedisTemplate.delete(RESULT_KEY_PREFIX + fingerprint);
+        }
+
+        // Redis未命中时按 idx_fingerprint 回查数据库
+        LambdaQueryWrapper<VideoTask> wrapper = new LambdaQueryWrapper<>();
+        wrapper.eq(VideoTask::getFingerprint, fingerprint)
+                .eq(VideoTask::getStatus, 2)
+                .isNotNull(VideoTask::getVideoUrl)
+                .ge(VideoTask::getCompleteTime, LocalDateTime.now().minusSeconds(ttl))
+                .orderByDesc(VideoTask::getId)
+                .last("LIMIT 1");
+        VideoTask task = videoTaskMapper.selectOne(wrapper);
+        if (task != null) {
+            remember(fingerprint, task.getId());
+        }
+        return task;
+    }
+
+    /**
+     * 查找相同指纹正在生成的任务
+     * @return 首个任务的数据库ID，没有时返回null
+     */
+    public Long findLeader(String fingerprint) {
+        String leader = stringRedisTemplate.opsForValue().get(LEADER_KEY_PREFIX + fingerprint);
+        return leader == null ? null : Long.valueOf(leader);
+    }
+
+    /**
+     * 事务提交后登记为该指纹的首个任务（已有其他首个任务时不覆盖）
+     */
+    public void registerLeaderAfterCommit(String fingerprint, Long dbTaskId) {
+        Runnable register = () -> stringRedisTemplate.opsForValue().setIfAbsent(LEADER_KEY_PREFIX + fingerprint,
+                String.valueOf(dbTaskId), leaderTtl, TimeUnit.MILLISECONDS);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    register.run();
+                }
+            });
+        } else {
+            register.run();
+        }
+    }
+
+    /**
+     * 命中缓存或合并等待时收取的积分
+     */
+    public int hitCredits(int requiredCredits) {
+        return (int) Math.ceil(requiredCredits * Math.max(0, Math.min(hitCreditRatio, 1)));
+    }
+
+    /**
+     * 首个任务到达终态：成功时写入结果缓存并结算所有合并等待的任务，失败时由最早的等待任务接替
+     */
+    @EventListener
+    public void onTaskStateChanged(VideoTaskStateChangedEvent event) {
+        if (!enabled || !event.isTerminal()) {
+            return;
+        }
+        try {
+            onLeaderFinished(event.getDbTaskId());
+        } catch (Exception e) {
+            // 未结算的等待任务由任务恢复补做结算
+            log.error("处理相同任务的结果失败, dbTaskId: {}", event.getDbTaskId(), e);
+        }
+    }
+
+    private void onLeaderFinished(Long dbTaskId) {
+        VideoTask leader = videoTaskMapper.selectById(dbTaskId);
+        if (leader == null || leader.getFingerprint() == null) {
+            return;
+        }
+
+        String leaderKey = LEADER_KEY_PREFIX + leader.getFingerprint();
+        if (String.valueOf(leader.getId()).equals(stringRedisTemplate.opsForValue().get(leaderKey))) {
+            stringRedisTemplate.delete(leaderKey);
+        }
+        if (isReusable(leader)) {
+            remember(leader.getFingerprint(), leader.getId());
+        } else if (promote(leader)) {
+            return;
+        }
+
+        LambdaQueryWrapper<VideoTask> wrapper = new LambdaQueryWrapper<>();
+        wrapper.select(VideoTask::getId)
+                .eq(VideoTask::getTaskId, FOLLOWER_PREFIX + leader.getId())
+                .eq(VideoTask::getStatus, 0);
+        List<VideoTask> followers = videoTaskMapper.selectList(wrapper);
+        for (VideoTask follower : followers) {
+            settle(follower.getId(), leader);
+        }
+        if (!followers.isEmpty()) {
+            log.info("任务{}结束，结算合并等待的任务{}个", leader.getId(), followers.size());
+        }
+    }
+
+    /**
+     * 结算合并等待的任务（任务恢复时使用，弥补首个任务结束时尚未提交的等待任务）
+     */
+    public void settleFollower(VideoTask follower) {
+        Long leaderId = Long.valueOf(follower.getTaskId().substring(FOLLOWER_PREFIX.length()));
+        VideoTask leader = videoTaskMapper.selectById(leaderId);
+        if (leader == null) {
+            stateManager.markFailed(follower.getId(), "相同任务已不存在，已退回积分");
+        } else if (leader.getStatus() >= 2) {
+            settle(follower.getId(), leader);
+        }
+    }
+
+    /**
+     * 首个任务失败：最早的等待任务接替为首个任务并重新提交，其余等待任务改为等待它
+     * 接替的任务仍按提交时告知用户的复用价格（costCredits）计费，不补收差额：
+     * 首个任务失败已全额退款，重新生成的成本由平台承担，用户不会因他人的任务失败被追加扣费
+     * @return 是否已接替（没有等待任务、或等待任务已被其他路径结算时返回false）
+     */
+    private boolean promote(VideoTask leader) {
+        String followerTaskId = FOLLOWER_PREFIX + leader.getId();
+        LambdaQueryWrapper<VideoTask> query = new LambdaQueryWrapper<>();
+        query.select(VideoTask::getId, VideoTask::getUserId, VideoTask::getProvider,
+                        VideoTask::getParams, VideoTask::getCostCredits)
+                .eq(VideoTask::getTaskId, followerTaskId)
+                .eq(VideoTask::getStatus, 0)
+                .orderByAsc(VideoTask::getId)
+                .last("LIMIT 1");
+        VideoTask successor = videoTaskMapper.selectOne(query);
+        if (successor == null) {
+            return false;
+        }
+
+        // 条件更新认领，与任务恢复的补做结算并发时只有一方生效；
+        // 同时写入指纹，接替的任务结束时才能清理首个任务标记、写入结果缓存并结算其余等待任务
+        LambdaUpdateWrapper<VideoTask> claim = new LambdaUpdateWrapper<>();
+        claim.set(VideoTask::getTaskId, "temp_" + UUID.randomUUID().toString().substring(0, 16))
+                .set(VideoTask::getNodeId, nodeRegistry.getNodeId())
+                .set(VideoTask::getFingerprint, leader.getFingerprint())
+                .eq(VideoTask::getId, successor.getId())
+                .eq(VideoTask::getTaskId, followerTaskId)
+                .eq(VideoTask::getStatus, 0);
+        if (videoTaskMapper.update(null, claim) == 0) {
+            return false;
+        }
+
+        LambdaUpdateWrapper<VideoTask> follow = new LambdaUpdateWrapper<>();
+        follow.set(VideoTask::getTaskId, FOLLOWER_PREFIX + successor.getId())
+                .eq(VideoTask::getTaskId, followerTaskId)
+                .eq(VideoTask::getStatus, 0);
+        int followers = videoTaskMapper.update(null, follow);
+        stringRedisTemplate.opsForValue().set(LEADER_KEY_PREFIX + leader.getFingerprint(),
+                String.valueOf(successor.getId()), leaderTtl, TimeUnit.MILLISECONDS);
+
+        VideoGenerationRequest request = JSON.parseObject(successor.getParams(), VideoGenerationRequest.class);
+        dispatcher.dispatch(new DispatchCommand(successor.getId(), successor.getUserId(), successor.getProvider(),
+                request, successor.getCostCredits()));
+        log.info("任务{}生成失败，由等待任务{}接替重新提交，其余等待任务{}个", leader.getId(), successor.getId(), followers);
+        return true;
+    }
+
+    private void settle(Long followerId, VideoTask leader) {
+        if (isReusable(leader)) {
+            VideoTaskDTO dto = new VideoTaskDTO();
+            dto.setStatus("COMPLETED");
+            dto.setProgress(100);
+            dto.setVideoUrl(leader.getVideoUrl());
+            dto.setCoverUrl(leader.getCoverUrl());
+            dto.setDuration(leader.getDuration());
+            stateManager.applyUpdate(followerId, dto);
+        } else {
+            stateManager.markFailed(followerId, "相同任务生成失败，已退回积分");
+        }
+    }
+
+    private boolean isReusable(VideoTask task) {
+        return task != null && Integer.valueOf(2).equals(task.getStatus()) && task.getVideoUrl() != null;
+    }
+
+    private void remember(String fingerprint, Long dbTaskId) {
+        stringRedisTemplate.opsForValue().set(RESULT_KEY_PREFIX + fingerprint, String.valueOf(dbTaskId),
+                ttl, TimeUnit.SECONDS);
+    }
+
+    private String lower(String value) {
+        return value == null ? null : value.trim().toLowerCase();
+    }
+}
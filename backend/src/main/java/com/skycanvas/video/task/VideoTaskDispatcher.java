@@ -0,0 +1,309 @@
+package com.skycanvas.video.task;
+
+import com.skycanvas.dto.VideoTaskDTO;
+import com.skycanvas.video.VideoGenerationService;
+import com.skycanvas.video.VideoProviderFactory;
+import com.skycanvas.video.resilience.ProviderUnavailableException;
+import com.skycanvas.video.routing.VideoProviderRouter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+/**
+ * 视频任务分发器
+ *
+ * 职责：
+ * 1. 在创建任务的事务提交后接收分发指令，交给准入控制排队
+ * 2. 获得名额的任务由独立的工作线程以非阻塞方式提交到第三方API，不占用HTTP请求线程和数据库连接
+ * 3. 提交成功后交给轮询器跟踪状态
+ * 4. 提交失败时由路由选择下一个健康的provider重新排队提交（任务记录的provider同步切换），
+ *    所有provider都失败后才标记失败并退回积分；provider熔断或并发已满（请求未发出）时保留名额，
+ *    延迟后重新提交，超过 unavailable-max-wait 才标记失败
+ * 5. 取消provider处的任务交给 ProviderTaskCanceller（独立的有界线程池）
+ */
+@Slf4j
+@Component
+public class VideoTaskDispatcher {
+
+    @Autowired
+    private VideoProviderFactory providerFactory;
+
+    @Autowired
+    private VideoTaskStateManager stateManager;
+
+    @Autowired
+    private VideoTaskPoller poller;
+
+    @Autowired
+    private ProviderAdmissionController admissionController;
+
+    @Autowired
+    private VideoProviderRouter router;
+
+    @Autowired
+    private VideoTaskStatusCache statusCache;
+
+    @Autowired
+    private ProviderTaskCanceller canceller;
+
+    @Value("${video.task.dispatcher-threads:16}")
+    private int dispatcherThreads;
+
+    @Value("${video.task.unavailable-retry-delay:5000}")
+    private long unavailableRetryDelay;
+
+    @Value("${video.task.unavailable-max-wait:600000}")
+    private long unavailableMaxWait;
+
+    private ThreadPoolExecutor executor;
+
+    @PostConstruct
+    public void init() {
+        // 只执行获得名额的任务的提交、流式进度和提交结果的处理，每个在途任务同时最多各有一个
+        // （流式进度合并为最新的一条），队列长度受准入控制的名额总数限制（取消任务不进入这个队列）
+        executor = new ThreadPoolExecutor(dispatcherThreads, dispatcherThreads,
+                60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(),
+                new CustomizableThreadFactory("video-dispatch-"));
+        admissionController.setLauncher(this::launch);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        executor.shutdown();
+    }
+
+    /**
+     * 在当前事务提交后分发任务（无事务时立即分发）
+     * 事务回滚时任务记录不存在，不会分发
+     */
+    public void dispatchAfterCommit(DispatchCommand command) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    dispatch(command);
+                }
+            });
+        } else {
+            dispatch(command);
+        }
+    }
+
+    /**
+     * 在当前事务提交后按顺序分发一批任务（批量提交）
+     * 提交请求是非阻塞的，获得名额的任务连续发出，不等待前一个任务的响应
+     */
+    public void dispatchAllAfterCommit(List<DispatchCommand> commands) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    commands.forEach(VideoTaskDispatcher.this::dispatch);
+                }
+            });
+        } else {
+            commands.forEach(this::dispatch);
+        }
+    }
+
+    /**
+     * 交给准入控制，获得名额后提交
+     */
+    public void dispatch(DispatchCommand command) {
+        admissionController.offer(command);
+    }
+
+    /**
+     * 已获得名额，放入工作线程提交
+     */
+    private void launch(DispatchCommand command) {
+        try {
+            executor.execute(() -> submit(command));
+        } catch (RejectedExecutionException e) {
+            log.error("分发器已关闭, dbTaskId: {}", command.getDbTaskId());
+            stateManager.markFailed(command.getDbTaskId(), "系统繁忙，任务提交失败");
+        }
+    }
+
+    /**
+     * 提交任务到第三方API
+     * 请求以非阻塞方式发出，等待响应期间不占用分发线程；流式进度和响应在分发线程中按顺序处理
+     */
+    private void submit(DispatchCommand command) {
+        Long dbTaskId = command.getDbTaskId();
+        String providerName = command.getProviderName();
+        command.getAttemptedProviders().add(providerName);
+        log.info("提交任务到第三方API, dbTaskId: {}, provider: {}", dbTaskId, providerName);
+
+        long start = System.currentTimeMillis();
+        SubmitProgress progress = new SubmitProgress(dbTaskId);
+        CompletableFuture<VideoTaskDTO> future;
+        try {
+            future = providerFactory.getAsyncProvider(providerName)
+                    .submitTaskAsync(command.getRequest(), progress);
+        } catch (Exception e) {
+            future = CompletableFuture.failedFuture(e);
+        }
+        future.whenComplete((taskDTO, error) -> progress.then(() -> {
+            if (error != null) {
+                Throwable cause = unwrap(error);
+                router.recordSubmit(providerName, System.currentTimeMillis() - start, false);
+                log.error("提交任务到第三方API失败, dbTaskId: {}, provider: {}", dbTaskId, providerName, cause);
+                failover(command, cause);
+                return;
+            }
+            router.recordSubmit(providerName, System.currentTimeMillis() - start, true);
+            onSubmitted(dbTaskId, providerName, taskDTO);
+        }));
+    }
+
+    private void onSubmitted(Long dbTaskId, String providerName, VideoTaskDTO taskDTO) {
+        try {
+            if (stateManager.applySubmitResult(dbTaskId, taskDTO)) {
+                admissionController.release(dbTaskId);
+                if (!stateManager.isTerminal(taskDTO.getStatus())) {
+                    // 提交期间任务已被取消（或已失败），provider处的任务不再需要
+                    cancelAtProvider(dbTaskId, providerName, taskDTO.getTaskId());
+                }
+            } else {
+                poller.register(dbTaskId, taskDTO.getTaskId(), providerName, taskDTO.getEstimatedTime());
+            }
+        } catch (Exception e) {
+            log.error("记录提交结果失败, dbTaskId: {}", dbTaskId, e);
+            stateManager.markFailed(dbTaskId, "提交任务失败: " + e.getMessage());
+            admissionController.release(dbTaskId);
+        }
+    }
+
+    /**
+     * 在后台取消provider处的任务，失败或队列已满时只记录日志（provider任务会自行结束）
+     */
+    public void cancelAtProvider(Long dbTaskId, String providerName, String providerTaskId) {
+        canceller.cancel(dbTaskId, providerName, providerTaskId);
+    }
+
+    /**
+     * 切换到下一个健康的provider重新排队；没有可用的provider时，熔断或并发已满导致的失败延迟重新提交，
+     * 其他失败标记失败并退款
+     */
+    private void failover(DispatchCommand command, Throwable cause) {
+        Long dbTaskId = command.getDbTaskId();
+        VideoGenerationService next = router.next(command.getAttemptedProviders());
+        if (next == null && cause instanceof ProviderUnavailableException && deferSubmit(command)) {
+            return;
+        }
+        if (next == null || !stateManager.reassignProvider(dbTaskId, next.getProviderName())) {
+            stateManager.markFailed(dbTaskId, "提交任务失败: " + cause.getMessage());
+            admissionController.release(dbTaskId);
+            return;
+        }
+
+        log.info("任务切换provider重新提交, dbTaskId: {}, {} -> {}",
+                dbTaskId, command.getProviderName(), next.getProviderName());
+        statusCache.evict(dbTaskId);
+        // 名额从原provider转移到新provider的通道
+        admissionController.release(dbTaskId);
+        command.setProviderName(next.getProviderName());
+        admissionController.offer(command);
+    }
+
+    /**
+     * provider暂不可用（请求未发出）：保留准入名额（排队任务不会越过provider的实际并发继续启动，
+     * 任务恢复也不会重复分发），延迟后在分发线程中重新提交；期间任务被取消或已到达终态时名额已释放，不再提交
+     * @return 是否已安排重新提交，等待超过 unavailable-max-wait 时返回false
+     */
+    private boolean deferSubmit(DispatchCommand command) {
+        long now = System.currentTimeMillis();
+        if (command.getUnavailableSince() == null) {
+            command.setUnavailableSince(now);
+        } else if (now - command.getUnavailableSince() >= unavailableMaxWait) {
+            return false;
+        }
+        log.info("provider暂不可用，{}ms后重新提交, dbTaskId: {}, provider: {}",
+                unavailableRetryDelay, command.getDbTaskId(), command.getProviderName());
+        CompletableFuture.delayedExecutor(unavailableRetryDelay, TimeUnit.MILLISECONDS, executor).execute(() -> {
+            if (admissionController.isTracking(command.getDbTaskId())) {
+                submit(command);
+            }
+        });
+        return true;
+    }
+
+    /**
+     * 流式提交的进度：第一次上报表示任务已被provider接受（记录provider任务ID），之后只更新进度
+     * 监听器在HTTP回调线程中调用，只登记进度，写库（及同步的状态事件监听器）交给分发线程按顺序执行；
+     * 分发线程处理不过来时只保留最新的进度，提交结果排在已上报的进度之后处理
+     */
+    private final class SubmitProgress implements Consumer<VideoTaskDTO> {
+
+        private final Long dbTaskId;
+
+        private final AtomicBoolean accepted = new AtomicBoolean();
+
+        private final AtomicBoolean updateScheduled = new AtomicBoolean();
+
+        private final AtomicReference<VideoTaskDTO> latest = new AtomicReference<>();
+
+        private CompletableFuture<Void> tail = CompletableFuture.completedFuture(null);
+
+        SubmitProgress(Long dbTaskId) {
+            this.dbTaskId = dbTaskId;
+        }
+
+        @Override
+        public void accept(VideoTaskDTO dto) {
+            if (accepted.compareAndSet(false, true)) {
+                then(() -> stateManager.applySubmitResult(dbTaskId, dto));
+                return;
+            }
+            latest.set(dto);
+            if (updateScheduled.compareAndSet(false, true)) {
+                then(() -> {
+                    updateScheduled.set(false);
+                    VideoTaskDTO current = latest.getAndSet(null);
+                    if (current != null) {
+                        stateManager.applyUpdate(dbTaskId, current);
+                    }
+                });
+            }
+        }
+
+        /**
+         * 在分发线程中排在之前的步骤之后执行
+         */
+        synchronized void then(Runnable step) {
+            tail = tail.thenRunAsync(() -> {
+                try {
+                    step.run();
+                } catch (Exception e) {
+                    log.warn("处理提交进度失败, dbTaskId: {}", dbTaskId, e);
+                }
+            }, executor);
+        }
+    }
+
+    private Throwable unwrap(Throwable error) {
+        if (error instanceof CompletionException && error.getCause() != null) {
+            return error.getCause();
+        }
+        return error;
+    }
+}
@@ -0,0 +1,336 @@
+package com.skycanvas.video.task;
+
+import com.skycanvas.dto.VideoTaskDTO;
+import com.skycanvas.video.VideoCallbackSupport;
+import com.skycanvas.video.VideoGenerationService;
+import com.skycanvas.video.VideoProviderFactory;
+import com.skycanvas.video.routing.VideoProviderRouter;
+import io.netty.util.HashedWheelTimer;
+import io.netty.util.Timeout;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 任务状态轮询器
+ *
+ * 设计说明：
+ * 1. 所有生成中的任务登记在一个哈希时间轮上，时间轮只负责到期触发，单线程驱动
+ * 2. 到期的任务交给少量查询线程以非阻塞方式调用provider.queryTaskAsync，成千上万个任务只占用几个线程
+ * 3. 轮询间隔自适应：优先按provider返回的预计完成时间，否则从check-interval开始指数退避
+ * 4. 已开启回调的provider由回调推进状态，轮询退为兜底，按 video.callback.safety-net-interval 低频检查
+ * 5. 超过最长轮询时间（poll-timeout）仍未完成的任务标记失败并退回积分，同时取消provider处的任务，
+ *    不再留给任务恢复反复重新登记
+ */
+@Slf4j
+@Component
+public class VideoTaskPoller {
+
+    private static final String TIMEOUT_MESSAGE = "任务超时未完成，已退回积分";
+
+    @Autowired
+    private VideoProviderFactory providerFactory;
+
+    @Autowired
+    private VideoTaskStateManager stateManager;
+
+    @Autowired
+    private ProviderAdmissionController admissionController;
+
+    @Autowired
+    private VideoProviderRouter router;
+
+    @Autowired
+    private ProviderTaskCanceller canceller;
+
+    @Value("${video.task.check-interval:5000}")
+    private long checkInterval;
+
+    @Value("${video.task.max-check-interval:60000}")
+    private long maxCheckInterval;
+
+    @Value("${video.task.check-backoff:1.5}")
+    private double checkBackoff;
+
+    @Value("${video.task.poll-timeout:600000}")
+    private long pollTimeout;
+
+    @Value("${video.task.poller-threads:4}")
+    private int pollerThreads;
+
+    @Value("${video.callback.safety-net-interval:300000}")
+    private long safetyNetInterval;
+
+    /**
+     * 正在轮询的任务（key: 数据库任务ID）
+     */
+    private final Map<Long, PollEntry> entries = new ConcurrentHashMap<>();
+
+    private HashedWheelTimer timer;
+
+    private ThreadPoolExecutor queryExecutor;
+
+    /**
+     * 处理查询响应：优先交给查询线程，队列已满时在HTTP回调线程中直接处理，避免丢失响应
+     */
+    private final Executor responseExecutor = task -> {
+        try {
+            queryExecutor.execute(task);
+        } catch (RejectedExecutionException e) {
+            task.run();
+        }
+    };
+
+    @PostConstruct
+    public void init() {
+        timer = new HashedWheelTimer(new CustomizableThreadFactory("video-poll-wheel-"),
+                100, TimeUnit.MILLISECONDS, 512);
+        queryExecutor = new ThreadPoolExecutor(pollerThreads, pollerThreads,
+                60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(10000),
+                new CustomizableThreadFactory("video-poller-"));
+    }
+
+    @PreDestroy
+    public void destroy() {
+        timer.stop();
+        queryExecutor.shutdownNow();
+    }
+
+    /**
+     * 注册需要轮询的任务
+     * @param estimatedTime provider返回的预计完成时间（秒），未知时为null
+     */
+    public void register(Long dbTaskId, String providerTaskId, String providerName, Long estimatedTime) {
+        log.info("开始轮询任务状态: taskId={}, providerTaskId={}, estimatedTime={}",
+                dbTaskId, providerTaskId, estimatedTime);
+        PollEntry entry = newEntry(dbTaskId, providerTaskId, providerName);
+        schedule(entry, nextDelay(entry, estimatedTime));
+    }
+
+    /**
+     * 恢复轮询（服务重启或接管其他节点的任务），首次检查延迟由调用方指定以错开查询
+     */
+    public void resume(Long dbTaskId, String providerTaskId, String providerName, long initialDelay) {
+        log.info("恢复轮询任务状态: taskId={}, providerTaskId={}, delay={}ms", dbTaskId, providerTaskId, initialDelay);
+        PollEntry entry = newEntry(dbTaskId, providerTaskId, providerName);
+        schedule(entry, Math.max(initialDelay, 1));
+    }
+
+    /**
+     * 任务是否正在本节点轮询
+     */
+    public boolean isTracking(Long dbTaskId) {
+        return entries.containsKey(dbTaskId);
+    }
+
+    /**
+     * 停止轮询（任务已由其他路径置为终态）
+     */
+    public void stop(Long dbTaskId) {
+        PollEntry entry = entries.remove(dbTaskId);
+        if (entry != null) {
+            entry.cancel();
+        }
+    }
+
+    /**
+     * 任务到达终态时停止轮询
+     */
+    @EventListener
+    public void onTaskStateChanged(VideoTaskStateChangedEvent event) {
+        if (event.isTerminal()) {
+            stop(event.getDbTaskId());
+        }
+    }
+
+    /**
+     * 当前轮询中的任务数
+     */
+    public int getActiveCount() {
+        return entries.size();
+    }
+
+    private PollEntry newEntry(Long dbTaskId, String providerTaskId, String providerName) {
+        PollEntry entry = new PollEntry(dbTaskId, providerTaskId, providerName,
+                isCallbackEnabled(providerName), System.currentTimeMillis());
+        PollEntry previous = entries.put(dbTaskId, entry);
+        if (previous != null) {
+            previous.cancel();
+        }
+        return entry;
+    }
+
+    private void schedule(PollEntry entry, long delay) {
+        entry.delay = delay;
+        entry.timeout = timer.newTimeout(t -> submitCheck(entry), delay, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 时间轮线程只做投递，查询在查询线程中执行
+     */
+    private void submitCheck(PollEntry entry) {
+        try {
+            queryExecutor.execute(() -> check(entry));
+        } catch (RejectedExecutionException e) {
+            log.warn("轮询查询队列已满，延后检查任务{}", entry.dbTaskId);
+            schedule(entry, checkInterval);
+        }
+    }
+
+    /**
+     * 查询请求以非阻塞方式发出，响应回到查询线程处理，等待响应期间不占用查询线程
+     */
+    private void check(PollEntry entry) {
+        if (entries.get(entry.dbTaskId) != entry) {
+            return;
+        }
+
+        long start = System.currentTimeMillis();
+        CompletableFuture<VideoTaskDTO> future;
+        try {
+            future = providerFactory.getAsyncProvider(entry.providerName).queryTaskAsync(entry.providerTaskId);
+        } catch (Exception e) {
+            future = CompletableFuture.failedFuture(e);
+        }
+        future.whenCompleteAsync((dto, error) -> onChecked(entry, start, dto, error), responseExecutor);
+    }
+
+    private void onChecked(PollEntry entry, long start, VideoTaskDTO dto, Throwable error) {
+        Long estimatedTime = null;
+        if (error != null) {
+            Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+            router.recordQuery(entry.providerName, System.currentTimeMillis() - start, false);
+            log.error("检查任务状态失败: taskId={}", entry.dbTaskId, cause);
+        } else {
+            router.recordQuery(entry.providerName, System.currentTimeMillis() - start, true);
+            try {
+                if (stateManager.applyUpdate(entry.dbTaskId, dto)) {
+                    entries.remove(entry.dbTaskId, entry);
+                    admissionController.release(entry.dbTaskId);
+                    return;
+                }
+                estimatedTime = dto.getEstimatedTime();
+            } catch (Exception e) {
+                log.error("更新任务状态失败: taskId={}", entry.dbTaskId, e);
+            }
+        }
+
+        if (entries.get(entry.dbTaskId) != entry) {
+            return;
+        }
+        if (System.currentTimeMillis() - entry.registeredAt >= pollTimeout) {
+            entries.remove(entry.dbTaskId, entry);
+            expire(entry);
+            return;
+        }
+        schedule(entry, nextDelay(entry, estimatedTime));
+    }
+
+    /**
+     * 超过最长轮询时间：标记失败并退款，取消provider处的任务
+     * 任务已由其他路径（回调、查询）置为终态时不取消（可能已成功）；
+     * 标记失败出错时任务仍为生成中，由任务恢复或超时任务清理兜底
+     */
+    private void expire(PollEntry entry) {
+        log.warn("任务{}超过最长轮询时间仍未完成，标记失败并退回积分", entry.dbTaskId);
+        try {
+            if (stateManager.markFailed(entry.dbTaskId, TIMEOUT_MESSAGE)) {
+                canceller.cancel(entry.dbTaskId, entry.providerName, entry.providerTaskId);
+            }
+        } catch (Exception e) {
+            log.error("标记超时任务失败: taskId={}", entry.dbTaskId, e);
+        } finally {
+            admissionController.release(entry.dbTaskId);
+        }
+    }
+
+    /**
+     * 计算下一次检查的延迟
+     * 有预计完成时间时直接等到预计完成，否则在上一次间隔基础上指数退避，并加入少量抖动避免集中查询
+     */
+    private long nextDelay(PollEntry entry, Long estimatedTime) {
+        long delay;
+        if (entry.callback) {
+            delay = safetyNetInterval;
+        } else if (estimatedTime != null && estimatedTime > 0) {
+            delay = estimatedTime * 1000;
+        } else if (entry.delay == 0) {
+            delay = checkInterval;
+        } else {
+            delay = (long) (entry.delay * checkBackoff);
+        }
+        if (!entry.callback) {
+            delay = Math.max(checkInterval, Math.min(delay, maxCheckInterval));
+        }
+
+        long jitter = delay / 10;
+        if (jitter > 0) {
+            delay += ThreadLocalRandom.current().nextLong(-jitter, jitter + 1);
+        }
+        return delay;
+    }
+
+    private boolean isCallbackEnabled(String providerName) {
+        try {
+            VideoGenerationService provider = providerFactory.getProvider(providerName);
+            return provider instanceof VideoCallbackSupport && ((VideoCallbackSupport) provider).isCallbackEnabled();
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    /**
+     * 轮询登记项
+     */
+    private static class PollEntry {
+
+        private final Long dbTaskId;
+
+        private final String providerTaskId;
+
+        private final String providerName;
+
+        /**
+         * 是否由回调推进状态
+         */
+        private final boolean callback;
+
+        private final long registeredAt;
+
+        private volatile long delay;
+
+        private volatile Timeout timeout;
+
+        PollEntry(Long dbTaskId, String providerTaskId, String providerName, boolean callback, long registeredAt) {
+            this.dbTaskId = dbTaskId;
+            this.providerTaskId = providerTaskId;
+            this.providerName = providerName;
+            this.callback = callback;
+            this.registeredAt = registeredAt;
+        }
+
+        void cancel() {
+            Timeout current = timeout;
+            if (current != null) {
+                current.cancel();
+            }
+        }
+    }
+}
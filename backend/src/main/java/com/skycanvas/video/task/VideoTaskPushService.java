@@ -0,0 +1,185 @@
+package com.skycanvas.video.task;
+
+import cn.hutool.cache.CacheUtil;
+import cn.hutool.cache.impl.LRUCache;
+import com.alibaba.fastjson2.JSON;
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.skycanvas.dto.VideoTaskDTO;
+import com.skycanvas.dto.VideoTaskPushMessage;
+import com.skycanvas.entity.VideoTask;
+import com.skycanvas.mapper.VideoTaskMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 任务状态实时推送
+ *
+ * 设计说明：
+ * 1. 监听任务状态变更事件，同一任务在一个推送周期内的多次进度更新合并为最后一次
+ * 2. 终态（COMPLETED/FAILED）立即推送，不等待推送周期；同一任务的发布在待推送表中按任务串行，
+ *    终态之后不会再发布该任务此前合并的进度，投递时也丢弃早于已投递终态的进度消息
+ * 3. 消息先发布到Redis频道，所有节点订阅后投递给本节点上连接的用户，
+ *    用户连接在哪个节点都能收到（STOMP目的地：/user/{userId}/queue/tasks）
+ */
+@Slf4j
+@Component
+public class VideoTaskPushService implements MessageListener {
+
+    public static final String CHANNEL = "video:task:push";
+
+    private static final String USER_DESTINATION = "/queue/tasks";
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Autowired
+    private SimpMessagingTemplate messagingTemplate;
+
+    @Autowired
+    private VideoTaskMapper videoTaskMapper;
+
+    @Value("${video.push.enabled:true}")
+    private boolean enabled;
+
+    /**
+     * 待推送的消息（key: 数据库任务ID），同一任务只保留最新状态
+     */
+    private final Map<Long, VideoTaskPushMessage> pending = new ConcurrentHashMap<>();
+
+    /**
+     * 任务所属用户缓存，避免每次推送都查询数据库
+     */
+    private final LRUCache<Long, Long> taskOwners = CacheUtil.newLRUCache(10000);
+
+    /**
+     * 本节点已投递的终态消息时间（key: 数据库任务ID），用于丢弃迟到的进度消息
+     */
+    private final LRUCache<Long, Long> terminalTimes = CacheUtil.newLRUCache(10000);
+
+    /**
+     * 任务状态变更
+     */
+    @EventListener
+    public void onTaskStateChanged(VideoTaskStateChangedEvent event) {
+        if (!enabled) {
+            return;
+        }
+        Long userId = resolveUserId(event.getDbTaskId());
+        if (userId == null) {
+            return;
+        }
+
+        VideoTaskPushMessage message = buildMessage(userId, event.getDbTaskId(), event.getState());
+        if (event.isTerminal()) {
+            // 与推送周期的发布按任务互斥：丢弃尚未发布的进度，已在发布中的进度先于终态发出
+            pending.compute(event.getDbTaskId(), (dbTaskId, stale) -> {
+                publish(message);
+                return null;
+            });
+        } else {
+            pending.put(event.getDbTaskId(), message);
+        }
+    }
+
+    /**
+     * 按推送周期发送合并后的进度更新
+     */
+    @Scheduled(fixedDelayString = "${video.push.flush-interval:1000}")
+    public void flush() {
+        if (pending.isEmpty()) {
+            return;
+        }
+        for (Long dbTaskId : pending.keySet()) {
+            // 取出和发布在同一步完成，期间到达的终态等待本条发布后再发布
+            pending.computeIfPresent(dbTaskId, (key, message) -> {
+                publish(message);
+                return null;
+            });
+        }
+    }
+
+    /**
+     * 收到Redis频道消息，投递给本节点上连接的用户
+     */
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        try {
+            String body = new String(message.getBody(), StandardCharsets.UTF_8);
+            VideoTaskPushMessage pushMessage = JSON.parseObject(body, VideoTaskPushMessage.class);
+            if (isTerminal(pushMessage.getStatus())) {
+                terminalTimes.put(pushMessage.getId(), pushMessage.getTimestamp());
+            } else {
+                Long terminalTime = terminalTimes.get(pushMessage.getId());
+                if (terminalTime != null && pushMessage.getTimestamp() != null
+                        && pushMessage.getTimestamp() <= terminalTime) {
+                    log.debug("丢弃迟到的任务进度推送, taskId: {}", pushMessage.getId());
+                    return;
+                }
+            }
+            messagingTemplate.convertAndSendToUser(String.valueOf(pushMessage.getUserId()), USER_DESTINATION, pushMessage);
+        } catch (Exception e) {
+            log.error("投递任务状态推送失败", e);
+        }
+    }
+
+    private void publish(VideoTaskPushMessage message) {
+        try {
+            stringRedisTemplate.convertAndSend(CHANNEL, JSON.toJSONString(message));
+        } catch (Exception e) {
+            log.error("发布任务状态推送失败, taskId: {}", message.getId(), e);
+        }
+    }
+
+    private VideoTaskPushMessage buildMessage(Long userId, Long dbTaskId, VideoTaskDTO state) {
+        VideoTaskPushMessage message = new VideoTaskPushMessage();
+        message.setUserId(userId);
+        message.setId(dbTaskId);
+        message.setStatus(state.getStatus());
+        message.setProgress(state.getProgress());
+        message.setVideoUrl(state.getVideoUrl());
+        message.setCoverUrl(state.getCoverUrl());
+        message.setErrorMessage(state.getErrorMessage());
+        message.setTimestamp(System.currentTimeMillis());
+        return message;
+    }
+
+    private boolean isTerminal(String status) {
+        return "COMPLETED".equals(status) || "FAILED".equals(status);
+    }
+
+    /**
+     * 查询任务所属用户，查询失败时返回null（跳过本次推送，不影响发布方和其他监听器）
+     */
+    private Long resolveUserId(Long dbTaskId) {
+        Long userId = taskOwners.get(dbTaskId);
+        if (userId != null) {
+            return userId;
+        }
+        LambdaQueryWrapper<VideoTask> wrapper = new LambdaQueryWrapper<>();
+        wrapper.select(VideoTask::getId, VideoTask::getUserId).eq(VideoTask::getId, dbTaskId);
+        VideoTask task;
+        try {
+            task = videoTaskMapper.selectOne(wrapper);
+        } catch (Exception e) {
+            log.warn("查询任务所属用户失败，跳过推送, taskId: {}", dbTaskId, e);
+            return null;
+        }
+        if (task == null) {
+            return null;
+        }
+        taskOwners.put(dbTaskId, task.getUserId());
+        return task.getUserId();
+    }
+}
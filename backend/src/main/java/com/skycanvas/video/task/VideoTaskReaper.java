@@ -0,0 +1,266 @@
+package com.skycanvas.video.task;
+
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.skycanvas.dto.VideoTaskDTO;
+import com.skycanvas.entity.VideoTask;
+import com.skycanvas.mapper.VideoTaskMapper;
+import com.skycanvas.video.VideoProviderFactory;
+import com.skycanvas.video.callback.VideoCallbackHandler;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 超时任务清理
+ *
+ * 设计说明：
+ * 1. 定期扫描创建时间超过 stuck-after 仍处于0-队列中/1-生成中的任务，作为任务恢复之外的最后兜底
+ *    （轮询超时后停止轮询、处理节点仍存活但不再跟踪的任务不会被恢复流程处理）
+ * 2. 通过Redis锁保证同一时间只有一个节点执行
+ * 3. 按 (status, create_time, id) 游标分页扫描（idx_status_create_time），每页只读取超时的任务
+ * 4. 每页先并发向provider做最后一次查询，已完成/已失败的任务按provider结果正常结算；
+ *    其余任务在一个事务中批量置为失败并批量退款，然后通知各节点停止跟踪，并取消provider处的任务
+ * 5. 各provider的清理数量累计在Redis（video:reaper:stats），见 GET /monitor/reaper
+ */
+@Slf4j
+@Component
+public class VideoTaskReaper {
+
+    private static final String LOCK_KEY = "video:reaper:lock";
+
+    private static final String STATS_KEY = "video:reaper:stats";
+
+    private static final String REAPED_MESSAGE = "任务长时间未完成，已退回积分";
+
+    /**
+     * 只释放自己持有的锁
+     */
+    private static final RedisScript<Long> UNLOCK_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('GET', KEYS[1]) == ARGV[1] then return redis.call('DEL', KEYS[1]) end return 0",
+            Long.class);
+
+    @Autowired
+    private VideoTaskMapper videoTaskMapper;
+
+    @Autowired
+    private VideoTaskStateManager stateManager;
+
+    @Autowired
+    private VideoProviderFactory providerFactory;
+
+    @Autowired
+    private VideoTaskDispatcher dispatcher;
+
+    @Autowired
+    private VideoCallbackHandler callbackHandler;
+
+    @Autowired
+    private ClusterNodeRegistry nodeRegistry;
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Value("${video.task.reaper.enabled:true}")
+    private boolean enabled;
+
+    @Value("${video.task.reaper.stuck-after:3600000}")
+    private long stuckAfter;
+
+    @Value("${video.task.reaper.page-size:100}")
+    private int pageSize;
+
+    @Value("${video.task.reaper.check-timeout:10000}")
+    private long checkTimeout;
+
+    @Value("${video.task.reaper.lock-ttl:600000}")
+    private long lockTtl;
+
+    @Scheduled(initialDelay = 60000, fixedDelayString = "${video.task.reaper.interval:300000}")
+    public void reap() {
+        if (!enabled) {
+            return;
+        }
+
+        String token = nodeRegistry.getNodeId() + ":" + UUID.randomUUID();
+        Boolean locked;
+        try {
+            locked = stringRedisTemplate.opsForValue().setIfAbsent(LOCK_KEY, token, lockTtl, TimeUnit.MILLISECONDS);
+        } catch (Exception e) {
+            log.warn("获取超时任务清理锁失败", e);
+            return;
+        }
+        if (!Boolean.TRUE.equals(locked)) {
+            return;
+        }
+
+        ReapStats stats = new ReapStats();
+        try {
+            LocalDateTime cutoff = LocalDateTime.now().minus(Duration.ofMillis(stuckAfter));
+            reapStatus(0, cutoff, stats);
+            reapStatus(1, cutoff, stats);
+        } catch (Exception e) {
+            log.error("超时任务清理失败", e);
+        } finally {
+            stringRedisTemplate.execute(UNLOCK_SCRIPT, Collections.singletonList(LOCK_KEY), token);
+        }
+
+        recordStats(stats);
+        if (!stats.reaped.isEmpty() || !stats.resolved.isEmpty()) {
+            log.info("超时任务清理完成, 失败退款: {}, 最后查询已结束: {}", stats.reaped, stats.resolved);
+        }
+    }
+
+    /**
+     * 清理统计（所有节点累计）
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Map<String, Long>> grouped = new LinkedHashMap<>();
+        grouped.put("reaped", new LinkedHashMap<>());
+        grouped.put("resolved", new LinkedHashMap<>());
+        Map<String, Object> result = new LinkedHashMap<>();
+        for (Map.Entry<Object, Object> entry : stringRedisTemplate.opsForHash().entries(STATS_KEY).entrySet()) {
+            String field = String.valueOf(entry.getKey());
+            String value = String.valueOf(entry.getValue());
+            int separator = field.indexOf(':');
+            if (separator > 0 && grouped.containsKey(field.substring(0, separator))) {
+                grouped.get(field.substring(0, separator)).put(field.substring(separator + 1), Long.valueOf(value));
+            } else {
+                result.put(field, value);
+            }
+        }
+        result.putAll(grouped);
+        return result;
+    }
+
+    private void reapStatus(int status, LocalDateTime cutoff, ReapStats stats) {
+        LocalDateTime lastTime = null;
+        long lastId = 0;
+        while (true) {
+            LambdaQueryWrapper<VideoTask> wrapper = new LambdaQueryWrapper<>();
+            wrapper.select(VideoTask::getId, VideoTask::getUserId, VideoTask::getTaskId, VideoTask::getProvider,
+                            VideoTask::getCostCredits, VideoTask::getCreateTime)
+                    .eq(VideoTask::getStatus, status)
+                    .lt(VideoTask::getCreateTime, cutoff);
+            if (lastTime != null) {
+                LocalDateTime time = lastTime;
+                long id = lastId;
+                wrapper.and(w -> w.gt(VideoTask::getCreateTime, time)
+                        .or(o -> o.eq(VideoTask::getCreateTime, time).gt(VideoTask::getId, id)));
+            }
+            wrapper.orderByAsc(VideoTask::getCreateTime, VideoTask::getId)
+                    .last("LIMIT " + pageSize);
+            List<VideoTask> tasks = videoTaskMapper.selectList(wrapper);
+            if (tasks.isEmpty()) {
+                break;
+            }
+
+            VideoTask last = tasks.get(tasks.size() - 1);
+            lastTime = last.getCreateTime();
+            lastId = last.getId();
+            reapPage(tasks, stats);
+
+            if (tasks.size() < pageSize) {
+                break;
+            }
+        }
+    }
+
+    private void reapPage(List<VideoTask> tasks, ReapStats stats) {
+        List<VideoTask> candidates = new ArrayList<>();
+        List<CompletableFuture<VideoTaskDTO>> checks = new ArrayList<>();
+        for (VideoTask task : tasks) {
+            if (task.getTaskId() != null && task.getTaskId().startsWith(VideoResultCache.FOLLOWER_PREFIX)) {
+                // 合并等待的任务随相同任务结算
+                continue;
+            }
+            candidates.add(task);
+            checks.add(finalCheck(task));
+        }
+
+        List<Long> expired = new ArrayList<>();
+        Map<Long, VideoTask> byId = new HashMap<>();
+        for (int i = 0; i < candidates.size(); i++) {
+            VideoTask task = candidates.get(i);
+            VideoTaskDTO dto = checks.get(i).join();
+            if (dto != null && stateManager.isTerminal(dto.getStatus())) {
+                if (stateManager.applyUpdate(task.getId(), dto)) {
+                    callbackHandler.broadcastTerminal(task.getId());
+                }
+                stats.resolved.merge(task.getProvider(), 1L, Long::sum);
+            } else {
+                expired.add(task.getId());
+                byId.put(task.getId(), task);
+            }
+        }
+
+        for (VideoTask task : stateManager.markFailedBatch(expired, REAPED_MESSAGE)) {
+            VideoTask scanned = byId.get(task.getId());
+            callbackHandler.broadcastTerminal(task.getId());
+            if (stateManager.isProviderTaskId(scanned.getTaskId())) {
+                dispatcher.cancelAtProvider(task.getId(), scanned.getProvider(), scanned.getTaskId());
+            }
+            stats.reaped.merge(scanned.getProvider(), 1L, Long::sum);
+        }
+    }
+
+    /**
+     * 向provider做最后一次查询，没有provider任务或查询失败时返回null
+     */
+    private CompletableFuture<VideoTaskDTO> finalCheck(VideoTask task) {
+        if (!stateManager.isProviderTaskId(task.getTaskId())) {
+            return CompletableFuture.completedFuture(null);
+        }
+        try {
+            return providerFactory.getAsyncProvider(task.getProvider())
+                    .queryTaskAsync(task.getTaskId())
+                    .completeOnTimeout(null, checkTimeout, TimeUnit.MILLISECONDS)
+                    .exceptionally(e -> {
+                        log.warn("超时任务最后查询失败, dbTaskId: {}, provider: {}", task.getId(), task.getProvider());
+                        return null;
+                    });
+        } catch (Exception e) {
+            log.warn("超时任务最后查询失败, dbTaskId: {}, provider: {}", task.getId(), task.getProvider(), e);
+            return CompletableFuture.completedFuture(null);
+        }
+    }
+
+    private void recordStats(ReapStats stats) {
+        try {
+            stats.reaped.forEach((provider, count) ->
+                    stringRedisTemplate.opsForHash().increment(STATS_KEY, "reaped:" + provider, count));
+            stats.resolved.forEach((provider, count) ->
+                    stringRedisTemplate.opsForHash().increment(STATS_KEY, "resolved:" + provider, count));
+            stringRedisTemplate.opsForHash().put(STATS_KEY, "lastRunAt", LocalDateTime.now().toString());
+            stringRedisTemplate.opsForHash().put(STATS_KEY, "lastRunNode", nodeRegistry.getNodeId());
+        } catch (Exception e) {
+            log.warn("记录超时任务清理统计失败", e);
+        }
+    }
+
+    /**
+     * 单次清理统计（key: provider）
+     */
+    private static class ReapStats {
+
+        private final Map<String, Long> reaped = new LinkedHashMap<>();
+
+        private final Map<String, Long> resolved = new LinkedHashMap<>();
+    }
+}
@@ -0,0 +1,222 @@
+package com.skycanvas.video.task;
+
+import com.alibaba.fastjson2.JSON;
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.baomidou.mybatisplus.core.conditions.update.LambdaUpdateWrapper;
+import com.skycanvas.dto.VideoGenerationRequest;
+import com.skycanvas.entity.VideoTask;
+import com.skycanvas.mapper.VideoTaskMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 任务恢复
+ *
+ * 设计说明：
+ * 1. 启动后及之后定期扫描 status=0/1 的任务（按 idx_status 以主键游标分页，不做全表扫描）
+ * 2. 只处理无人跟踪的任务：本节点重启前遗留的任务，或处理节点心跳已消失的任务
+ * 3. 通过条件更新 node_id 认领任务，多个节点同时恢复时只有一个节点能认领成功
+ * 4. 超过截止时间的任务直接标记失败并退款，已提交的任务同时取消provider处的任务；生成中的任务按速率错开重新登记轮询，避免集中查询provider；
+ *    队列中的任务重新交给分发器排队
+ * 5. 合并等待的任务（dedup_）在其首个任务已结束时补做结算
+ */
+@Slf4j
+@Component
+public class VideoTaskRecoveryService {
+
+    @Autowired
+    private VideoTaskMapper videoTaskMapper;
+
+    @Autowired
+    private VideoTaskDispatcher dispatcher;
+
+    @Autowired
+    private VideoTaskPoller poller;
+
+    @Autowired
+    private ProviderAdmissionController admissionController;
+
+    @Autowired
+    private VideoTaskStateManager stateManager;
+
+    @Autowired
+    private ClusterNodeRegistry nodeRegistry;
+
+    @Autowired
+    private VideoResultCache resultCache;
+
+    @Value("${video.task.recovery.enabled:true}")
+    private boolean enabled;
+
+    @Value("${video.task.recovery.deadline:1800000}")
+    private long deadline;
+
+    @Value("${video.task.recovery.grace:60000}")
+    private long grace;
+
+    @Value("${video.task.recovery.page-size:200}")
+    private int pageSize;
+
+    @Value("${video.task.recovery.rate:20}")
+    private int rate;
+
+    /**
+     * 启动时立即执行一次，之后定期接管宕机节点遗留的任务
+     */
+    @Scheduled(initialDelay = 5000, fixedDelayString = "${video.task.recovery.interval:60000}")
+    public void recover() {
+        if (!enabled) {
+            return;
+        }
+
+        RecoveryStats stats = new RecoveryStats();
+        try {
+            recoverStatus(0, stats);
+            recoverStatus(1, stats);
+        } catch (Exception e) {
+            log.error("任务恢复失败", e);
+        }
+
+        if (stats.total() > 0) {
+            log.info("任务恢复完成, 重新排队: {}, 恢复轮询: {}, 超时退款: {}",
+                    stats.requeued, stats.resumed, stats.expired);
+        }
+    }
+
+    private void recoverStatus(int status, RecoveryStats stats) {
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime expireBefore = now.minus(Duration.ofMillis(deadline));
+        LocalDateTime graceBefore = now.minus(Duration.ofMillis(grace));
+        Map<String, Boolean> aliveNodes = new HashMap<>();
+
+        long lastId = 0;
+        while (true) {
+            LambdaQueryWrapper<VideoTask> wrapper = new LambdaQueryWrapper<>();
+            wrapper.select(VideoTask::getId, VideoTask::getUserId, VideoTask::getTaskId, VideoTask::getProvider,
+                            VideoTask::getParams, VideoTask::getStatus, VideoTask::getCostCredits,
+                            VideoTask::getNodeId, VideoTask::getCreateTime)
+                    .eq(VideoTask::getStatus, status)
+                    .gt(VideoTask::getId, lastId)
+                    .orderByAsc(VideoTask::getId)
+                    .last("LIMIT " + pageSize);
+            List<VideoTask> tasks = videoTaskMapper.selectList(wrapper);
+
+            for (VideoTask task : tasks) {
+                lastId = task.getId();
+                if (task.getCreateTime() != null && task.getCreateTime().isAfter(graceBefore)) {
+                    // 刚创建的任务可能还未交给分发器
+                    continue;
+                }
+                if (task.getTaskId() != null && task.getTaskId().startsWith(VideoResultCache.FOLLOWER_PREFIX)) {
+                    // 合并等待的任务不提交provider，随相同任务结算
+                    resultCache.settleFollower(task);
+                    continue;
+                }
+                if (!isOrphan(task, aliveNodes) || !claim(task)) {
+                    continue;
+                }
+
+                if (task.getCreateTime() != null && task.getCreateTime().isBefore(expireBefore)) {
+                    expire(task);
+                    stats.expired++;
+                } else if (status == 0) {
+                    requeue(task);
+                    stats.requeued++;
+                } else {
+                    resume(task, stats.resumed);
+                    stats.resumed++;
+                }
+            }
+
+            if (tasks.size() < pageSize) {
+                break;
+            }
+        }
+    }
+
+    /**
+     * 是否为无人跟踪的任务
+     */
+    private boolean isOrphan(VideoTask task, Map<String, Boolean> aliveNodes) {
+        String owner = task.getNodeId();
+        if (owner == null) {
+            return true;
+        }
+        if (owner.equals(nodeRegistry.getNodeId())) {
+            return !admissionController.isTracking(task.getId()) && !poller.isTracking(task.getId());
+        }
+        return !aliveNodes.computeIfAbsent(owner, nodeRegistry::isAlive);
+    }
+
+    /**
+     * 通过条件更新认领任务
+     */
+    private boolean claim(VideoTask task) {
+        LambdaUpdateWrapper<VideoTask> wrapper = new LambdaUpdateWrapper<>();
+        wrapper.set(VideoTask::getNodeId, nodeRegistry.getNodeId())
+                .eq(VideoTask::getId, task.getId())
+                .eq(VideoTask::getStatus, task.getStatus());
+        if (task.getNodeId() == null) {
+            wrapper.isNull(VideoTask::getNodeId);
+        } else {
+            wrapper.eq(VideoTask::getNodeId, task.getNodeId());
+        }
+        return videoTaskMapper.update(null, wrapper) > 0;
+    }
+
+    /**
+     * 超过截止时间：标记失败并退款，已提交到provider的任务在后台取消，避免provider继续生成和计费
+     * 任务已由其他路径置为终态时不取消
+     */
+    private void expire(VideoTask task) {
+        if (stateManager.markFailed(task.getId(), "任务超时未完成，已退回积分")
+                && stateManager.isProviderTaskId(task.getTaskId())) {
+            dispatcher.cancelAtProvider(task.getId(), task.getProvider(), task.getTaskId());
+        }
+    }
+
+    /**
+     * 队列中的任务重新交给分发器
+     */
+    private void requeue(VideoTask task) {
+        VideoGenerationRequest request = JSON.parseObject(task.getParams(), VideoGenerationRequest.class);
+        dispatcher.dispatch(new DispatchCommand(task.getId(), task.getUserId(), task.getProvider(),
+                request, task.getCostCredits()));
+    }
+
+    /**
+     * 生成中的任务重新登记轮询，按 rate 个/秒 错开首次查询
+     */
+    private void resume(VideoTask task, int index) {
+        long spacing = 1000L / Math.max(rate, 1);
+        long delay = index * spacing + ThreadLocalRandom.current().nextLong(spacing + 1);
+        admissionController.adopt(task.getProvider(), task.getUserId(), task.getId());
+        poller.resume(task.getId(), task.getTaskId(), task.getProvider(), delay);
+    }
+
+    /**
+     * 单次恢复统计
+     */
+    private static class RecoveryStats {
+
+        private int requeued;
+
+        private int resumed;
+
+        private int expired;
+
+        int total() {
+            return requeued + resumed + expired;
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package com.skycanvas.video.task;
+
+import com.skycanvas.dto.VideoTaskDTO;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * 任务状态变更事件
+ * 由VideoTaskStateManager在每次写入任务状态后同步发布
+ */
+@Getter
+@AllArgsConstructor
+public class VideoTaskStateChangedEvent {
+
+    /**
+     * 数据库任务ID
+     */
+    private final Long dbTaskId;
+
+    /**
+     * 变更后的任务状态
+     */
+    private final VideoTaskDTO state;
+
+    /**
+     * 是否为终态（COMPLETED/FAILED）
+     */
+    public boolean isTerminal() {
+        return "COMPLETED".equals(state.getStatus()) || "FAILED".equals(state.getStatus());
+    }
+}
@@ -0,0 +1,286 @@
+package com.skycanvas.video.task;
+
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.baomidou.mybatisplus.core.conditions.update.LambdaUpdateWrapper;
+import com.skycanvas.dto.VideoTaskDTO;
+import com.skycanvas.entity.VideoTask;
+import com.skycanvas.mapper.VideoTaskMapper;
+import com.skycanvas.service.CreditService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * 视频任务状态管理
+ * 统一处理任务状态流转（提交结果、轮询结果、失败退款），供分发器、轮询器和查询接口共用
+ * 每次写入状态后发布 VideoTaskStateChangedEvent
+ */
+@Slf4j
+@Component
+public class VideoTaskStateManager {
+
+    /**
+     * 用户取消的任务的错误信息
+     */
+    public static final String CANCELLED_MESSAGE = "任务已取消";
+
+    @Autowired
+    private VideoTaskMapper videoTaskMapper;
+
+    @Autowired
+    private CreditService creditService;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    /**
+     * 记录第三方API的提交结果
+     * @return 是否已到达终态
+     */
+    public boolean applySubmitResult(Long dbTaskId, VideoTaskDTO dto) {
+        VideoTask update = buildUpdate(dto);
+        update.setTaskId(dto.getTaskId());
+        if (update.getProgress() == null) {
+            update.setProgress(0);
+        }
+        log.info("任务提交成功, dbTaskId: {}, providerTaskId: {}", dbTaskId, dto.getTaskId());
+        return transition(dbTaskId, update, dto);
+    }
+
+    /**
+     * 根据provider返回的状态更新任务
+     * @return 是否已到达终态（包括此前已被其他路径置为终态）
+     */
+    public boolean applyUpdate(Long dbTaskId, VideoTaskDTO dto) {
+        return transition(dbTaskId, buildUpdate(dto), dto);
+    }
+
+    /**
+     * 将任务标记为失败并退回积分
+     * 只有任务仍处于未完成状态时才会生效，重复调用不会重复退款
+     * @return 是否由本次调用置为失败（任务此前已到达终态时返回false）
+     */
+    public boolean markFailed(Long dbTaskId, String errorMsg) {
+        VideoTaskDTO dto = new VideoTaskDTO();
+        dto.setStatus("FAILED");
+        dto.setErrorMessage(errorMsg);
+        return update(dbTaskId, buildUpdate(dto), dto);
+    }
+
+    /**
+     * 批量将任务标记为失败并退回积分（清理超时任务时使用）
+     * 在一个事务中锁定仍未完成的任务，一条UPDATE置为失败，再批量退款；事务提交后逐个发布事件
+     * @return 由本次调用置为失败的任务（此前已到达终态的任务不包含在内）
+     */
+    public List<VideoTask> markFailedBatch(List<Long> dbTaskIds, String errorMsg) {
+        if (dbTaskIds.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<VideoTask> failed = transactionTemplate.execute(status -> {
+            LambdaQueryWrapper<VideoTask> query = new LambdaQueryWrapper<>();
+            query.select(VideoTask::getId, VideoTask::getUserId, VideoTask::getProvider,
+                            VideoTask::getTaskId, VideoTask::getCostCredits)
+                    .in(VideoTask::getId, dbTaskIds)
+                    .in(VideoTask::getStatus, 0, 1)
+                    .last("FOR UPDATE");
+            List<VideoTask> locked = videoTaskMapper.selectList(query);
+            if (locked.isEmpty()) {
+                return locked;
+            }
+
+            LambdaUpdateWrapper<VideoTask> update = new LambdaUpdateWrapper<>();
+            update.set(VideoTask::getStatus, 3)
+                    .set(VideoTask::getErrorMsg, errorMsg)
+                    .in(VideoTask::getId, locked.stream().map(VideoTask::getId).collect(Collectors.toList()));
+            videoTaskMapper.update(null, update);
+            creditService.refundBatch(locked);
+            return locked;
+        });
+
+        for (VideoTask task : failed) {
+            VideoTaskDTO dto = new VideoTaskDTO();
+            dto.setStatus("FAILED");
+            dto.setErrorMessage(errorMsg);
+            eventPublisher.publishEvent(new VideoTaskStateChangedEvent(task.getId(), dto));
+        }
+        log.info("批量标记任务失败: {}/{}", failed.size(), dbTaskIds.size());
+        return failed;
+    }
+
+    /**
+     * 用户取消任务：标记为失败（错误信息为“已取消”）并退回积分
+     * @return 是否由本次调用取消（任务此前已到达终态时返回false）
+     */
+    public boolean markCancelled(Long dbTaskId) {
+        VideoTaskDTO dto = new VideoTaskDTO();
+        dto.setStatus("FAILED");
+        dto.setErrorMessage(CANCELLED_MESSAGE);
+        return update(dbTaskId, buildUpdate(dto), dto);
+    }
+
+    /**
+     * 切换任务的provider（提交失败切换provider时使用），只对尚未提交成功的任务生效
+     * @return 是否切换成功
+     */
+    public boolean reassignProvider(Long dbTaskId, String providerName) {
+        LambdaUpdateWrapper<VideoTask> wrapper = new LambdaUpdateWrapper<>();
+        wrapper.set(VideoTask::getProvider, providerName)
+                .eq(VideoTask::getId, dbTaskId)
+                .eq(VideoTask::getStatus, 0);
+        return videoTaskMapper.update(null, wrapper) > 0;
+    }
+
+    /**
+     * 是否为provider返回的任务ID（尚未提交的临时ID、复用结果的任务没有provider任务）
+     */
+    public boolean isProviderTaskId(String providerTaskId) {
+        return providerTaskId != null
+                && !providerTaskId.startsWith("temp_")
+                && !providerTaskId.startsWith(VideoResultCache.FOLLOWER_PREFIX)
+                && !providerTaskId.startsWith(VideoResultCache.HIT_PREFIX);
+    }
+
+    /**
+     * 是否为终态
+     */
+    public boolean isTerminal(String status) {
+        return "COMPLETED".equals(status) || "FAILED".equals(status);
+    }
+
+    /**
+     * 状态字符串转数字
+     */
+    public Integer mapStatusToInt(String status) {
+        if (status == null) {
+            return 0;
+        }
+        switch (status) {
+            case "PENDING":
+                return 0;
+            case "PROCESSING":
+                return 1;
+            case "COMPLETED":
+                return 2;
+            case "FAILED":
+                return 3;
+            default:
+                return 0;
+        }
+    }
+
+    /**
+     * 状态数字转字符串
+     */
+    public String mapIntToStatus(Integer status) {
+        if (status == null) {
+            return "PENDING";
+        }
+        switch (status) {
+            case 0:
+                return "PENDING";
+            case 1:
+                return "PROCESSING";
+            case 2:
+                return "COMPLETED";
+            case 3:
+                return "FAILED";
+            default:
+                return "PENDING";
+        }
+    }
+
+    /**
+     * 转换为DTO
+     */
+    public VideoTaskDTO convertToDTO(VideoTask task) {
+        VideoTaskDTO dto = new VideoTaskDTO();
+        dto.setTaskId(task.getTaskId());
+        dto.setStatus(mapIntToStatus(task.getStatus()));
+        dto.setProgress(task.getProgress());
+        dto.setVideoUrl(task.getVideoUrl());
+        dto.setCoverUrl(task.getCoverUrl());
+        dto.setDuration(task.getDuration());
+        dto.setErrorMessage(task.getErrorMsg());
+        return dto;
+    }
+
+    /**
+     * 构建只包含变更字段的更新对象（null字段不会被更新）
+     */
+    private VideoTask buildUpdate(VideoTaskDTO dto) {
+        VideoTask update = new VideoTask();
+        update.setStatus(mapStatusToInt(dto.getStatus()));
+        update.setProgress(dto.getProgress());
+        update.setVideoUrl(dto.getVideoUrl());
+        update.setCoverUrl(dto.getCoverUrl());
+        update.setDuration(dto.getDuration());
+        update.setErrorMsg(dto.getErrorMessage());
+
+        if ("COMPLETED".equals(dto.getStatus())) {
+            update.setCompleteTime(LocalDateTime.now());
+        }
+        return update;
+    }
+
+    /**
+     * 条件更新：只更新仍处于0-队列中/1-生成中的任务
+     * 已到达终态的任务不会被迟到的查询结果覆盖；多个路径（轮询、查询、恢复、回调）同时写入终态时，
+     * 只有更新成功的一方负责退款和发布事件
+     */
+    private boolean transition(Long dbTaskId, VideoTask update, VideoTaskDTO dto) {
+        if (!update(dbTaskId, update, dto)) {
+            log.debug("任务{}已处于终态，忽略状态更新: {}", dbTaskId, dto.getStatus());
+            return true;
+        }
+        return isTerminal(dto.getStatus());
+    }
+
+    /**
+     * 执行条件更新，更新成功时负责失败退款和发布事件
+     * 置为失败和退款在同一个事务中（退款失败时任务保持未完成，由恢复和超时清理重试），事务提交后发布事件
+     * @return 是否更新成功
+     */
+    private boolean update(Long dbTaskId, VideoTask update, VideoTaskDTO dto) {
+        boolean updated;
+        if ("FAILED".equals(dto.getStatus())) {
+            updated = Boolean.TRUE.equals(transactionTemplate.execute(status -> {
+                if (!conditionalUpdate(dbTaskId, update)) {
+                    return false;
+                }
+                VideoTask task = videoTaskMapper.selectById(dbTaskId);
+                if (task != null && task.getCostCredits() != null && task.getCostCredits() > 0) {
+                    creditService.refund(task.getUserId(), task.getCostCredits(), dbTaskId);
+                }
+                return true;
+            }));
+        } else {
+            updated = conditionalUpdate(dbTaskId, update);
+        }
+        if (!updated) {
+            return false;
+        }
+
+        if (isTerminal(dto.getStatus())) {
+            log.info("任务{}状态更新完成: {}", dbTaskId, dto.getStatus());
+        }
+        eventPublisher.publishEvent(new VideoTaskStateChangedEvent(dbTaskId, dto));
+        return true;
+    }
+
+    private boolean conditionalUpdate(Long dbTaskId, VideoTask update) {
+        LambdaUpdateWrapper<VideoTask> wrapper = new LambdaUpdateWrapper<>();
+        wrapper.eq(VideoTask::getId, dbTaskId)
+                .in(VideoTask::getStatus, 0, 1);
+        return videoTaskMapper.update(update, wrapper) > 0;
+    }
+}
@@ -0,0 +1,243 @@
+package com.skycanvas.video.task;
+
+import com.alibaba.fastjson2.JSON;
+import com.skycanvas.dto.VideoTaskDTO;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * 任务状态缓存
+ *
+ * 设计说明：
+ * 1. 以数据库任务ID为key缓存任务状态（Redis），查询接口先读缓存，未命中时才查询数据库
+ * 2. 终态（COMPLETED/FAILED）长期缓存，查询时不再访问数据库和provider
+ * 3. 任务状态变更事件写回缓存，轮询器的查询结果对所有节点可见
+ * 4. 缓存超过新鲜度窗口后才刷新：同一任务同时只有一个provider查询（本节点内合并请求，
+ *    跨节点用Redis锁限制为每个窗口一次），其余调用方直接使用缓存结果
+ * 5. 终态优先：状态事件以CAS方式合并写回（缓存值被并发修改时重新读取合并），
+ *    非终态的写入不会覆盖已缓存的终态，乱序到达的进度不会把已完成/已失败改回生成中
+ */
+@Slf4j
+@Component
+public class VideoTaskStatusCache {
+
+    private static final String STATUS_KEY_PREFIX = "video:task:status:";
+
+    private static final String REFRESH_LOCK_PREFIX = "video:task:refresh:";
+
+    /**
+     * 事件合并写回的CAS重试次数
+     */
+    private static final int MAX_CAS_ATTEMPTS = 3;
+
+    /**
+     * KEYS: 缓存key；ARGV: 期望的当前值（空表示不比较）、新值、过期时间（秒）、新值是否为终态（1/0）
+     * 有期望值时当前值不一致则不写入；没有期望值时非终态不覆盖已缓存的终态
+     * 返回1写入，0未写入
+     */
+    private static final RedisScript<Long> WRITE_SCRIPT = new DefaultRedisScript<>(
+            "local current = redis.call('GET', KEYS[1]) " +
+            "if ARGV[1] ~= '' then " +
+            "  if current ~= ARGV[1] then return 0 end " +
+            "elseif current and ARGV[4] == '0' then " +
+            "  local ok, snapshot = pcall(cjson.decode, current) " +
+            "  if ok and type(snapshot.state) == 'table' " +
+            "      and (snapshot.state.status == 'COMPLETED' or snapshot.state.status == 'FAILED') then return 0 end " +
+            "end " +
+            "redis.call('SET', KEYS[1], ARGV[2], 'EX', ARGV[3]) " +
+            "return 1",
+            Long.class);
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Autowired
+    private VideoTaskStateManager stateManager;
+
+    @Value("${video.task.cache.fresh-window:3000}")
+    private long freshWindow;
+
+    @Value("${video.task.cache.active-ttl:1800}")
+    private long activeTtl;
+
+    @Value("${video.task.cache.terminal-ttl:86400}")
+    private long terminalTtl;
+
+    /**
+     * 本节点正在进行的刷新（key: 数据库任务ID）
+     */
+    private final Map<Long, CompletableFuture<VideoTaskDTO>> inflight = new ConcurrentHashMap<>();
+
+    /**
+     * 读取缓存
+     * @return 缓存条目，未命中或读取失败时返回null
+     */
+    public TaskStatusSnapshot get(Long dbTaskId) {
+        try {
+            String value = stringRedisTemplate.opsForValue().get(STATUS_KEY_PREFIX + dbTaskId);
+            return value == null ? null : JSON.parseObject(value, TaskStatusSnapshot.class);
+        } catch (Exception e) {
+            log.warn("读取任务状态缓存失败, dbTaskId: {}", dbTaskId, e);
+            return null;
+        }
+    }
+
+    /**
+     * 写入缓存（非终态不覆盖已缓存的终态）
+     */
+    public TaskStatusSnapshot put(Long dbTaskId, Long userId, String provider, VideoTaskDTO state) {
+        TaskStatusSnapshot snapshot = new TaskStatusSnapshot();
+        snapshot.setUserId(userId);
+        snapshot.setProvider(provider);
+        snapshot.setState(state);
+        snapshot.setRefreshedAt(System.currentTimeMillis());
+        write(dbTaskId, snapshot, "");
+        return snapshot;
+    }
+
+    /**
+     * 删除缓存（任务的provider等不随状态事件变化的字段改变时使用）
+     */
+    public void evict(Long dbTaskId) {
+        try {
+            stringRedisTemplate.delete(STATUS_KEY_PREFIX + dbTaskId);
+        } catch (Exception e) {
+            log.warn("删除任务状态缓存失败, dbTaskId: {}", dbTaskId, e);
+        }
+    }
+
+    /**
+     * 缓存是否仍在新鲜度窗口内
+     */
+    public boolean isFresh(TaskStatusSnapshot snapshot) {
+        return snapshot.getRefreshedAt() != null
+                && System.currentTimeMillis() - snapshot.getRefreshedAt() < freshWindow;
+    }
+
+    /**
+     * 合并刷新：同一任务同时只执行一次loader，其余调用方等待并共享结果
+     * 其他节点在本窗口内已刷新过、或刷新失败时返回当前状态
+     * @param current 当前缓存中的状态
+     * @param loader  查询provider并写入任务状态
+     */
+    public VideoTaskDTO refresh(Long dbTaskId, VideoTaskDTO current, Supplier<VideoTaskDTO> loader) {
+        CompletableFuture<VideoTaskDTO> future = new CompletableFuture<>();
+        CompletableFuture<VideoTaskDTO> existing = inflight.putIfAbsent(dbTaskId, future);
+        if (existing != null) {
+            try {
+                return existing.get(freshWindow, TimeUnit.MILLISECONDS);
+            } catch (Exception e) {
+                return current;
+            }
+        }
+
+        VideoTaskDTO result = current;
+        try {
+            if (acquireRefreshLock(dbTaskId)) {
+                result = loader.get();
+            }
+        } catch (Exception e) {
+            log.error("刷新任务状态失败, dbTaskId: {}", dbTaskId, e);
+        } finally {
+            inflight.remove(dbTaskId, future);
+            future.complete(result);
+        }
+        return result;
+    }
+
+    /**
+     * 任务状态变更时写回缓存（缓存中没有该任务时不处理，首次查询时再从数据库加载）
+     * 读取、合并后以CAS写回，期间缓存被其他事件修改时重新读取合并
+     */
+    @EventListener
+    public void onTaskStateChanged(VideoTaskStateChangedEvent event) {
+        Long dbTaskId = event.getDbTaskId();
+        try {
+            for (int attempt = 0; attempt < MAX_CAS_ATTEMPTS; attempt++) {
+                String current = stringRedisTemplate.opsForValue().get(STATUS_KEY_PREFIX + dbTaskId);
+                if (current == null) {
+                    return;
+                }
+                TaskStatusSnapshot snapshot = JSON.parseObject(current, TaskStatusSnapshot.class);
+                VideoTaskDTO state = snapshot.getState();
+                if (state == null || stateManager.isTerminal(state.getStatus())) {
+                    // 终态不会再变化，忽略乱序到达的更新
+                    return;
+                }
+
+                merge(state, event.getState());
+                snapshot.setRefreshedAt(System.currentTimeMillis());
+                if (write(dbTaskId, snapshot, current)) {
+                    return;
+                }
+            }
+            // 多次冲突时删除缓存，下次查询从数据库加载
+            log.debug("任务状态缓存写回冲突, dbTaskId: {}", dbTaskId);
+            evict(dbTaskId);
+        } catch (Exception e) {
+            log.warn("写回任务状态缓存失败, dbTaskId: {}", dbTaskId, e);
+        }
+    }
+
+    /**
+     * 将变更字段合并到缓存状态（与数据库更新一致，null字段不覆盖）
+     */
+    private void merge(VideoTaskDTO state, VideoTaskDTO update) {
+        state.setStatus(update.getStatus());
+        if (update.getTaskId() != null) {
+            state.setTaskId(update.getTaskId());
+        }
+        if (update.getProgress() != null) {
+            state.setProgress(update.getProgress());
+        }
+        if (update.getVideoUrl() != null) {
+            state.setVideoUrl(update.getVideoUrl());
+        }
+        if (update.getCoverUrl() != null) {
+            state.setCoverUrl(update.getCoverUrl());
+        }
+        if (update.getDuration() != null) {
+            state.setDuration(update.getDuration());
+        }
+        if (update.getErrorMessage() != null) {
+            state.setErrorMessage(update.getErrorMessage());
+        }
+    }
+
+    private boolean acquireRefreshLock(Long dbTaskId) {
+        Boolean acquired = stringRedisTemplate.opsForValue()
+                .setIfAbsent(REFRESH_LOCK_PREFIX + dbTaskId, "1", freshWindow, TimeUnit.MILLISECONDS);
+        return Boolean.TRUE.equals(acquired);
+    }
+
+    /**
+     * @param expected 期望的当前值，空字符串表示不比较（此时非终态不覆盖终态）
+     * @return 是否写入
+     */
+    private boolean write(Long dbTaskId, TaskStatusSnapshot snapshot, String expected) {
+        boolean terminal = stateManager.isTerminal(snapshot.getState().getStatus());
+        long ttl = terminal ? terminalTtl : activeTtl;
+        try {
+            Long written = stringRedisTemplate.execute(WRITE_SCRIPT,
+                    Collections.singletonList(STATUS_KEY_PREFIX + dbTaskId),
+                    expected, JSON.toJSONString(snapshot), String.valueOf(ttl), terminal ? "1" : "0");
+            return written != null && written == 1;
+        } catch (Exception e) {
+            log.warn("写入任务状态缓存失败, dbTaskId: {}", dbTaskId, e);
+            return false;
+        }
+    }
+}
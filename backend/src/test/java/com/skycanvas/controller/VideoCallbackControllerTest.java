@@ -0,0 +1,202 @@
+package com.skycanvas.controller;
+
+import com.alibaba.fastjson2.JSONObject;
+import com.baomidou.mybatisplus.core.MybatisConfiguration;
+import com.baomidou.mybatisplus.core.metadata.TableInfoHelper;
+import com.skycanvas.dto.VideoTaskDTO;
+import com.skycanvas.entity.VideoTask;
+import com.skycanvas.mapper.VideoTaskMapper;
+import com.skycanvas.video.VideoProviderFactory;
+import com.skycanvas.video.callback.VideoCallbackHandler;
+import com.skycanvas.video.callback.VideoCallbackSigner;
+import com.skycanvas.video.provider.StubProvider;
+import com.skycanvas.video.task.ProviderAdmissionController;
+import com.skycanvas.video.task.VideoTaskPoller;
+import com.skycanvas.video.task.VideoTaskStateManager;
+import org.apache.ibatis.builder.MapperBuilderAssistant;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.http.MediaType;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.ResultActions;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * provider回调：VideoCallbackController -> VideoCallbackHandler，以 StubProvider 作为回调的provider
+ */
+class VideoCallbackControllerTest {
+
+    private static final String SECRET = "stub-secret";
+
+    private static final String PROVIDER_TASK_ID = "stub_test";
+
+    private VideoCallbackSigner signer;
+
+    private StubProvider stubProvider;
+
+    private VideoTaskMapper videoTaskMapper;
+
+    private VideoTaskStateManager stateManager;
+
+    private VideoTaskPoller poller;
+
+    private ProviderAdmissionController admissionController;
+
+    private StringRedisTemplate stringRedisTemplate;
+
+    private MockMvc mockMvc;
+
+    @BeforeAll
+    static void initTableInfo() {
+        // Lambda条件需要实体的表信息
+        TableInfoHelper.initTableInfo(new MapperBuilderAssistant(new MybatisConfiguration(), ""), VideoTask.class);
+    }
+
+    @BeforeEach
+    void setUp() {
+        signer = new VideoCallbackSigner();
+        ReflectionTestUtils.setField(signer, "baseUrl", "http://localhost:8080/api");
+        ReflectionTestUtils.setField(signer, "tolerance", 300L);
+
+        stubProvider = new StubProvider();
+        ReflectionTestUtils.setField(stubProvider, "callbackSecret", SECRET);
+        ReflectionTestUtils.setField(stubProvider, "callbackSigner", signer);
+
+        VideoProviderFactory providerFactory = mock(VideoProviderFactory.class);
+        when(providerFactory.getProvider("stub")).thenReturn(stubProvider);
+        when(providerFactory.getProvider("unknown")).thenThrow(new RuntimeException("不支持的视频生成服务"));
+
+        videoTaskMapper = mock(VideoTaskMapper.class);
+        stateManager = mock(VideoTaskStateManager.class);
+        poller = mock(VideoTaskPoller.class);
+        admissionController = mock(ProviderAdmissionController.class);
+        stringRedisTemplate = mock(StringRedisTemplate.class);
+
+        VideoCallbackHandler handler = new VideoCallbackHandler();
+        ReflectionTestUtils.setField(handler, "providerFactory", providerFactory);
+        ReflectionTestUtils.setField(handler, "signer", signer);
+        ReflectionTestUtils.setField(handler, "videoTaskMapper", videoTaskMapper);
+        ReflectionTestUtils.setField(handler, "stateManager", stateManager);
+        ReflectionTestUtils.setField(handler, "poller", poller);
+        ReflectionTestUtils.setField(handler, "admissionController", admissionController);
+        ReflectionTestUtils.setField(handler, "stringRedisTemplate", stringRedisTemplate);
+
+        VideoCallbackController controller = new VideoCallbackController();
+        ReflectionTestUtils.setField(controller, "callbackHandler", handler);
+        mockMvc = MockMvcBuilders.standaloneSetup(controller).build();
+    }
+
+    @AfterEach
+    void tearDown() {
+        stubProvider.destroy();
+    }
+
+    @Test
+    void validSignatureAppliesTerminalUpdate() throws Exception {
+        when(videoTaskMapper.selectOne(any())).thenReturn(task(1));
+        when(stateManager.applyUpdate(eq(10L), any())).thenReturn(true);
+
+        send("stub", completedBody(), now(), null).andExpect(status().isOk());
+
+        ArgumentCaptor<VideoTaskDTO> captor = ArgumentCaptor.forClass(VideoTaskDTO.class);
+        verify(stateManager).applyUpdate(eq(10L), captor.capture());
+        assertEquals("COMPLETED", captor.getValue().getStatus());
+        assertEquals(PROVIDER_TASK_ID, captor.getValue().getTaskId());
+        verify(poller).stop(10L);
+        verify(admissionController).release(10L);
+        verify(stringRedisTemplate).convertAndSend(VideoCallbackHandler.TERMINAL_CHANNEL, "10");
+    }
+
+    @Test
+    void badSignatureIsRejected() throws Exception {
+        send("stub", completedBody(), now(), "0000").andExpect(status().isUnauthorized());
+
+        verify(videoTaskMapper, never()).selectOne(any());
+        verify(stateManager, never()).applyUpdate(anyLong(), any());
+    }
+
+    @Test
+    void staleTimestampIsRejected() throws Exception {
+        long stale = now() - 600;
+        send("stub", completedBody(), stale, null).andExpect(status().isUnauthorized());
+
+        verify(stateManager, never()).applyUpdate(anyLong(), any());
+    }
+
+    @Test
+    void unknownTaskReturns404() throws Exception {
+        when(videoTaskMapper.selectOne(any())).thenReturn(null);
+
+        send("stub", completedBody(), now(), null).andExpect(status().isNotFound());
+
+        verify(stateManager, never()).applyUpdate(anyLong(), any());
+    }
+
+    @Test
+    void unknownProviderReturns404() throws Exception {
+        send("unknown", completedBody(), now(), null).andExpect(status().isNotFound());
+    }
+
+    @Test
+    void duplicateTerminalCallbackIsIgnored() throws Exception {
+        when(videoTaskMapper.selectOne(any())).thenReturn(task(1), task(2));
+        when(stateManager.applyUpdate(eq(10L), any())).thenReturn(true);
+
+        String body = completedBody();
+        send("stub", body, now(), null).andExpect(status().isOk());
+        send("stub", body, now(), null).andExpect(status().isOk());
+
+        verify(stateManager, times(1)).applyUpdate(anyLong(), any());
+        verify(stringRedisTemplate, times(1)).convertAndSend(anyString(), anyString());
+    }
+
+    /**
+     * 发送回调，signature为null时使用正确的签名
+     */
+    private ResultActions send(String provider, String body, long timestamp, String signature) throws Exception {
+        String sign = signature != null ? signature : signer.sign(SECRET, timestamp, body);
+        return mockMvc.perform(post("/video/callback/" + provider)
+                .contentType(MediaType.APPLICATION_JSON)
+                .header(VideoCallbackSigner.TIMESTAMP_HEADER, String.valueOf(timestamp))
+                .header(VideoCallbackSigner.SIGNATURE_HEADER, sign)
+                .content(body));
+    }
+
+    private String completedBody() {
+        JSONObject body = new JSONObject();
+        body.put("task_id", PROVIDER_TASK_ID);
+        body.put("status", "completed");
+        body.put("progress", 100);
+        body.put("video_url", "https://example.com/stub/" + PROVIDER_TASK_ID + ".mp4");
+        return body.toJSONString();
+    }
+
+    private VideoTask task(int status) {
+        VideoTask task = new VideoTask();
+        task.setId(10L);
+        task.setStatus(status);
+        return task;
+    }
+
+    private long now() {
+        return System.currentTimeMillis() / 1000;
+    }
+}
@@ -0,0 +1,194 @@
+package com.skycanvas.mapper;
+
+import com.baomidou.mybatisplus.core.MybatisConfiguration;
+import com.baomidou.mybatisplus.core.MybatisSqlSessionFactoryBuilder;
+import org.apache.ibatis.datasource.pooled.PooledDataSource;
+import org.apache.ibatis.mapping.Environment;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.apache.ibatis.transaction.jdbc.JdbcTransactionFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 积分并发扣减/增加：UserMapper.deductCredits/addCredits 的条件更新 + LAST_INSERT_ID 读取余额
+ * 使用H2的MySQL兼容模式（支持 LAST_INSERT_ID(expr)，按连接保存），多线程各自使用独立连接
+ */
+class UserMapperConcurrencyTest {
+
+    private static final int THREADS = 16;
+
+    private PooledDataSource dataSource;
+
+    private SqlSessionFactory sqlSessionFactory;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        dataSource = new PooledDataSource("org.h2.Driver",
+                "jdbc:h2:mem:credits_" + System.nanoTime() + ";MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1",
+                "sa", "");
+        dataSource.setPoolMaximumActiveConnections(THREADS);
+        dataSource.setPoolMaximumIdleConnections(THREADS);
+        try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement()) {
+            statement.execute("CREATE TABLE tb_user (" +
+                    "id BIGINT AUTO_INCREMENT PRIMARY KEY, " +
+                    "credits INT NOT NULL DEFAULT 0, " +
+                    "deleted TINYINT NOT NULL DEFAULT 0)");
+        }
+
+        MybatisConfiguration configuration = new MybatisConfiguration();
+        configuration.setMapUnderscoreToCamelCase(true);
+        configuration.setEnvironment(new Environment("test", new JdbcTransactionFactory(), dataSource));
+        configuration.addMapper(UserMapper.class);
+        sqlSessionFactory = new MybatisSqlSessionFactoryBuilder().build(configuration);
+    }
+
+    @AfterEach
+    void tearDown() {
+        dataSource.forceCloseAll();
+    }
+
+    /**
+     * 并发扣减超过余额：恰好扣到0，读取到的余额各不相同且覆盖 0..初始余额-1
+     */
+    @Test
+    void concurrentDeductNeverOverdraws() throws Exception {
+        long userId = createUser(100);
+
+        List<List<Integer>> results = runConcurrently(() -> {
+            List<Integer> balances = new ArrayList<>();
+            try (SqlSession session = sqlSessionFactory.openSession(true)) {
+                UserMapper mapper = session.getMapper(UserMapper.class);
+                for (int i = 0; i < 20; i++) {
+                    if (mapper.deductCredits(userId, 1) == 1) {
+                        balances.add(mapper.selectLastBalance());
+                    }
+                }
+            }
+            return balances;
+        });
+
+        List<Integer> balances = results.stream().flatMap(List::stream).sorted().collect(Collectors.toList());
+        assertEquals(IntStream.range(0, 100).boxed().collect(Collectors.toList()), balances);
+        assertEquals(0, balance(userId));
+    }
+
+    /**
+     * 并发扣减和增加：最终余额等于初始余额加上成功操作的变动之和，余额从不为负；
+     * 每次操作读取到的余额减去变动即为操作前余额，所有操作能按余额首尾相接成一条链
+     * （操作前余额 = 初始余额 + 除最后一次外的操作后余额），说明读取的是本连接本次更新的结果
+     */
+    @Test
+    void concurrentDeductAndAddKeepsBalanceChain() throws Exception {
+        int initial = 50;
+        long userId = createUser(initial);
+
+        List<List<int[]>> results = runConcurrently(() -> {
+            List<int[]> operations = new ArrayList<>();
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            try (SqlSession session = sqlSessionFactory.openSession(true)) {
+                UserMapper mapper = session.getMapper(UserMapper.class);
+                for (int i = 0; i < 200; i++) {
+                    int amount = random.nextInt(1, 11);
+                    if (random.nextBoolean()) {
+                        if (mapper.deductCredits(userId, amount) == 1) {
+                            operations.add(new int[]{-amount, mapper.selectLastBalance()});
+                        }
+                    } else {
+                        assertEquals(1, mapper.addCredits(userId, amount));
+                        operations.add(new int[]{amount, mapper.selectLastBalance()});
+                    }
+                }
+            }
+            return operations;
+        });
+
+        List<int[]> operations = results.stream().flatMap(List::stream).collect(Collectors.toList());
+        int finalBalance = balance(userId);
+        assertEquals(initial + operations.stream().mapToInt(op -> op[0]).sum(), finalBalance);
+        assertTrue(operations.stream().allMatch(op -> op[1] >= 0), "余额出现负数");
+
+        // 操作前余额 + 最终余额 = 操作后余额 + 初始余额（按多重集合比较）
+        Map<Integer, Integer> before = new HashMap<>();
+        Map<Integer, Integer> after = new HashMap<>();
+        for (int[] op : operations) {
+            before.merge(op[1] - op[0], 1, Integer::sum);
+            after.merge(op[1], 1, Integer::sum);
+        }
+        before.merge(finalBalance, 1, Integer::sum);
+        after.merge(initial, 1, Integer::sum);
+        assertEquals(after, before);
+    }
+
+    /**
+     * 在THREADS个线程中同时开始执行，返回各线程的结果
+     */
+    private <T> List<T> runConcurrently(Callable<T> task) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<T>> futures = new ArrayList<>();
+            for (int i = 0; i < THREADS; i++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    return task.call();
+                }));
+            }
+            start.countDown();
+            List<T> results = new ArrayList<>();
+            for (Future<T> future : futures) {
+                results.add(future.get(60, TimeUnit.SECONDS));
+            }
+            return Collections.unmodifiableList(results);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private long createUser(int credits) throws Exception {
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement(
+                     "INSERT INTO tb_user (credits) VALUES (?)", Statement.RETURN_GENERATED_KEYS)) {
+            statement.setInt(1, credits);
+            statement.executeUpdate();
+            try (ResultSet keys = statement.getGeneratedKeys()) {
+                keys.next();
+                return keys.getLong(1);
+            }
+        }
+    }
+
+    private int balance(long userId) throws Exception {
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement("SELECT credits FROM tb_user WHERE id = ?")) {
+            statement.setLong(1, userId);
+            try (ResultSet rs = statement.executeQuery()) {
+                rs.next();
+                return rs.getInt(1);
+            }
+        }
+    }
+}
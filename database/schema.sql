@@ -34,12 +34,30 @@ CREATE TABLE `tb_credit_log` (
     `description` VARCHAR(200) DEFAULT NULL COMMENT '描述',
     `order_id` BIGINT(20) DEFAULT NULL COMMENT '关联订单ID',
     `task_id` BIGINT(20) DEFAULT NULL COMMENT '关联任务ID',
+    `journal_id` VARCHAR(32) DEFAULT NULL COMMENT '流水日志ID（Redis积分账本写入）',
     `create_time` DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP COMMENT '创建时间',
     PRIMARY KEY (`id`),
-    KEY `idx_user_id` (`user_id`),
+    UNIQUE KEY `uk_journal_id` (`journal_id`),
+    UNIQUE KEY `uk_task_type` (`task_id`, `type`),
+    KEY `idx_user_create_time` (`user_id`, `create_time`, `id`),
     KEY `idx_create_time` (`create_time`)
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci COMMENT='积分记录表';
 
+-- 积分待入账表（开启Redis积分账本时，充值和退款先在业务事务中写入，再写入账本）
+CREATE TABLE `tb_credit_outbox` (
+    `id` BIGINT(20) NOT NULL AUTO_INCREMENT COMMENT 'ID',
+    `user_id` BIGINT(20) NOT NULL COMMENT '用户ID',
+    `amount` INT(11) NOT NULL COMMENT '增加的积分',
+    `type` TINYINT(1) NOT NULL COMMENT '类型：1-充值，3-退款',
+    `description` VARCHAR(200) DEFAULT NULL COMMENT '描述',
+    `order_id` BIGINT(20) DEFAULT NULL COMMENT '关联订单ID',
+    `task_id` BIGINT(20) DEFAULT NULL COMMENT '关联任务ID',
+    `create_time` DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP COMMENT '创建时间',
+    PRIMARY KEY (`id`),
+    UNIQUE KEY `uk_task_type` (`task_id`, `type`),
+    KEY `idx_create_time` (`create_time`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci COMMENT='积分待入账表';
+
 -- 视频生成任务表
 CREATE TABLE `tb_video_task` (
     `id` BIGINT(20) NOT NULL AUTO_INCREMENT COMMENT '任务ID',
@@ -55,14 +73,18 @@ CREATE TABLE `tb_video_task` (
     `duration` INT(11) DEFAULT NULL COMMENT '视频时长（秒）',
     `cost_credits` INT(11) NOT NULL COMMENT '消耗积分',
     `error_msg` VARCHAR(500) DEFAULT NULL COMMENT '错误信息',
+    `node_id` VARCHAR(100) DEFAULT NULL COMMENT '处理节点ID',
+    `fingerprint` CHAR(64) DEFAULT NULL COMMENT '请求指纹（用于复用相同请求的生成结果）',
     `deleted` TINYINT(1) NOT NULL DEFAULT 0 COMMENT '是否删除',
     `create_time` DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP COMMENT '创建时间',
     `complete_time` DATETIME DEFAULT NULL COMMENT '完成时间',
     PRIMARY KEY (`id`),
-    KEY `idx_user_id` (`user_id`),
+    KEY `idx_user_create_time` (`user_id`, `create_time`, `id`),
     KEY `idx_task_id` (`task_id`),
     KEY `idx_status` (`status`),
-    KEY `idx_create_time` (`create_time`)
+    KEY `idx_create_time` (`create_time`),
+    KEY `idx_fingerprint` (`fingerprint`),
+    KEY `idx_status_create_time` (`status`, `create_time`)
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci COMMENT='视频生成任务表';
 
 -- 作品表
@@ -162,6 +184,7 @@ CREATE TABLE `tb_credit_package` (
     `credits` INT(11) NOT NULL COMMENT '积分数量',
     `price` DECIMAL(10,2) NOT NULL COMMENT '价格（元）',
     `bonus_credits` INT(11) NOT NULL DEFAULT 0 COMMENT '赠送积分',
+    `priority_weight` DECIMAL(4,2) NOT NULL DEFAULT 1.00 COMMENT '调度权重（购买用户排队时的优先程度）',
     `sort` INT(11) NOT NULL DEFAULT 0 COMMENT '排序',
     `is_active` TINYINT(1) NOT NULL DEFAULT 1 COMMENT '是否启用：0-禁用，1-启用',
     `create_time` DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP COMMENT '创建时间',
@@ -172,11 +195,11 @@ CREATE TABLE `tb_credit_package` (
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci COMMENT='积分套餐表';
 
 -- 插入默认积分套餐数据
-INSERT INTO `tb_credit_package` (`name`, `credits`, `price`, `bonus_credits`, `sort`, `is_active`) VALUES
-('体验套餐', 100, 10.00, 0, 1, 1),
-('进阶套餐', 300, 30.00, 20, 2, 1),
-('热门套餐', 600, 50.00, 100, 3, 1),
-('超值套餐', 1200, 100.00, 300, 4, 1);
+INSERT INTO `tb_credit_package` (`name`, `credits`, `price`, `bonus_credits`, `priority_weight`, `sort`, `is_active`) VALUES
+('体验套餐', 100, 10.00, 0, 1.00, 1, 1),
+('进阶套餐', 300, 30.00, 20, 1.50, 2, 1),
+('热门套餐', 600, 50.00, 100, 2.00, 3, 1),
+('超值套餐', 1200, 100.00, 300, 3.00, 4, 1);
 
 -- 登录日志表
 CREATE TABLE `tb_login_log` (
@@ -17,3 +17,10 @@ export function getCreditLogs(params) {
   return get('/credit/logs', params)
 }
 
+/**
+ * 按游标获取积分记录（cursor 为上一页返回的 nextCursor）
+ */
+export function getCreditLogsByCursor(params) {
+  return get('/credit/logs/cursor', params)
+}
+
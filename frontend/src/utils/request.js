@@ -47,7 +47,7 @@ function responseInterceptor(response) {
       }, 1500)
     } else {
       uni.showToast({
-        title: `请求失败(${statusCode})`,
+        title: (data && data.message) || `请求失败(${statusCode})`,
         icon: 'none'
       })
     }